@@ -3,6 +3,7 @@ plugins {
     id("org.springframework.boot") version "3.5.4"
     id("io.spring.dependency-management") version "1.1.7"
     id("org.springdoc.openapi-gradle-plugin") version "1.9.0"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "ru.mephi"
@@ -73,3 +74,17 @@ openApi {
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+
+// Микробенчмарки (src/jmh/java). Запуск: ./gradlew jmh [-PjmhInclude=CardJsonBenchmark]
+// Результаты в JSON (build/results/jmh/results.json) - для сравнения между релизами и до/после оптимизаций
+jmh {
+    includeTests.set(false)
+    warmupIterations.set(2)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    fork.set(1)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    (project.findProperty("jmhInclude") as String?)?.let { includes.set(listOf(it)) }
+}
@@ -0,0 +1,121 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.service.impl.CardSecurityServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+// Сборка сервисов без Spring-контекста: настройки - из Map, репозитории - заглушки на Proxy, зависимости - по типу
+final class BenchmarkSupport {
+    static final String MASTER_KEY = "DYw3ZcE45osN4T0FHNusKA==";
+    static final String HMAC_KEY = "ZWVkYWVlZmItZWVjZi00Yjc1LTkwZWUtNGEyYzkxN2YyY2M4";
+
+    private BenchmarkSupport() {}
+
+    static StandardEnvironment environment(Map<String, Object> properties) {
+        StandardEnvironment env = new StandardEnvironment();
+        env.getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        return env;
+    }
+
+    static CardSecurityServiceImpl cardSecurityService() throws Exception {
+        StandardEnvironment env = environment(Map.of(
+                "security.card.number.key", MASTER_KEY,
+                "security.card.number.hmac", HMAC_KEY));
+        return service(CardSecurityServiceImpl.class, env);
+    }
+
+    /**
+     * Создаёт сервис через его конструктор и вызывает init().
+     *
+     * Нюансы:
+     * - Параметры конструктора подбираются по типу среди deps, поэтому новая зависимость сервиса
+     *   не ломает бенчмарки, которым она не важна.
+     * - Без подходящего объекта в deps: Environment - env, MeterRegistry - SimpleMeterRegistry,
+     *   TransactionTemplate - шаблон без реальной транзакции, интерфейс - заглушка, возвращающая null.
+     */
+    static <T> T service(Class<T> type, Environment env, Object... deps) throws Exception {
+        Constructor<?>[] constructors = type.getConstructors();
+        if (constructors.length != 1) {
+            throw new IllegalArgumentException(type.getSimpleName() + " must have a single public constructor");
+        }
+        Class<?>[] parameterTypes = constructors[0].getParameterTypes();
+        Object[] args = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            args[i] = dependency(parameterTypes[i], env, deps);
+        }
+        T service = type.cast(constructors[0].newInstance(args));
+        invokeInit(service);
+        return service;
+    }
+
+    private static Object dependency(Class<?> type, Environment env, Object[] deps) {
+        for (Object dep : deps) {
+            if (type.isInstance(dep)) {
+                return dep;
+            }
+        }
+        if (type.isInstance(env)) {
+            return env;
+        }
+        if (type == MeterRegistry.class) {
+            return new SimpleMeterRegistry();
+        }
+        if (type == TransactionTemplate.class) {
+            return new TransactionTemplate(NO_OP_TRANSACTIONS);
+        }
+        if (type.isInterface()) {
+            return stub(type, (method, args) -> null);
+        }
+        throw new IllegalArgumentException("No benchmark dependency for " + type.getName());
+    }
+
+    // Транзакции без базы: колбэк TransactionTemplate выполняется как есть
+    private static final PlatformTransactionManager NO_OP_TRANSACTIONS = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {}
+
+        @Override
+        public void rollback(TransactionStatus status) {}
+    };
+
+    /** Заглушка интерфейса: вызовы методов передаются в handler (method, args) */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> type, BiFunction<Method, Object[], Object> handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + "Stub";
+                };
+            }
+            return handler.apply(method, args);
+        });
+    }
+
+    // @PostConstruct-методы сервисов package-private
+    private static void invokeInit(Object service) throws Exception {
+        Method init = service.getClass().getDeclaredMethod("init");
+        init.setAccessible(true);
+        init.invoke(service);
+    }
+}
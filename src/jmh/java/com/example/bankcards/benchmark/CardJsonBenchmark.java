@@ -0,0 +1,70 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.CardInfoResponse;
+import com.example.bankcards.dto.Views;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.json.FilteredJsonWriters;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация списка карт (GET /api/cards):
+ * allFields/selectedFields - прежний путь, новый SimpleFilterProvider на каждый запрос + JsonView
+ * (как в MappingJackson2HttpMessageConverter); cached* - ObjectWriter из FilteredJsonWriters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CardJsonBenchmark {
+    @Param({"5", "50", "100"})
+    public int size;
+
+    private static final String[] SELECTED_FIELDS = {"id", "number", "balance"};
+
+    private ObjectMapper objectMapper;
+    private FilteredJsonWriters writers;
+    private List<CardInfoResponse> cards;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writers = BenchmarkSupport.service(FilteredJsonWriters.class, BenchmarkSupport.environment(Map.of()), objectMapper);
+        cards = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            cards.add(new CardInfoResponse(UUID.randomUUID(), "**** **** **** " + (1000 + i), "12/27",
+                    Card.Status.ACTIVE, 250_075L + i, "user" + i));
+        }
+    }
+
+    @Benchmark
+    public byte[] allFields() throws Exception {
+        SimpleFilterProvider filters = new SimpleFilterProvider().setFailOnUnknownId(false);
+        return objectMapper.writerWithView(Views.User.class).with(filters).writeValueAsBytes(cards);
+    }
+
+    @Benchmark
+    public byte[] selectedFields() throws Exception {
+        SimpleFilterProvider filters = new SimpleFilterProvider()
+                .addFilter("dynamicFilter", SimpleBeanPropertyFilter.filterOutAllExcept(SELECTED_FIELDS));
+        return objectMapper.writerWithView(Views.User.class).with(filters).writeValueAsBytes(cards);
+    }
+
+    @Benchmark
+    public byte[] cachedAllFields() throws Exception {
+        return writers.writer(CardInfoResponse.class, Views.User.class, null).writeValueAsBytes(cards);
+    }
+
+    @Benchmark
+    public byte[] cachedSelectedFields() throws Exception {
+        return writers.writer(CardInfoResponse.class, Views.User.class, SELECTED_FIELDS).writeValueAsBytes(cards);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.CardInfoResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.mapper.CardMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** Маппинг карты в ответ API: по сохранённым last_four и по расшифрованному номеру (с маскированием) */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CardMapperBenchmark {
+    private static final String CARD_NUMBER = "1234567812345678";
+
+    private Card card;
+
+    @Setup
+    public void setUp() {
+        card = new Card(new User("user123", "Password123", User.Role.USER), "encrypted", LocalDate.of(2027, 12, 31));
+        card.setId(UUID.randomUUID());
+        card.setLastFour(CardMapper.lastFour(CARD_NUMBER));
+    }
+
+    @Benchmark
+    public CardInfoResponse toGetResponseLastFour() {
+        return CardMapper.toGetResponse(card);
+    }
+
+    @Benchmark
+    public CardInfoResponse toGetResponseWithNumber() {
+        return CardMapper.toGetResponse(card, CARD_NUMBER);
+    }
+}
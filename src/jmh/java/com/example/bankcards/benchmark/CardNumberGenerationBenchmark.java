@@ -0,0 +1,48 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.repository.CardHashRepository;
+import com.example.bankcards.service.CardHashFilter;
+import com.example.bankcards.service.impl.CardSecurityServiceImpl;
+import com.example.bankcards.service.impl.CardServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CardServiceImpl.generateUniqueCardNumber без базы данных: репозитории - заглушки без задержек,
+ * поэтому измеряется только CPU-часть (генерация номера, HMAC, проверка фильтром).
+ * filterHit = true - фильтр отвечает «возможно есть» и выполняется проверка existsByHmacHash.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CardNumberGenerationBenchmark {
+    @Param({"false", "true"})
+    public boolean filterHit;
+
+    private CardServiceImpl cardService;
+
+    @Setup
+    public void setUp() throws Exception {
+        CardSecurityServiceImpl cardSecurityService = BenchmarkSupport.cardSecurityService();
+        CardHashRepository cardHashRepository = BenchmarkSupport.stub(CardHashRepository.class, (method, args) ->
+                switch (method.getName()) {
+                    case "existsByHmacHash" -> false;
+                    case "saveAndFlush" -> args[0];
+                    case "claimReserved" -> 1;
+                    default -> null;
+                });
+        CardHashFilter cardHashFilter = BenchmarkSupport.stub(CardHashFilter.class, (method, args) ->
+                method.getName().equals("mightContain") ? filterHit : null);
+
+        // остальные зависимости не участвуют в генерации номера - заглушки по умолчанию
+        cardService = BenchmarkSupport.service(CardServiceImpl.class, BenchmarkSupport.environment(Map.of()),
+                cardSecurityService, cardHashRepository, cardHashFilter);
+    }
+
+    @Benchmark
+    public String generateUniqueCardNumber() {
+        return cardService.generateUniqueCardNumber();
+    }
+}
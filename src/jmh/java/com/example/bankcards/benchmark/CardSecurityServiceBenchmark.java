@@ -0,0 +1,47 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.service.impl.CardSecurityServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути CardSecurityServiceImpl: HMAC номера карты (проверка уникальности, удаление карты)
+ * и получение ключа карты (через кэш и без него).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CardSecurityServiceBenchmark {
+    private static final String CARD_NUMBER = "1234567812345678";
+
+    private CardSecurityServiceImpl service;
+    private CardEncryptionKey encryptionKey;
+    private String encryptedNumber;
+
+    @Setup
+    public void setUp() throws Exception {
+        service = BenchmarkSupport.cardSecurityService();
+        SecretKey dataKey = service.generateKey();
+        encryptionKey = service.wrapKey(dataKey);
+        encryptedNumber = service.encryptNumber(CARD_NUMBER, dataKey);
+    }
+
+    @Benchmark
+    public String calculateHmac() {
+        return service.calculateHmac(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public byte[] calculateHmacDigest() {
+        return service.calculateHmacDigest(CARD_NUMBER);
+    }
+
+    // без id ключ не кэшируется - каждый раз расшифровывается мастер-ключом
+    @Benchmark
+    public String decryptNumberUncachedKey() {
+        return service.decryptNumber(encryptedNumber, service.decryptKey(encryptionKey));
+    }
+}
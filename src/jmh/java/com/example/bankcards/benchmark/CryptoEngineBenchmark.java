@@ -0,0 +1,120 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.security.CryptoEngine;
+import com.example.bankcards.util.security.EncryptionAES;
+import com.example.bankcards.util.security.HmacUtils;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение переиспользуемых в потоке Cipher/Mac (CryptoEngine) с прежней реализацией,
+ * которая вызывала Cipher.getInstance/Mac.getInstance на каждую операцию (legacy*).
+ * engineDecryptBytesOnce - путь ключей карт: Cipher переиспользуется, но инициализируется каждый раз.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CryptoEngineBenchmark {
+    private static final String CARD_NUMBER = "1234567812345678";
+    private static final String HMAC_SECRET = "ZWVkYWVlZmItZWVjZi00Yjc1LTkwZWUtNGEyYzkxN2YyY2M4";
+
+    private SecretKey masterKey;
+    private SecretKey dataKey;
+    private String encryptedNumber;
+    private String encryptedKey;
+    private byte[] encryptedNumberBytes;
+    private ByteBuffer encryptedNumberBuffer;
+    private ByteBuffer outputBuffer;
+
+    @Setup
+    public void setUp() throws Exception {
+        masterKey = EncryptionAES.generateAESKey();
+        dataKey = EncryptionAES.generateAESKey();
+        encryptedNumber = EncryptionAES.encryptAES(CARD_NUMBER, dataKey);
+        encryptedKey = EncryptionAES.encryptKey(dataKey, masterKey);
+        encryptedNumberBytes = Base64.getDecoder().decode(encryptedNumber);
+        encryptedNumberBuffer = ByteBuffer.allocateDirect(encryptedNumberBytes.length);
+        outputBuffer = ByteBuffer.allocateDirect(64);
+    }
+
+    @Benchmark
+    public String legacyDecryptNumber() throws Exception {
+        SecretKey key = legacyDecryptKey(encryptedKey, masterKey);
+        return legacyDecryptAES(encryptedNumber, key);
+    }
+
+    @Benchmark
+    public String decryptNumber() throws Exception {
+        SecretKey key = EncryptionAES.decryptKey(encryptedKey, masterKey);
+        return EncryptionAES.decryptAES(encryptedNumber, key);
+    }
+
+    @Benchmark
+    public byte[] engineDecryptBytes() throws Exception {
+        return CryptoEngine.decrypt(encryptedNumberBytes, dataKey);
+    }
+
+    @Benchmark
+    public byte[] engineDecryptBytesOnce() throws Exception {
+        return CryptoEngine.decryptOnce(encryptedNumberBytes, dataKey);
+    }
+
+    @Benchmark
+    public int engineDecryptByteBuffer() throws Exception {
+        encryptedNumberBuffer.clear();
+        encryptedNumberBuffer.put(encryptedNumberBytes).flip();
+        outputBuffer.clear();
+        return CryptoEngine.decrypt(encryptedNumberBuffer, outputBuffer, dataKey);
+    }
+
+    @Benchmark
+    public String legacyEncryptNumber() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, dataKey);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(CARD_NUMBER.getBytes()));
+    }
+
+    @Benchmark
+    public String encryptNumber() throws Exception {
+        return EncryptionAES.encryptAES(CARD_NUMBER, dataKey);
+    }
+
+    @Benchmark
+    public String legacyHmac() throws Exception {
+        SecretKeySpec keySpec = new SecretKeySpec(HMAC_SECRET.getBytes(), "HmacSHA256");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(keySpec);
+        return Base64.getEncoder().encodeToString(mac.doFinal(CARD_NUMBER.getBytes()));
+    }
+
+    @Benchmark
+    public String hmac() throws Exception {
+        return HmacUtils.calculateHMAC(CARD_NUMBER, HMAC_SECRET);
+    }
+
+    @Benchmark
+    public byte[] engineHmacBytes() throws Exception {
+        return CryptoEngine.hmac(CARD_NUMBER.getBytes(StandardCharsets.US_ASCII), masterKey);
+    }
+
+    // Прежняя реализация EncryptionAES (новый Cipher на каждый вызов)
+    private static String legacyDecryptAES(String encryptedData, SecretKey key) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedData)));
+    }
+
+    private static SecretKey legacyDecryptKey(String encryptedKey, SecretKey masterKey) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, masterKey);
+        return new SecretKeySpec(cipher.doFinal(Base64.getDecoder().decode(encryptedKey)), "AES");
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.bankcards.config;
 
 import com.example.bankcards.security.JwtFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -43,6 +44,8 @@ class SecurityConfig {
                     .accessDeniedHandler(accessDeniedHandler)
                 )
             .authorizeHttpRequests(auth -> auth
+                // асинхронная отправка потокового ответа (StreamingResponseBody) - запрос уже авторизован
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/**", "/v3/api-docs**","/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html","/error").permitAll()
                 .anyRequest().authenticated()
             )
@@ -1,16 +1,31 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.*;
-import org.springframework.http.converter.json.MappingJacksonValue;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.UUID;
 
 public interface AdminCardController {
-    MappingJacksonValue getCards(AdminCardFilter filter);
+    void getCards(AdminCardFilter filter, HttpServletResponse response) throws IOException;
 
     CardCreateResponse createCard(CardCreateRequest body);
 
+    ResponseEntity<StreamingResponseBody> createCards(CardBulkCreateRequest body);
+
+    // Выгрузка всех карт потоком (NDJSON или CSV)
+    ResponseEntity<StreamingResponseBody> exportCards(AdminCardFilter filter, String format, boolean gzip, HttpServletRequest request);
+
     void updateCardStatus(UUID cardId, CardUpdateStatusRequest body);
 
     void deleteCard(UUID cardId);
+
+    CardBalanceResponse getLedgerBalance(UUID cardId);
+
+    void updateBalanceSplit(UUID cardId, CardBalanceSplitRequest body);
+
+    CardEventPage getEvents(String cursor, int limit);
 }
@@ -1,20 +1,27 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.*;
-import org.springframework.http.converter.json.MappingJacksonValue;
+import jakarta.servlet.http.HttpServletResponse;
 
+import java.io.IOException;
 import java.util.UUID;
 
 public interface CardController {
     // Перевод денег между картами
     void doMoneyTransfer(CardTransferMoney body);
 
+    // Пакетный перевод денег между картами
+    CardBatchTransferResponse doMoneyTransfers(CardBatchTransferRequest body);
+
     // Получение списка карт с фильтрацией и пагинацией
-    MappingJacksonValue getCards(CardFilter filter);
+    void getCards(CardFilter filter, HttpServletResponse response) throws IOException;
 
     CardBalanceResponse updateCardBalance(UUID cardId, CardBalanceRequest body);
 
     CardBalanceResponse getBalance(UUID cardId);
 
+    // История операций по карте (keyset-пагинация, ответ пишется потоком)
+    void getTransactions(UUID cardId, CardTransactionFilter filter, HttpServletResponse response) throws IOException;
+
     void createCardStatusUpdateRequest(UUID cardId, CardUpdateStatusRequest body);
 }
@@ -2,10 +2,17 @@ package com.example.bankcards.controller.impl;
 
 import com.example.bankcards.controller.AdminCardController;
 import com.example.bankcards.dto.*;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.service.CardBalanceSplitService;
+import com.example.bankcards.service.CardLedgerService;
+import com.example.bankcards.service.CardOutboxService;
 import com.example.bankcards.service.CardService;
-import com.fasterxml.jackson.annotation.JsonView;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
-import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.example.bankcards.util.json.FilteredJsonWriters;
+import com.example.bankcards.util.json.MoneyJson;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,15 +21,34 @@ import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
 @Tag(name = "Admin Card API", description = "API для управления банковскими картами. Доступно только для администраторов.")
 @SecurityRequirement(name = "JWT")
@@ -33,37 +59,50 @@ import java.util.UUID;
 @Slf4j
 public class AdminCardControllerImpl implements AdminCardController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+    private static final int EXPORT_BUFFER_SIZE = 8192;
+    // Поля выгрузки в порядке колонок CSV
+    private static final List<String> EXPORT_FIELDS = List.of("id", "number", "date", "status", "balance", "owner");
+
     private final CardService cardService;
+    private final CardLedgerService cardLedgerService;
+    private final CardBalanceSplitService cardBalanceSplitService;
+    private final CardOutboxService cardOutboxService;
+    private final FilteredJsonWriters jsonWriters;
+    private final Environment env;
+
+    // Таймаут выгрузки, мс: 0 - без ограничения
+    private long exportTimeoutMs;
+
+    @PostConstruct
+    void init() {
+        this.exportTimeoutMs = env.getProperty("card.export.timeout-ms", Long.class, 0L);
+    }
 
     @Operation(
             summary = "Получить информацию о всех картах",
-            description = "Возвращает данные всех карт включая расшифрованные номера. Использовать только для тестирования. Доступ есть только у админа",
+            description = "Возвращает данные всех карт включая расшифрованные номера. Использовать только для тестирования. Доступ есть только у админа. "
+                    + "Если есть следующая страница, её курсор возвращается в заголовке Next-Cursor",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Список всех карт",
                             content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardInfoResponse.class))),
+                    @ApiResponse(responseCode = "400", description = "Невалидный курсор"),
                     @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
             }
     )
-    @GetMapping
-    @JsonView(value = Views.Admin.class)
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
     @Override
-    public MappingJacksonValue getCards(@ModelAttribute AdminCardFilter filter) {
+    public void getCards(@ModelAttribute AdminCardFilter filter, HttpServletResponse response) throws IOException {
         System.out.println("Filter status= " + filter.getStatus() + "; ownerId= " + filter.getOwnerId());
-        List<CardInfoResponse> cardsInfo = cardService.getCards(filter);
-
-        SimpleFilterProvider filters;
-        String[] fields = filter.getFields();
-        if (fields == null || fields.length == 0) {
-            // разрешаем сериализовать все поля
-            filters = new SimpleFilterProvider().setFailOnUnknownId(false);
-        } else {
-            filters = new SimpleFilterProvider()
-                    .addFilter("dynamicFilter", SimpleBeanPropertyFilter.filterOutAllExcept(fields));
+        CardInfoPage cardsPage = cardService.getCards(filter);
+        if (cardsPage.nextCursor() != null) {
+            response.setHeader(CardControllerImpl.NEXT_CURSOR_HEADER, cardsPage.nextCursor());
         }
 
-        MappingJacksonValue wrapper = new MappingJacksonValue(cardsInfo);
-        wrapper.setFilters(filters);
-        return wrapper;
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        jsonWriters.writeList(response.getOutputStream(), CardInfoResponse.class, Views.Admin.class,
+                filter.getFields(), cardsPage.items());
     }
 
     @Operation(
@@ -88,6 +127,127 @@ public class AdminCardControllerImpl implements AdminCardController {
         return cardService.createCard(body);
     }
 
+    @Operation(
+            summary = "Массово выпустить карты",
+            description = "Выпускает карты для одного или нескольких владельцев. Карты создаются пачками, id созданных карт " +
+                    "возвращаются потоком в формате NDJSON (по строке {\"id\": ...} на карту) по мере коммита пачек. " +
+                    "Если выпуск прервался, последней строкой приходит {\"error\": ...}, уже выданные карты остаются. Доступ есть только у админа",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Поток id созданных карт",
+                            content = @Content(mediaType = NDJSON)),
+                    @ApiResponse(responseCode = "400", description = "Пустой запрос или слишком много карт"),
+                    @ApiResponse(responseCode = "404", description = "Пользователь не найден"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+                    @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
+            }
+    )
+    @PostMapping(value = "/bulk", produces = NDJSON)
+    @Override
+    public ResponseEntity<StreamingResponseBody> createCards(
+            @RequestBody(description = "Владельцы и количество карт", required = true,
+                    content = @Content(schema = @Schema(implementation = CardBulkCreateRequest.class)))
+            @org.springframework.web.bind.annotation.RequestBody CardBulkCreateRequest body
+    ) {
+        // запрос проверяется до начала потока, чтобы ошибки вернулись обычным статусом
+        CardService.BulkIssue bulkIssue = cardService.createCards(body);
+
+        StreamingResponseBody stream = out -> {
+            try {
+                int created = bulkIssue.issue(ids -> {
+                    try {
+                        StringBuilder lines = new StringBuilder(ids.size() * 48);
+                        for (UUID id : ids) {
+                            lines.append("{\"id\":\"").append(id).append("\"}\n");
+                        }
+                        out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                log.info("Bulk issued {} cards", created);
+            } catch (UncheckedIOException e) {
+                log.warn("Bulk issue client disconnected: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("Bulk issue interrupted", e);
+                out.write("{\"error\":\"Internal Error\"}\n".getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(stream);
+    }
+
+    @Operation(
+            summary = "Выгрузить все карты",
+            description = "Отдаёт потоком все карты, подходящие под фильтры (status, ownerId, statusUpdateRequest), " +
+                    "в порядке sortBy/sortDirection: NDJSON (по объекту на строку) или CSV с заголовком. " +
+                    "Параметр fields ограничивает поля (и колонки CSV). page, size и cursor не используются. " +
+                    "Если выгрузка прервалась, в NDJSON последней строкой приходит {\"error\": ...}, " +
+                    "а CSV-ответ обрывается (передача не завершается). Длительность выгрузки ограничена " +
+                    "card.export.timeout-ms, а не общим таймаутом асинхронных запросов. Доступ есть только у админа",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Поток карт",
+                            content = {@Content(mediaType = NDJSON), @Content(mediaType = CSV)}),
+                    @ApiResponse(responseCode = "400", description = "Неизвестный формат"),
+                    @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+                    @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
+            }
+    )
+    @GetMapping("/export")
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportCards(
+            @ModelAttribute AdminCardFilter filter,
+
+            @Parameter(description = "Формат выгрузки: ndjson или csv", example = "ndjson")
+            @RequestParam(defaultValue = "ndjson") String format,
+
+            @Parameter(description = "Сжать ответ gzip (Content-Encoding: gzip)", example = "false")
+            @RequestParam(defaultValue = "false") boolean gzip,
+
+            HttpServletRequest request
+    ) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new BadRequestException("Unsupported export format");
+        }
+        // колонки CSV - запрошенные поля в порядке CardInfoResponse
+        List<String> columns = exportColumns(filter.getFields());
+        ObjectWriter jsonWriter = jsonWriters.writer(CardInfoResponse.class, Views.Admin.class, filter.getFields())
+                .forType(CardInfoResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody stream = out -> {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, EXPORT_BUFFER_SIZE) : null;
+            OutputStream target = compressed != null ? compressed : out;
+            CardExportWriter writer = csv ? new CsvExportWriter(target, columns) : new NdjsonExportWriter(target, jsonWriter);
+            try {
+                long exported = cardService.exportCards(filter, writer);
+                writer.finish(false);
+                log.info("Exported {} cards", exported);
+            } catch (UncheckedIOException e) {
+                log.warn("Card export client disconnected: {}", e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                log.error("Card export interrupted", e);
+                writer.finish(true);
+            }
+            if (compressed != null) {
+                compressed.finish();
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(csv ? CSV : NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(csv ? "cards.csv" : "cards.ndjson").build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        // Выгрузка идёт дольше spring.mvc.async.request-timeout, рассчитанного на массовый выпуск:
+        // таймаут применяется при старте асинхронной отправки тела, поэтому задаётся до возврата ответа
+        WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest().setTimeout(exportTimeoutMs > 0 ? exportTimeoutMs : -1);
+        return response.body(stream);
+    }
+
     @Operation(
             summary = "Обновить статус карты",
             description = "Изменяет статус карты (ACTIVATE или BLOCK) по ID карты и действию. Доступ есть только у админа.",
@@ -131,6 +291,190 @@ public class AdminCardControllerImpl implements AdminCardController {
     ) {
         cardService.deleteCard(cardId);
     }
+
+    @Operation(
+        summary = "Баланс карты по журналу операций",
+        description = "Восстанавливает баланс карты из последнего снимка и записей журнала после него. "
+            + "Используется для сверки с текущим балансом карты. Доступ есть только у админа.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Баланс карты по журналу",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardBalanceResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+            @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
+        }
+    )
+    @GetMapping("/{cardId}/ledger-balance")
+    @Override
+    public CardBalanceResponse getLedgerBalance(
+            @Parameter(description = "UUID карты", required = true)
+            @PathVariable UUID cardId
+    ) {
+        return new CardBalanceResponse(cardLedgerService.rebuildBalance(cardId));
+    }
+
+    @Operation(
+        summary = "Разделить баланс карты на слоты",
+        description = "Включает разделение баланса \"горячей\" карты на указанное количество слотов: пополнения и списания "
+            + "меняют один слот и не блокируют карту, фоновая задача периодически распределяет баланс по слотам. "
+            + "slots = 0 выключает разделение и собирает баланс обратно в карту. Доступ есть только у админа.",
+        responses = {
+            @ApiResponse(responseCode = "204", description = "Разделение баланса обновлено"),
+            @ApiResponse(responseCode = "400", description = "Недопустимое количество слотов"),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+            @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
+        }
+    )
+    @PutMapping("/{cardId}/balance-split")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @Override
+    public void updateBalanceSplit(
+            @Parameter(description = "UUID карты", required = true)
+            @PathVariable UUID cardId,
+
+            @RequestBody(description = "Количество слотов", required = true,
+                    content = @Content(schema = @Schema(implementation = CardBalanceSplitRequest.class)))
+            @org.springframework.web.bind.annotation.RequestBody CardBalanceSplitRequest body
+    ) {
+        cardBalanceSplitService.updateSplit(cardId, body.slots());
+    }
+
+    @Operation(
+        summary = "События изменения карт",
+        description = "Возвращает события изменения карт (выпуск, смена статуса, изменение баланса, удаление) в порядке "
+            + "возникновения. Чтобы получать только новые события, следующий запрос выполняется с cursor из nextCursor "
+            + "предыдущего ответа: курсор возвращается и для пустой страницы. Событие появляется в выдаче "
+            + "через card.outbox.safety-lag-ms (по умолчанию минуту) после записи. Доступ есть только у админа.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Страница событий",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardEventPage.class))),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор или размер страницы"),
+            @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
+            @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
+        }
+    )
+    @GetMapping("/events")
+    @Override
+    public CardEventPage getEvents(
+            @Parameter(description = "Курсор из nextCursor предыдущего ответа; без него - с самого старого события")
+            @RequestParam(required = false) String cursor,
+
+            @Parameter(description = "Максимальное количество событий", example = "100")
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        return cardOutboxService.readEvents(cursor, limit);
+    }
+
+    // Известные поля из fields в порядке EXPORT_FIELDS; без fields - все поля
+    private static List<String> exportColumns(String[] fields) {
+        if (fields == null || fields.length == 0) {
+            return EXPORT_FIELDS;
+        }
+        List<String> requested = Arrays.stream(fields).map(String::trim).toList();
+        return EXPORT_FIELDS.stream().filter(requested::contains).toList();
+    }
+
+    /** Построчная запись выгрузки карт. Ошибка записи (клиент отключился) пробрасывается как UncheckedIOException */
+    private abstract static class CardExportWriter implements Consumer<CardInfoResponse> {
+        @Override
+        public void accept(CardInfoResponse card) {
+            try {
+                write(card);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        abstract void write(CardInfoResponse card) throws IOException;
+
+        /**
+         * Дописывает буферизованные данные; failed - выгрузка прервалась на стороне сервера.
+         * @throws IOException если после сбоя ответ нужно оборвать
+         */
+        abstract void finish(boolean failed) throws IOException;
+    }
+
+    // Объект карты на строку; поля и представление - как у GET /admin/api/cards
+    private static final class NdjsonExportWriter extends CardExportWriter {
+        private final ObjectWriter writer;
+        private final JsonGenerator generator;
+
+        NdjsonExportWriter(OutputStream out, ObjectWriter writer) throws IOException {
+            this.writer = writer;
+            this.generator = writer.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            // строки разделяются переводом строки, а не пробелом между корневыми значениями
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void write(CardInfoResponse card) throws IOException {
+            writer.writeValue(generator, card);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void finish(boolean failed) throws IOException {
+            if (failed) {
+                generator.writeRaw("{\"error\":\"Internal Error\"}\n");
+            }
+            generator.flush();
+        }
+    }
+
+    // CSV (RFC 4180): строка заголовка, затем строка на карту; баланс - в рублях с копейками
+    private static final class CsvExportWriter extends CardExportWriter {
+        private final Writer writer;
+        private final List<String> columns;
+
+        CsvExportWriter(OutputStream out, List<String> columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+            this.columns = columns;
+            writer.write(String.join(",", columns));
+            writer.write("\r\n");
+        }
+
+        @Override
+        void write(CardInfoResponse card) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(value(card, columns.get(i))));
+            }
+            writer.write("\r\n");
+        }
+
+        // В CSV нет места для маркера ошибки: после сбоя ответ обрывается (контейнер закрывает соединение
+        // без завершающего chunk), и клиент видит незавершённую передачу, а не полный файл
+        @Override
+        void finish(boolean failed) throws IOException {
+            writer.flush();
+            if (failed) {
+                throw new IOException("Card export interrupted");
+            }
+        }
+
+        private static String value(CardInfoResponse card, String column) {
+            Object value = switch (column) {
+                case "id" -> card.id();
+                case "number" -> card.number();
+                case "date" -> card.date();
+                case "status" -> card.status();
+                case "balance" -> MoneyJson.fromMinorUnits(card.balance()).toPlainString();
+                case "owner" -> card.owner();
+                default -> null;
+            };
+            return value != null ? value.toString() : "";
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
 }
 
 /*
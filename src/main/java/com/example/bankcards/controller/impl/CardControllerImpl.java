@@ -3,9 +3,12 @@ package com.example.bankcards.controller.impl;
 import com.example.bankcards.controller.CardController;
 import com.example.bankcards.dto.*;
 import com.example.bankcards.service.CardService;
-import com.fasterxml.jackson.annotation.JsonView;
-import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
-import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.example.bankcards.util.json.FilteredJsonWriters;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,13 +17,17 @@ import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Tag(name = "Card API", description = "API для управления банковскими картами")
 @SecurityRequirement(name = "JWT")
@@ -28,8 +35,11 @@ import java.util.UUID;
 @RequestMapping("/api/cards")
 @RequiredArgsConstructor
 public class CardControllerImpl implements CardController {
+    static final String NEXT_CURSOR_HEADER = "Next-Cursor";
 
     private final CardService cardService;
+    private final ObjectMapper objectMapper;
+    private final FilteredJsonWriters jsonWriters;
 
     @Operation(
         summary = "Перевод средств между картами",
@@ -53,37 +63,52 @@ public class CardControllerImpl implements CardController {
         cardService.doMoneyTransfer(body);
     }
 
+    @Operation(
+        summary = "Пакетный перевод средств между картами",
+        description = "Выполняет список переводов в одной транзакции. В режиме ALL_OR_NOTHING пакет применяется "
+            + "только если корректны все переводы, в режиме PER_ITEM отклонённые переводы пропускаются.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Результат по каждому переводу",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardBatchTransferResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Пакет пуст или слишком велик"),
+            @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
+        }
+    )
+    @PostMapping("/transfers/batch")
+    @Override
+    public CardBatchTransferResponse doMoneyTransfers(
+        @RequestBody(description = "Режим и список переводов", required = true,
+            content = @Content(schema = @Schema(implementation = CardBatchTransferRequest.class)))
+        @org.springframework.web.bind.annotation.RequestBody CardBatchTransferRequest body
+    ) {
+        return cardService.doMoneyTransfers(body);
+    }
+
     @Operation(
         summary = "Получить список карт пользователя",
-        description = "Возвращает информацию о картах с возможностью фильтрации по статусу и пагинации",
+        description = "Возвращает информацию о картах с возможностью фильтрации по статусу и пагинации. "
+                + "Если есть следующая страница, её курсор возвращается в заголовке Next-Cursor",
         responses = {
             @ApiResponse(responseCode = "200", description = "Список карт пользователя",
                 content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardInfoResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Невалидный курсор"),
             @ApiResponse(responseCode = "404", description = "Пользователь не найден"),
             @ApiResponse(responseCode = "403", description = "Доступ запрещен"),
             @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
         }
     )
-    @GetMapping
-    @JsonView(Views.User.class)
-    @Override
-    public MappingJacksonValue getCards(@ModelAttribute CardFilter filter) {
-        List<CardInfoResponse> cardsInfo = cardService.getCards(filter);
-
-        SimpleFilterProvider filters;
-        String[] fields = filter.getFields();
-        if (fields == null || fields.length == 0) {
-            // разрешаем сериализовать все поля
-            filters = new SimpleFilterProvider().setFailOnUnknownId(false);
-        } else {
-            filters = new SimpleFilterProvider()
-                    .addFilter("dynamicFilter", SimpleBeanPropertyFilter.filterOutAllExcept(fields));
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @Override
+    public void getCards(@ModelAttribute CardFilter filter, HttpServletResponse response) throws IOException {
+        CardInfoPage cardsPage = cardService.getCards(filter);
+        if (cardsPage.nextCursor() != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, cardsPage.nextCursor());
         }
 
-        MappingJacksonValue wrapper = new MappingJacksonValue(cardsInfo);
-        wrapper.setFilters(filters);
-        return wrapper;
-
+        // готовый writer для (view, fields) из кэша, ответ пишется сразу в поток
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        jsonWriters.writeList(response.getOutputStream(), CardInfoResponse.class, Views.User.class,
+                filter.getFields(), cardsPage.items());
     }
 
     @Operation(
@@ -130,6 +155,39 @@ public class CardControllerImpl implements CardController {
         return cardService.getBalance(cardId);
     }
 
+    @Operation(
+        summary = "История операций по карте",
+        description = "Возвращает операции карты от новых к старым. Следующая страница запрашивается с параметром "
+            + "cursor из поля nextCursor; если nextCursor нет, страница последняя.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Страница операций: {\"items\": [...], \"nextCursor\": \"...\"}",
+                content = @Content(mediaType = "application/json", schema = @Schema(implementation = CardTransactionResponse.class))),
+            @ApiResponse(responseCode = "400", description = "Некорректный курсор или размер страницы"),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+            @ApiResponse(responseCode = "403", description = "Карта принадлежит другому пользователю"),
+            @ApiResponse(responseCode = "401", description = "JWT отсутствует или невалидный")
+        }
+    )
+    @GetMapping(value = "/{cardId}/transactions", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Override
+    public void getTransactions(
+        @Parameter(description = "Уникальный идентификатор карты")
+        @PathVariable UUID cardId,
+        @ModelAttribute CardTransactionFilter filter,
+        HttpServletResponse response
+    ) throws IOException {
+        TransactionsJsonWriter writer = new TransactionsJsonWriter(response,
+                objectMapper.writerFor(CardTransactionResponse.class)
+                        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE));
+        String nextCursor;
+        try {
+            nextCursor = cardService.getTransactions(cardId, filter, writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish(nextCursor);
+    }
+
     @Operation(
         summary = "Создать заявку на изменение статуса карты",
         description = "Отправляет заявку на изменение статуса карты",
@@ -153,6 +211,51 @@ public class CardControllerImpl implements CardController {
     ) {
         cardService.createCardStatusUpdateRequest(cardId, body);
     }
+
+    /**
+     * Пишет страницу операций в ответ по мере чтения из БД: {"items": [...], "nextCursor": "..."}.
+     * Ответ начинается только с первой операцией, поэтому ошибка до неё возвращается обычным статусом.
+     */
+    private static final class TransactionsJsonWriter implements Consumer<CardTransactionResponse> {
+        private final HttpServletResponse response;
+        private final ObjectWriter itemWriter;
+        private JsonGenerator generator;
+
+        TransactionsJsonWriter(HttpServletResponse response, ObjectWriter itemWriter) {
+            this.response = response;
+            this.itemWriter = itemWriter;
+        }
+
+        @Override
+        public void accept(CardTransactionResponse item) {
+            try {
+                start();
+                itemWriter.writeValue(generator, item);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void finish(String nextCursor) throws IOException {
+            start();
+            generator.writeEndArray();
+            if (nextCursor != null) {
+                generator.writeStringField("nextCursor", nextCursor);
+            }
+            generator.writeEndObject();
+            generator.close();
+        }
+
+        private void start() throws IOException {
+            if (generator != null) {
+                return;
+            }
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            generator = itemWriter.getFactory().createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("items");
+        }
+    }
 }
 
 
@@ -1,6 +1,9 @@
 package com.example.bankcards.dto;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.json.MoneyJson;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 @Schema(description = "Запрос на изменение баланса карты")
@@ -8,6 +11,9 @@ public record CardBalanceRequest(
         @Schema(description = "Действие, которое нужно выполнить с балансом", example = "WITHDRAW_MONEY", required = true)
         Card.BalanceAction action,
 
-        @Schema(description = "Сумма для изменения баланса. Положительное число для пополнения, отрицательное для снятия", example = "100.50", required = true)
-        double amount
+        @Schema(description = "Сумма для изменения баланса. Положительное число для пополнения, отрицательное для снятия", example = "100.50", required = true,
+                type = "number")
+        @JsonSerialize(using = MoneyJson.Serializer.class)
+        @JsonDeserialize(using = MoneyJson.Deserializer.class)
+        long amount
 ) {}
\ No newline at end of file
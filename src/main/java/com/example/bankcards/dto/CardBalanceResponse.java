@@ -1,9 +1,12 @@
 package com.example.bankcards.dto;
 
+import com.example.bankcards.util.json.MoneyJson;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 @Schema(description = "Ответ с текущим балансом карты")
 public record CardBalanceResponse(
-        @Schema(description = "Текущий баланс карты", example = "2500.75")
-        double balance
+        @Schema(description = "Текущий баланс карты", example = "2500.75", type = "number")
+        @JsonSerialize(using = MoneyJson.Serializer.class)
+        long balance
 ) {}
\ No newline at end of file
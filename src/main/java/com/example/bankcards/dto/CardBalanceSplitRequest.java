@@ -0,0 +1,9 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Запрос на разделение баланса карты на слоты")
+public record CardBalanceSplitRequest(
+        @Schema(description = "Количество слотов; 0 - выключить разделение и собрать баланс в карту", example = "16", required = true)
+        int slots
+) {}
@@ -0,0 +1,21 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Запрос на пакетный перевод денег между картами")
+public record CardBatchTransferRequest(
+    @Schema(description = "Режим обработки пакета (по умолчанию ALL_OR_NOTHING)", example = "ALL_OR_NOTHING")
+    Mode mode,
+
+    @Schema(description = "Переводы пакета, выполняются в порядке следования", required = true)
+    List<CardTransferMoney> transfers
+) {
+    public enum Mode {
+        /** Пакет применяется целиком или не применяется вовсе, если хотя бы один перевод отклонён */
+        ALL_OR_NOTHING,
+        /** Отклонённые переводы пропускаются, остальные применяются */
+        PER_ITEM
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.bankcards.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Результат пакетного перевода")
+public record CardBatchTransferResponse(
+    @Schema(description = "Количество применённых переводов", example = "99")
+    int applied,
+
+    @Schema(description = "Количество отклонённых переводов", example = "1")
+    int rejected,
+
+    @Schema(description = "Результаты переводов в порядке запроса")
+    List<Item> results
+) {
+    @Schema(description = "Результат одного перевода")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Item(
+        @Schema(description = "Позиция перевода в запросе (с нуля)", example = "0")
+        int index,
+
+        @Schema(description = "Итог перевода", example = "APPLIED")
+        Status status,
+
+        @Schema(description = "HTTP-код ошибки, с которой перевод был бы отклонён при одиночном вызове", example = "400")
+        Integer code,
+
+        @Schema(description = "Причина отказа", example = "Not enough balance")
+        String message
+    ) {}
+
+    public enum Status {
+        /** Перевод выполнен */
+        APPLIED,
+        /** Перевод отклонён */
+        REJECTED,
+        /** Перевод корректен, но не выполнен, так как в режиме ALL_OR_NOTHING отклонён другой перевод пакета */
+        ROLLED_BACK
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.bankcards.dto;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.json.MoneyJson;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.time.LocalDate;
@@ -23,6 +25,7 @@ public record CardBlockingResponse(
         @Schema(description = "Статус карты", example = "ACTIVE")
         Card.Status status,
 
-        @Schema(description = "Баланс карты", example = "2500.75")
-        double balance
+        @Schema(description = "Баланс карты", example = "2500.75", type = "number")
+        @JsonSerialize(using = MoneyJson.Serializer.class)
+        long balance
 ) {}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.UUID;
+
+@Schema(description = "Запрос на массовый выпуск карт")
+public record CardBulkCreateRequest(
+    @Schema(description = "Позиции запроса: для каждого владельца - количество карт")
+    List<Item> items
+) {
+    @Schema(description = "Карты для одного владельца")
+    public record Item(
+        @Schema(description = "UUID владельца карт")
+        UUID ownerId,
+
+        @Schema(description = "Количество карт", example = "1000")
+        int count,
+
+        @Schema(description = "Количество месяцев до окончания срока действия карт", example = "24")
+        Integer monthsQuantityUntilExpires
+    ) {}
+}
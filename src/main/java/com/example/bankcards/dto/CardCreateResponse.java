@@ -1,7 +1,9 @@
 package com.example.bankcards.dto;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.json.MoneyJson;
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.UUID;
@@ -20,8 +22,9 @@ public record CardCreateResponse (
     @Schema(description = "Статус карты", example = "ACTIVE")
     Card.Status status,
 
-    @Schema(description = "Баланс карты", example = "2500.75")
-    double balance,
+    @Schema(description = "Баланс карты", example = "2500.75", type = "number")
+    @JsonSerialize(using = MoneyJson.Serializer.class)
+    long balance,
 
     @Schema(description = "Логин владельца карты", example = "user123")
     String owner
@@ -0,0 +1,15 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Страница событий изменения карт")
+public record CardEventPage(
+        @Schema(description = "События в порядке возникновения")
+        List<CardEventResponse> items,
+
+        @Schema(description = "Курсор для следующего запроса; передаётся и при пустой странице, чтобы продолжить чтение с того же места",
+                example = "MDE5YTBiNmUtM2MyZi03YTUxLTljMWUtNWI4ZjNkMmE0ZTYx")
+        String nextCursor
+) {}
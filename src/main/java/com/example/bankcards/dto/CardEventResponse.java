@@ -0,0 +1,28 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardOutboxEvent;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Schema(description = "Событие изменения карты")
+public record CardEventResponse(
+        @Schema(description = "Id события (возрастает со временем)", example = "019a0b6e-3c2f-7a51-9c1e-5b8f3d2a4e61")
+        UUID id,
+
+        @Schema(description = "Id карты", example = "c4994fd6-ed16-49f7-8d2e-1c2ae0562b8a")
+        UUID cardId,
+
+        @Schema(description = "Тип события", example = "BALANCE_CHANGED")
+        CardOutboxEvent.Type type,
+
+        @Schema(description = "Поля события: зависят от типа", example = "{\"amount\":-150.00,\"balance\":350.00}",
+                type = "object")
+        @JsonRawValue
+        String payload,
+
+        @Schema(description = "Время события", example = "2025-08-01T12:30:00.123456")
+        LocalDateTime createdAt
+) {}
@@ -16,7 +16,8 @@ public class CardFilter {
     @Parameter(description = "Номер страницы пагинации", example = "BLOCKED", in = ParameterIn.QUERY)
     Card.Status status;
 
-    @Parameter(description = "Параметр, по которому следует провести сортировку", in = ParameterIn.QUERY)
+    @Parameter(description = "Параметр, по которому следует провести сортировку. balance сортирует по основному "
+            + "балансу карты: средства слотов разделённого баланса в ключ сортировки не входят", in = ParameterIn.QUERY)
     @Pattern(regexp = "^(id|balance|status|validityPeriod)$", message = "Недопустимое поле для сортировки")
     String sortBy;
 
@@ -33,6 +34,10 @@ public class CardFilter {
     @Max(value = 100, message = "Размер страницы не может превышать 100")
     int size = 5;
 
+    @Parameter(description = "Курсор из заголовка Next-Cursor предыдущего ответа: следующая страница ищется по ключу "
+            + "сортировки и id последней карты (page при этом не используется)", in = ParameterIn.QUERY)
+    String cursor;
+
     @Parameter(description = "Поля, которые должны быть в ответе", example = "id,balance,status", in = ParameterIn.QUERY)
     String[] fields;
 }
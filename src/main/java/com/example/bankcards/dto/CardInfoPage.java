@@ -0,0 +1,9 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+/**
+ * Страница карт и курсор следующей страницы (null - страница последняя).
+ * Курсор отдаётся клиенту заголовком Next-Cursor, тело ответа остаётся списком карт.
+ */
+public record CardInfoPage(List<CardInfoResponse> items, String nextCursor) {}
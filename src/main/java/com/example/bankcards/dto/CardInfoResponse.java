@@ -1,8 +1,10 @@
 package com.example.bankcards.dto;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.json.MoneyJson;
 import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.UUID;
@@ -27,8 +29,9 @@ public record CardInfoResponse(
         Card.Status status,
 
         @JsonView({Views.User.class, Views.Admin.class})
-        @Schema(description = "Баланс карты", example = "2500.75")
-        double balance,
+        @Schema(description = "Баланс карты", example = "2500.75", type = "number")
+        @JsonSerialize(using = MoneyJson.Serializer.class)
+        long balance,
 
         @JsonView(Views.Admin.class)
         @Schema(description = "Логин владельца карты", example = "user123")
@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import lombok.Data;
+
+@Data
+public class CardTransactionFilter {
+    @Parameter(description = "Курсор из nextCursor предыдущей страницы; без курсора - первая (самая свежая) страница", in = ParameterIn.QUERY)
+    String cursor;
+
+    @Parameter(description = "Количество операций на странице (не больше card.transactions.max-limit)", example = "20", in = ParameterIn.QUERY)
+    int limit = 20;
+}
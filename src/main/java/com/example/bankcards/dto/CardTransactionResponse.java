@@ -0,0 +1,34 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardLedgerEntry;
+import com.example.bankcards.util.json.MoneyJson;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Schema(description = "Операция по карте")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CardTransactionResponse(
+        @Schema(description = "Id записи журнала", example = "019a0b6e-3c2f-7a51-9c1e-5b8f3d2a4e61")
+        UUID id,
+
+        @Schema(description = "Id операции (общий для обеих сторон перевода)", example = "019a0b6e-3c2f-7a51-9c1e-5b8f3d2a4e61")
+        UUID operationId,
+
+        @Schema(description = "Тип операции", example = "TRANSFER_OUT")
+        CardLedgerEntry.Type type,
+
+        @Schema(description = "Изменение баланса: положительное при зачислении, отрицательное при списании",
+                example = "-150.00", type = "number")
+        @JsonSerialize(using = MoneyJson.Serializer.class)
+        long amount,
+
+        @Schema(description = "Id второй карты перевода", example = "c4994fd6-ed16-49f7-8d2e-1c2ae0562b8a")
+        UUID counterpartyCardId,
+
+        @Schema(description = "Время операции", example = "2025-08-01T12:30:00.123456")
+        LocalDateTime createdAt
+) {}
@@ -1,5 +1,8 @@
 package com.example.bankcards.dto;
 
+import com.example.bankcards.util.json.MoneyJson;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.UUID;
@@ -12,6 +15,8 @@ public record CardTransferMoney(
         @Schema(description = "Id карты получателя", example = "c4994fd6-ed16-49f7-8d2e-1c2ae0562b8a", required = true)
         UUID to,
 
-        @Schema(description = "Сумма перевода", example = "150.00", required = true)
-        double amount
+        @Schema(description = "Сумма перевода", example = "150.00", required = true, type = "number")
+        @JsonSerialize(using = MoneyJson.Serializer.class)
+        @JsonDeserialize(using = MoneyJson.Deserializer.class)
+        long amount
 ) {}
\ No newline at end of file
@@ -2,8 +2,10 @@ package com.example.bankcards.entity;
 
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Formula;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -11,7 +13,14 @@ import java.util.UUID;
 @Setter
 @Getter
 @Entity
+// План загрузки для выдачи карт: владелец (логин в ответе) и ключ (расшифровка номера) - в том же запросе
+@NamedEntityGraph(name = Card.DETAILS_GRAPH, attributeNodes = {
+        @NamedAttributeNode("owner"),
+        @NamedAttributeNode("encryptionKey")
+})
 public class Card {
+    public static final String DETAILS_GRAPH = "Card.details";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
@@ -19,8 +28,12 @@ public class Card {
     @Column(name = "encrypted_number", nullable = false, unique = true)
     private String encryptedNumber;
 
+    // Последние 4 цифры номера (не секретны) - чтобы выводить маску без расшифрования номера
+    @Column(name = "last_four", length = 4)
+    private String lastFour;
+
     @JsonManagedReference
-    @ManyToOne(optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "user_id")
     private User owner;
 
@@ -31,11 +44,24 @@ public class Card {
     @Column(nullable = false, length = 20)
     private Status status;
 
+    // Баланс в минимальных единицах валюты (копейках)
     @Column(nullable = false)
-    private double balance = 0;
+    private long balance = 0;
+
+    // Количество слотов разделённого баланса (card_balance_slot); 0 - весь баланс хранится в balance
+    @Column(name = "balance_slots", nullable = false)
+    private int balanceSlots = 0;
 
+    // Сумма слотов; подзапрос выполняется только для карт с разделённым балансом
+    @Setter(AccessLevel.NONE)
+    @Formula("(CASE WHEN balance_slots > 0 THEN "
+            + "(SELECT COALESCE(SUM(s.balance), 0) FROM card_balance_slot s WHERE s.card_id = id) ELSE 0 END)")
+    private long slotsBalance;
+
+    // Ключ на стороне mappedBy: без bytecode enhancement Hibernate всё равно загружает его сразу,
+    // поэтому пути, которым ключ нужен, подтягивают его join fetch (DETAILS_GRAPH, CardSpecifications.fetchDetails)
     @JsonManagedReference("encryption")
-    @OneToOne(mappedBy = "card", optional = false, cascade = CascadeType.ALL, orphanRemoval = true)
+    @OneToOne(mappedBy = "card", fetch = FetchType.LAZY, optional = false, cascade = CascadeType.ALL, orphanRemoval = true)
     private CardEncryptionKey encryptionKey;
 
     public Card() {}
@@ -47,6 +73,11 @@ public class Card {
         this.status = Status.ACTIVE;
     }
 
+    /** Баланс карты с учётом слотов разделённого баланса */
+    public long getTotalBalance() {
+        return balance + slotsBalance;
+    }
+
     public enum Status {
         ACTIVE, BLOCKED, EXPIRED
     }
@@ -0,0 +1,36 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+// Часть разделённого баланса карты: баланс карты = card.balance + сумма её слотов
+@Getter
+@NoArgsConstructor
+@Entity
+@IdClass(CardBalanceSlot.Key.class)
+@Table(name = "card_balance_slot")
+public class CardBalanceSlot {
+    @Id
+    @Column(name = "card_id")
+    private UUID cardId;
+
+    @Id
+    @Column(name = "slot")
+    private int slot;
+
+    // В копейках, не бывает отрицательным
+    @Column(nullable = false)
+    private long balance;
+
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private UUID cardId;
+        private int slot;
+    }
+}
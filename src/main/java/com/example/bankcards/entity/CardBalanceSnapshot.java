@@ -0,0 +1,29 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Баланс карты на момент записи журнала ledgerId: баланс = balance + сумма записей карты с id > ledgerId
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "card_balance_snapshot")
+public class CardBalanceSnapshot {
+    @Id
+    @Column(name = "card_id")
+    private UUID cardId;
+
+    @Column(nullable = false)
+    private long balance;
+
+    // id последней учтённой записи card_ledger; null - записи журнала ещё не учитывались
+    @Column(name = "ledger_id")
+    private UUID ledgerId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
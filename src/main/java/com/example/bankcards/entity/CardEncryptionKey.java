@@ -9,6 +9,7 @@ import java.util.UUID;
 
 @Getter
 @Entity(name = "card_encryption_key")
+@Table(indexes = @Index(name = "idx_card_encryption_key_master_version", columnList = "master_key_version"))
 public class CardEncryptionKey {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -23,9 +24,18 @@ public class CardEncryptionKey {
     @Column
     private String encryptedKey; // зашифрованный ключ
 
+    // Версия мастер-ключа, которым зашифрован encryptedKey (см. security.card.number.key-version)
+    @Column(name = "master_key_version", nullable = false)
+    private int masterKeyVersion = 1;
+
     public CardEncryptionKey(String encryptedKey) {
         this.encryptedKey = encryptedKey;
     }
 
+    public CardEncryptionKey(String encryptedKey, int masterKeyVersion) {
+        this.encryptedKey = encryptedKey;
+        this.masterKeyVersion = masterKeyVersion;
+    }
+
     public CardEncryptionKey() {}
 }
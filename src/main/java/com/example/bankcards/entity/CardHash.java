@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Setter
@@ -19,11 +20,20 @@ public class CardHash {
     @Column(name = "hmac_hash", unique = true, nullable = false)
     private String hmacHash;
 
+    // Не null, пока номер лежит в пуле зарезервированных номеров и ещё не выдан карте
+    @Column(name = "reserved_at")
+    private LocalDateTime reservedAt;
+
     // Конструкторы
     public CardHash() {}
 
     public CardHash(String hmacHash) {
         this.hmacHash = hmacHash;
     }
+
+    public CardHash(String hmacHash, LocalDateTime reservedAt) {
+        this.hmacHash = hmacHash;
+        this.reservedAt = reservedAt;
+    }
 }
 
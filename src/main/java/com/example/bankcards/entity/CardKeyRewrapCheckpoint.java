@@ -0,0 +1,38 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Прогресс перешифрования ключей карт под мастер-ключ версии targetVersion
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "card_key_rewrap_checkpoint")
+public class CardKeyRewrapCheckpoint {
+    @Id
+    @Column(name = "target_version")
+    private Integer targetVersion;
+
+    // id последнего обработанного ключа (ключи обходятся по возрастанию id)
+    @Column(name = "last_id")
+    private UUID lastId;
+
+    @Column(nullable = false)
+    private long rewrapped;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public CardKeyRewrapCheckpoint(Integer targetVersion) {
+        this.targetVersion = targetVersion;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Позиция фоновой задачи consumer в журнале card_ledger (записи обходятся по возрастанию id)
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "card_ledger_cursor")
+public class CardLedgerCursor {
+    @Id
+    @Column(length = 50)
+    private String consumer;
+
+    // id последней обработанной записи
+    @Column(name = "last_id")
+    private UUID lastId;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public CardLedgerCursor(String consumer) {
+        this.consumer = consumer;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Запись журнала операций по карте. Записи только добавляются и никогда не изменяются
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "card_ledger", indexes = {
+        @Index(name = "idx_card_ledger_card_id", columnList = "card_id, id"),
+        @Index(name = "idx_card_ledger_history", columnList = "card_id, created_at DESC, id DESC")
+})
+public class CardLedgerEntry {
+    // UUID v7 - возрастает со временем создания записи
+    @Id
+    private UUID id;
+
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    // Общий для записей одной операции (обе стороны перевода)
+    @Column(name = "operation_id", nullable = false)
+    private UUID operationId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Type type;
+
+    // Изменение баланса в копейках: положительное при зачислении, отрицательное при списании
+    @Column(nullable = false)
+    private long amount;
+
+    // Вторая карта перевода
+    @Column(name = "counterparty_card_id")
+    private UUID counterpartyCardId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Type {
+        DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT
+    }
+}
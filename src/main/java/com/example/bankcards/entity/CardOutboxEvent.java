@@ -0,0 +1,37 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Событие изменения карты (outbox): пишется в транзакции изменения, доставляется получателям фоновой задачей
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "card_outbox", indexes = @Index(name = "idx_card_outbox_created_at", columnList = "created_at"))
+public class CardOutboxEvent {
+    // UUID v7 - события упорядочены по времени создания
+    @Id
+    private UUID id;
+
+    @Column(name = "card_id", nullable = false)
+    private UUID cardId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private Type type;
+
+    // JSON с полями события (зависит от типа)
+    @Column(columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Type {
+        CARD_CREATED, STATUS_CHANGED, BALANCE_CHANGED, CARD_DELETED
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Позиция получателя событий (CardEventSink) в card_outbox (события обходятся по возрастанию id)
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "card_outbox_sink_position")
+public class CardOutboxSinkPosition {
+    @Id
+    @Column(length = 50)
+    private String sink;
+
+    // id последнего доставленного события
+    @Column(name = "last_id")
+    private UUID lastId;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public CardOutboxSinkPosition(String sink) {
+        this.sink = sink;
+    }
+}
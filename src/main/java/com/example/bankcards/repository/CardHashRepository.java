@@ -1,15 +1,37 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.CardHash;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface CardHashRepository extends JpaRepository<CardHash, UUID> {
     boolean existsByHmacHash(String hmacHash);
 
     @Modifying
     void deleteByHmacHash(String hmacHash);
-}
 
+    /** Потоковое чтение всех хэшей (для построения фильтра). Вызывать внутри транзакции, поток закрывать */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "5000"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT h.hmacHash FROM CardHash h")
+    Stream<String> streamAllHmacHashes();
+
+    /** Снимает резерв с номера. Возвращает 0, если резерв уже снят или номер был освобождён по истечении срока */
+    @Modifying
+    @Query("UPDATE CardHash h SET h.reservedAt = null WHERE h.id = :id AND h.reservedAt IS NOT NULL")
+    int claimReserved(@Param("id") UUID id);
+
+    List<CardHash> findByReservedAtBefore(LocalDateTime reservedBefore, Pageable pageable);
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardKeyRewrapCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CardKeyRewrapCheckpointRepository extends JpaRepository<CardKeyRewrapCheckpoint, Integer> {
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardLedgerCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CardLedgerCursorRepository extends JpaRepository<CardLedgerCursor, String> {
+}
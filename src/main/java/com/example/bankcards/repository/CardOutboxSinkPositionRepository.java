@@ -0,0 +1,7 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardOutboxSinkPosition;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CardOutboxSinkPositionRepository extends JpaRepository<CardOutboxSinkPosition, String> {
+}
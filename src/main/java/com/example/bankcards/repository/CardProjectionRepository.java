@@ -0,0 +1,42 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/** Выборка только нужных колонок карты - для списка карт с параметром fields */
+public interface CardProjectionRepository {
+
+    /**
+     * Читает страницу карт по спецификации, выбирая id и колонки из columns (сущности не создаются).
+     * Владелец присоединяется только для OWNER_LOGIN, запрос количества не выполняется.
+     */
+    Slice<CardRow> findRows(Specification<Card> spec, Pageable pageable, Set<CardColumn> columns);
+
+    /**
+     * Потоковое чтение всех карт по спецификации в порядке sort курсором вперёд с заданным fetch size.
+     * Вызывать внутри транзакции (иначе PostgreSQL читает весь результат сразу), поток закрывать.
+     */
+    Stream<CardRow> streamRows(Specification<Card> spec, Sort sort, Set<CardColumn> columns, int fetchSize);
+
+    enum CardColumn {
+        LAST_FOUR, VALIDITY_PERIOD, STATUS, BALANCE, OWNER_LOGIN
+    }
+
+    /** Строка выборки; невыбранные колонки равны null */
+    record CardRow(UUID id, String lastFour, LocalDate validityPeriod, Card.Status status, Long balance,
+                   Long slotsBalance, String ownerLogin) {
+
+        /** Баланс с учётом слотов разделённого баланса (как Card.getTotalBalance) */
+        public long totalBalance() {
+            return (balance != null ? balance : 0) + (slotsBalance != null ? slotsBalance : 0);
+        }
+    }
+}
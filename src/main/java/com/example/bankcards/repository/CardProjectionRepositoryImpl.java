@@ -0,0 +1,111 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static com.example.bankcards.repository.CardProjectionRepository.CardColumn.*;
+
+/**
+ * Реализация CardProjectionRepository на Criteria API (tuple-запрос).
+ *
+ * Нюансы:
+ * - Спецификации те же, что у выдачи сущностей (фильтры, keyset-курсор), поэтому результаты совпадают.
+ * - Без OWNER_LOGIN таблица владельцев в запрос не попадает: фильтр по владельцу сравнивает user_id карты.
+ * - Читается на одну строку больше размера страницы - так без count(*) известно, есть ли следующая.
+ * - streamRows читает курсором вперёд (fetch size, read-only): в памяти только текущая порция строк,
+ *   сущности не создаются и контекст персистентности не растёт.
+ */
+@RequiredArgsConstructor
+public class CardProjectionRepositoryImpl implements CardProjectionRepository {
+    private final EntityManager entityManager;
+
+    @Override
+    public Slice<CardRow> findRows(Specification<Card> spec, Pageable pageable, Set<CardColumn> columns) {
+        List<Tuple> tuples = createQuery(spec, pageable.getSort(), columns)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        boolean hasNext = tuples.size() > pageable.getPageSize();
+        List<CardRow> rows = tuples.stream()
+                .limit(pageable.getPageSize())
+                .map(tuple -> toRow(tuple, columns))
+                .toList();
+        return new SliceImpl<>(rows, pageable, hasNext);
+    }
+
+    @Override
+    public Stream<CardRow> streamRows(Specification<Card> spec, Sort sort, Set<CardColumn> columns, int fetchSize) {
+        return createQuery(spec, sort, columns)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .map(tuple -> toRow(tuple, columns));
+    }
+
+    private TypedQuery<Tuple> createQuery(Specification<Card> spec, Sort sort, Set<CardColumn> columns) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Card> root = query.from(Card.class);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root.get("id").alias("id"));
+        if (columns.contains(LAST_FOUR)) {
+            selections.add(root.get("lastFour").alias("lastFour"));
+        }
+        if (columns.contains(VALIDITY_PERIOD)) {
+            selections.add(root.get("validityPeriod").alias("validityPeriod"));
+        }
+        if (columns.contains(STATUS)) {
+            selections.add(root.get("status").alias("status"));
+        }
+        if (columns.contains(BALANCE)) {
+            selections.add(root.get("balance").alias("balance"));
+            selections.add(root.get("slotsBalance").alias("slotsBalance"));
+        }
+        if (columns.contains(OWNER_LOGIN)) {
+            selections.add(root.join("owner").get("login").alias("ownerLogin"));
+        }
+        query.multiselect(selections);
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query);
+    }
+
+    private static CardRow toRow(Tuple tuple, Set<CardColumn> columns) {
+        return new CardRow(
+                tuple.get("id", UUID.class),
+                columns.contains(LAST_FOUR) ? tuple.get("lastFour", String.class) : null,
+                columns.contains(VALIDITY_PERIOD) ? tuple.get("validityPeriod", LocalDate.class) : null,
+                columns.contains(STATUS) ? tuple.get("status", Card.Status.class) : null,
+                columns.contains(BALANCE) ? tuple.get("balance", Long.class) : null,
+                columns.contains(BALANCE) ? tuple.get("slotsBalance", Long.class) : null,
+                columns.contains(OWNER_LOGIN) ? tuple.get("ownerLogin", String.class) : null);
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.specification.CardSpecifications;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -11,29 +15,57 @@ import org.springframework.stereotype.Repository;
 
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, UUID>, JpaSpecificationExecutor<Card> {
+public interface CardRepository extends JpaRepository<Card, UUID>, JpaSpecificationExecutor<Card>, CardRepositoryCustom,
+        CardProjectionRepository {
 
     Card findCardById(UUID id);
 
+    // Карта вместе с ключом шифрования - для путей, которые расшифровывают номер
+    @EntityGraph(attributePaths = "encryptionKey")
+    Optional<Card> findWithEncryptionKeyById(UUID id);
+
+    @EntityGraph(attributePaths = "encryptionKey")
+    List<Card> findWithEncryptionKeyByIdIn(Collection<UUID> ids);
+
+    /**
+     * Страница списка карт одним запросом: владелец и ключ подтягиваются join fetch,
+     * запрос количества не выполняется (Slice)
+     */
+    default Slice<Card> findSlice(Specification<Card> spec, Pageable pageable) {
+        return findBy(spec.and(CardSpecifications.fetchDetails()), query -> query.slice(pageable));
+    }
+
     boolean existsCardById(UUID id);
 
+    // ключ на стороне mappedBy загружается всегда - берём его тем же запросом, а не по запросу на карту
+    @EntityGraph(attributePaths = "encryptionKey")
     List<Card> findByValidityPeriodBeforeAndStatus(LocalDate now, Card.Status status);
 
+    @EntityGraph(attributePaths = "encryptionKey")
+    List<Card> findByLastFourIsNull(Pageable pageable);
+
+    // продолжение обхода карт без last_four после lastId (порядок задаёт pageable)
+    @EntityGraph(attributePaths = "encryptionKey")
+    List<Card> findByLastFourIsNullAndIdGreaterThan(UUID lastId, Pageable pageable);
+
     @Modifying
     @Query("UPDATE Card c SET c.status = :newStatus WHERE c.id = :id")
     void updateCardStatus(UUID id, Card.Status newStatus);
 
+    @EntityGraph(Card.DETAILS_GRAPH)
     List<Card> findByOwnerId(UUID ownerId, Pageable pageable);
 
     List<Card> findByOwnerId(UUID ownerId);
 
     @Modifying
     @Query("UPDATE Card c SET c.balance = :newBalance WHERE c.id = :id")
-    void updateCardBalance(UUID id, double newBalance);
+    void updateCardBalance(UUID id, long newBalance);
 
     @Modifying
     @Query(value = """
@@ -45,8 +77,9 @@ public interface CardRepository extends JpaRepository<Card, UUID>, JpaSpecificat
     END
     WHERE id IN (:fromId, :toId)
     """, nativeQuery = true)
-    void transferMoney(@Param("fromId") UUID fromId, @Param("toId") UUID toId, @Param("amount") double amount);
+    void transferMoney(@Param("fromId") UUID fromId, @Param("toId") UUID toId, @Param("amount") long amount);
 
 
+    @EntityGraph(Card.DETAILS_GRAPH)
     List<Card> findByOwnerIdAndStatus(UUID ownerId, Card.Status status, Pageable pageable);
 }
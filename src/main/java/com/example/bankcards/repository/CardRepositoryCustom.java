@@ -0,0 +1,64 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/** Атомарные операции с балансом карты (в копейках): проверка условий и изменение баланса - одним SQL-запросом */
+public interface CardRepositoryCustom {
+
+    /**
+     * Списывает amount с карты, если карта принадлежит ownerId, активна, не просрочена на дату today,
+     * на ней достаточно средств и её баланс не разделён на слоты.
+     *
+     * @return новый баланс или пустой результат, если хотя бы одно условие не выполнено (карта не изменена)
+     */
+    OptionalLong withdraw(UUID cardId, UUID ownerId, long amount, LocalDate today);
+
+    /**
+     * Зачисляет amount на карту, если карта принадлежит ownerId, активна, не просрочена на дату today,
+     * баланс не переполнится и не разделён на слоты.
+     *
+     * @return новый баланс или пустой результат, если хотя бы одно условие не выполнено (карта не изменена)
+     */
+    OptionalLong deposit(UUID cardId, UUID ownerId, long amount, LocalDate today);
+
+    /**
+     * Блокирует строки карт (SELECT ... FOR UPDATE) до конца текущей транзакции.
+     * Строки блокируются в порядке возрастания id, поэтому транзакции, блокирующие пересекающиеся
+     * наборы карт, не могут взаимно заблокировать друг друга.
+     * У карт с разделённым балансом слоты не блокируются: возвращается полный баланс карты с суммой слотов,
+     * прочитанной без блокировки (параллельно её могут менять операции с отдельными слотами).
+     *
+     * @return заблокированные карты в порядке возрастания id (отсутствующих карт в списке нет)
+     */
+    List<LockedCard> lockForUpdate(Collection<UUID> cardIds);
+
+    /**
+     * Прибавляет к балансу каждой карты её дельту (отрицательную при списании); обычные карты - одним JDBC-пакетом.
+     * Условия не проверяются: вызывающий код должен заранее заблокировать карты через lockForUpdate
+     * и проверить результат, cards - заблокированные им карты.
+     * Разделённым картам зачисление идёт в случайный слот, списание - с card.balance или одного слота;
+     * слоты сводятся в card.balance, только если ни одного из них не хватает.
+     *
+     * @throws org.springframework.dao.OptimisticLockingFailureException если после сведения слотов средств
+     *         не хватило (их успели списать операции с отдельными слотами) - транзакцию нужно повторить
+     */
+    void applyBalanceDeltas(Collection<LockedCard> cards, Map<UUID, Long> deltas);
+
+    /**
+     * Блокирует слоты карты, уже заблокированной через lockForUpdate, и переносит их средства в card.balance.
+     *
+     * @return перенесённая сумма
+     */
+    long collectBalanceSlots(UUID cardId);
+
+    /** Поля карты, нужные для проверки операции с балансом, прочитанные под блокировкой */
+    record LockedCard(UUID id, UUID ownerId, Card.Status status, LocalDate validityPeriod, long balance,
+                      int balanceSlots) {}
+}
@@ -0,0 +1,212 @@
+package com.example.bankcards.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.bankcards.entity.Card;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Реализация CardRepositoryCustom на JdbcTemplate.
+ *
+ * Нюансы:
+ * - Условия (владелец, статус, срок действия, достаточность средств) проверяются в WHERE самого UPDATE,
+ *   поэтому между чтением и записью баланса нет окна для потерянных обновлений, а блокировка строки
+ *   держится только на время выполнения запроса.
+ * - Новый баланс возвращается тем же запросом: RETURNING в PostgreSQL, SELECT ... FROM FINAL TABLE в H2.
+ * - lockForUpdate блокирует строки в порядке id (ORDER BY ... FOR UPDATE) и читает только колонки,
+ *   нужные для проверки перевода, без загрузки сущностей и связанных с ними владельца и ключа.
+ * - Слоты разделённого баланса блокируются только после строк карт (тот же порядок, что у CardBalanceSplitService),
+ *   операции с одним слотом не ждут строку карты, поэтому взаимных блокировок нет.
+ * - Зачисление на разделённую карту меняет один случайный слот, списание - card.balance или один слот;
+ *   все слоты блокируются и сводятся в card.balance, только если ни одного из них не хватает.
+ */
+@RequiredArgsConstructor
+public class CardRepositoryCustomImpl implements CardRepositoryCustom {
+    private static final String WITHDRAW = """
+            UPDATE card SET balance = balance - ?
+            WHERE id = ? AND user_id = ? AND status = 'ACTIVE' AND validity_period >= ? AND balance >= ?
+            AND balance_slots = 0""";
+    private static final String DEPOSIT = """
+            UPDATE card SET balance = balance + ?
+            WHERE id = ? AND user_id = ? AND status = 'ACTIVE' AND validity_period >= ? AND balance <= ?
+            AND balance_slots = 0""";
+
+    private static final String LOCK_FOR_UPDATE = """
+            SELECT id, user_id, status, validity_period, balance, balance_slots FROM card
+            WHERE id IN (%s) ORDER BY id FOR UPDATE""";
+    private static final String SLOT_SUMS = """
+            SELECT card_id, SUM(balance) AS balance FROM card_balance_slot
+            WHERE card_id IN (%s) GROUP BY card_id""";
+    private static final String LOCK_SLOTS = "SELECT balance FROM card_balance_slot WHERE card_id = ? ORDER BY slot FOR UPDATE";
+    private static final String CLEAR_SLOTS = "UPDATE card_balance_slot SET balance = 0 WHERE card_id = ? AND balance <> 0";
+    private static final String SLOTS_WITH_FUNDS = "SELECT slot FROM card_balance_slot WHERE card_id = ? AND balance >= ?";
+    private static final String ADD_TO_SLOT = """
+            UPDATE card_balance_slot SET balance = balance + ?
+            WHERE card_id = ? AND slot = ? AND balance <= ?""";
+    private static final String SUBTRACT_FROM_SLOT = """
+            UPDATE card_balance_slot SET balance = balance - ?
+            WHERE card_id = ? AND slot = ? AND balance >= ?""";
+
+    private static final String ADD_TO_BALANCE = "UPDATE card SET balance = balance + ? WHERE id = ?";
+    private static final String SUBTRACT_FROM_BALANCE = "UPDATE card SET balance = balance - ? WHERE id = ? AND balance >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+    @Override
+    public OptionalLong withdraw(UUID cardId, UUID ownerId, long amount, LocalDate today) {
+        return updateReturningBalance(WITHDRAW, amount, cardId, ownerId, today, amount);
+    }
+
+    @Override
+    public OptionalLong deposit(UUID cardId, UUID ownerId, long amount, LocalDate today) {
+        return updateReturningBalance(DEPOSIT, amount, cardId, ownerId, today, Long.MAX_VALUE - amount);
+    }
+
+    @Override
+    public List<LockedCard> lockForUpdate(Collection<UUID> cardIds) {
+        if (cardIds.isEmpty()) {
+            return List.of();
+        }
+        String sql = LOCK_FOR_UPDATE.formatted(placeholders(cardIds.size()));
+        List<LockedCard> cards = jdbcTemplate.query(sql, (rs, rowNum) -> new LockedCard(
+                rs.getObject("id", UUID.class),
+                rs.getObject("user_id", UUID.class),
+                Card.Status.valueOf(rs.getString("status")),
+                rs.getObject("validity_period", LocalDate.class),
+                rs.getLong("balance"),
+                rs.getInt("balance_slots")), cardIds.toArray());
+
+        List<UUID> splitIds = new ArrayList<>();
+        for (LockedCard card : cards) {
+            if (card.balanceSlots() > 0) {
+                splitIds.add(card.id());
+            }
+        }
+        return splitIds.isEmpty() ? cards : addSlotSums(cards, splitIds);
+    }
+
+    // Прибавляет к балансу разделённых карт сумму их слотов, прочитанную без блокировки слотов
+    private List<LockedCard> addSlotSums(List<LockedCard> cards, List<UUID> splitIds) {
+        Map<UUID, Long> slotSums = new HashMap<>();
+        jdbcTemplate.query(SLOT_SUMS.formatted(placeholders(splitIds.size())), rs -> {
+            slotSums.put(rs.getObject("card_id", UUID.class), rs.getLong("balance"));
+        }, splitIds.toArray());
+
+        List<LockedCard> withSlots = new ArrayList<>(cards.size());
+        for (LockedCard card : cards) {
+            long sum = slotSums.getOrDefault(card.id(), 0L);
+            withSlots.add(sum == 0 ? card : new LockedCard(card.id(), card.ownerId(), card.status(),
+                    card.validityPeriod(), card.balance() + sum, card.balanceSlots()));
+        }
+        return withSlots;
+    }
+
+    @Override
+    public long collectBalanceSlots(UUID cardId) {
+        long sum = 0;
+        for (Long balance : jdbcTemplate.queryForList(LOCK_SLOTS, Long.class, cardId)) {
+            sum += balance;
+        }
+        if (sum != 0) {
+            jdbcTemplate.update(CLEAR_SLOTS, cardId);
+            jdbcTemplate.update(ADD_TO_BALANCE, sum, cardId);
+        }
+        return sum;
+    }
+
+    @Override
+    public void applyBalanceDeltas(Collection<LockedCard> cards, Map<UUID, Long> deltas) {
+        Map<UUID, Integer> slots = new HashMap<>();
+        for (LockedCard card : cards) {
+            if (card.balanceSlots() > 0) {
+                slots.put(card.id(), card.balanceSlots());
+            }
+        }
+
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((cardId, delta) -> {
+            if (delta == 0) {
+                return;
+            }
+            Integer cardSlots = slots.get(cardId);
+            if (cardSlots == null) {
+                args.add(new Object[]{delta, cardId});
+            } else if (delta > 0) {
+                addToSlot(cardId, cardSlots, delta);
+            } else {
+                subtractFromSplit(cardId, -delta);
+            }
+        });
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_TO_BALANCE, args);
+        }
+    }
+
+    // Зачисление на случайный слот; если слота нет или он переполнится - на card.balance (строка карты уже заблокирована)
+    private void addToSlot(UUID cardId, int slots, long amount) {
+        int slot = ThreadLocalRandom.current().nextInt(slots);
+        if (jdbcTemplate.update(ADD_TO_SLOT, amount, cardId, slot, Long.MAX_VALUE - amount) == 0) {
+            jdbcTemplate.update(ADD_TO_BALANCE, amount, cardId);
+        }
+    }
+
+    /**
+     * Списание с разделённой карты: с card.balance, иначе с одного слота, иначе со сведённых в card.balance слотов.
+     * Баланс проверялся по сумме слотов, прочитанной без их блокировки; если её успели уменьшить списания
+     * с отдельных слотов, бросается OptimisticLockingFailureException - транзакция повторяется с новым балансом.
+     */
+    private void subtractFromSplit(UUID cardId, long amount) {
+        if (jdbcTemplate.update(SUBTRACT_FROM_BALANCE, amount, cardId, amount) > 0) {
+            return;
+        }
+        List<Integer> candidates = jdbcTemplate.queryForList(SLOTS_WITH_FUNDS, Integer.class, cardId, amount);
+        if (!candidates.isEmpty()) {
+            int slot = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+            if (jdbcTemplate.update(SUBTRACT_FROM_SLOT, amount, cardId, slot, amount) > 0) {
+                return;
+            }
+        }
+        collectBalanceSlots(cardId);
+        if (jdbcTemplate.update(SUBTRACT_FROM_BALANCE, amount, cardId, amount) == 0) {
+            throw new OptimisticLockingFailureException("Balance slots of card " + cardId + " changed concurrently");
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private OptionalLong updateReturningBalance(String update, Object... args) {
+        String sql = isPostgres()
+                ? update + " RETURNING balance"
+                : "SELECT balance FROM FINAL TABLE (" + update + ")";
+        List<Long> balance = jdbcTemplate.queryForList(sql, Long.class, args);
+        return balance.isEmpty() ? OptionalLong.empty() : OptionalLong.of(balance.get(0));
+    }
+
+    // Диалект определяется один раз по метаданным соединения (prod - PostgreSQL, dev - H2)
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName()));
+            postgres = result;
+        }
+        return Boolean.TRUE.equals(result);
+    }
+}
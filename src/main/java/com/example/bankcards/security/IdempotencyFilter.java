@@ -0,0 +1,222 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.ErrorResponse;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.service.IdempotencyService.StoredResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Обрабатывает заголовок Idempotency-Key для операций с балансом: повтор запроса с тем же ключом
+ * получает сохранённый ответ первого выполнения, а не выполняет операцию снова.
+ *
+ * Нюансы:
+ * - Фильтр выполняется после Spring Security, ключ принадлежит пользователю из JWT.
+ * - Тело запроса читается один раз и передаётся дальше из памяти, ответ перехватывается ContentCachingResponseWrapper.
+ * - Запросы без заголовка и остальные эндпоинты обрабатываются как обычно.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 100;
+
+    // Метод и путь операций, поддерживающих Idempotency-Key
+    private static final List<String[]> ENDPOINTS = List.of(
+            new String[]{"PUT", "/api/cards/*/balance"},
+            new String[]{"POST", "/api/cards/transfer"},
+            new String[]{"POST", "/api/cards/transfers/batch"});
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(@NotNull HttpServletRequest request) {
+        if (request.getHeader(HEADER) == null) {
+            return true;
+        }
+        for (String[] endpoint : ENDPOINTS) {
+            if (endpoint[0].equals(request.getMethod()) && PATH_MATCHER.match(endpoint[1], request.getRequestURI())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(
+        @NotNull HttpServletRequest request,
+        @NotNull HttpServletResponse response,
+        @NotNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        UUID userId = currentUserId();
+        if (userId == null) {
+            // неаутентифицированный запрос отклоняет Spring Security
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid Idempotency-Key");
+            return;
+        }
+
+        byte[] body = request.getInputStream().readAllBytes();
+        String requestHash = requestHash(request, body);
+
+        StoredResponse result;
+        try {
+            result = idempotencyService.execute(userId, key, requestHash, () -> {
+                ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+                try {
+                    filterChain.doFilter(new CachedBodyRequest(request, body), captured);
+                } catch (IOException | ServletException e) {
+                    throw new ChainException(e);
+                }
+                return new StoredResponse(captured.getStatus(), captured.getContentType(),
+                        captured.getContentAsByteArray(), false);
+            });
+        } catch (ChainException e) {
+            if (e.getCause() instanceof ServletException servletException) {
+                throw servletException;
+            }
+            throw (IOException) e.getCause();
+        }
+
+        if (response.isCommitted()) {
+            // ответ уже отправлен (например, через sendError) - дописывать нечего
+            return;
+        }
+        response.setStatus(result.status());
+        if (result.contentType() != null) {
+            response.setContentType(result.contentType());
+        }
+        if (result.replayed()) {
+            response.setHeader(REPLAYED_HEADER, "true");
+        }
+        response.setContentLength(result.body().length);
+        response.getOutputStream().write(result.body());
+    }
+
+    private static UUID currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return null;
+        }
+        try {
+            return UUID.fromString(authentication.getName());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // SHA-256 от метода, пути и тела: повтор ключа с другим запросом не должен получить чужой ответ
+    private static String requestHash(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + ' ' + request.getRequestURI() + '\n').getBytes(StandardCharsets.UTF_8));
+            digest.update(body);
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Internal Error");
+        }
+    }
+
+    private void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(objectMapper.writeValueAsBytes(new ErrorResponse(message, status)));
+    }
+
+    // Запрос с уже прочитанным телом
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // тело уже в памяти: данные доступны сразу, слушатель вызывается в этом же потоке
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+
+    // Переносит проверяемые исключения цепочки фильтров через Supplier
+    private static final class ChainException extends RuntimeException {
+        ChainException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Разделённый баланс для "горячих" карт: часть баланса хранится в N строках card_balance_slot,
+ * баланс карты = card.balance + сумма слотов.
+ *
+ * Нюансы:
+ * - Пополнение меняет один случайный слот, списание - слот, на котором хватает средств. Строка card
+ *   при этом не блокируется, поэтому параллельные операции с одной картой расходятся по разным строкам.
+ * - Если подходящего слота нет, операция выполняется под блокировкой карты, как и переводы: зачисление
+ *   по-прежнему идёт в случайный слот, а списание, которому не хватает ни card.balance, ни одного слота,
+ *   блокирует все слоты и переносит их средства в card.balance (CardRepository.applyBalanceDeltas).
+ * - Слоты не бывают отрицательными, поэтому списание с одного слота не может увести баланс карты в минус.
+ * - Фоновая задача сведения периодически распределяет баланс карты поровну по слотам, чтобы списаниям
+ *   снова хватало средств одного слота.
+ */
+public interface CardBalanceSplitService {
+
+    /**
+     * Включает разделение баланса карты на slots слотов, меняет их количество или выключает разделение (slots = 0).
+     * Средства слотов переносятся в card.balance, новые слоты создаются пустыми.
+     *
+     * @throws com.example.bankcards.exception.BadRequestException если количество слотов вне допустимого диапазона
+     * @throws com.example.bankcards.exception.NotFoundException если карта не найдена
+     */
+    void updateSplit(UUID cardId, int slots);
+
+    /** Читает (без блокировки) карту, если её баланс разделён на слоты */
+    Optional<SplitCard> findSplitCard(UUID cardId);
+
+    /**
+     * Зачисляет amount в случайный слот карты. Вызывается в транзакции после проверки карты.
+     *
+     * @return новый баланс карты или пустой результат, если слота уже нет (разделение выключено или изменено)
+     */
+    OptionalLong depositToSlot(UUID cardId, int slots, long amount);
+
+    /**
+     * Списывает amount со случайного слота карты, на котором достаточно средств. Вызывается в транзакции после проверки карты.
+     *
+     * @return новый баланс карты или пустой результат, если ни на одном слоте нет нужной суммы
+     */
+    OptionalLong withdrawFromSlot(UUID cardId, long amount);
+
+    /** Фоновая задача: распределяет баланс разделённых карт поровну по слотам (каждая карта - отдельной транзакцией) */
+    void consolidateSplits();
+
+    /** Поля карты, нужные для проверки операции с разделённым балансом */
+    record SplitCard(UUID id, UUID ownerId, Card.Status status, LocalDate validityPeriod, int slots) {}
+}
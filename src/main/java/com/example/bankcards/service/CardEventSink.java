@@ -0,0 +1,22 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardEventResponse;
+
+import java.util.List;
+
+/**
+ * Получатель событий изменения карт. Реализации - Spring-бины, их находит CardOutboxService.
+ *
+ * Нюансы:
+ * - name() используется как имя позиции получателя в card_outbox_sink_position, поэтому не должно меняться.
+ * - publish вызывается из одного потока фоновой задачи. Исключение означает, что пачка не доставлена:
+ *   позиция не сдвигается, и та же пачка будет передана повторно.
+ */
+public interface CardEventSink {
+
+    String name();
+
+    boolean isEnabled();
+
+    void publish(List<CardEventResponse> events);
+}
@@ -0,0 +1,44 @@
+package com.example.bankcards.service;
+
+/**
+ * Вероятностное множество HMAC-хэшей номеров карт (фильтр Блума над card_hash).
+ * Позволяет не ходить в базу при проверке уникальности, когда номер точно не встречался.
+ */
+public interface CardHashFilter {
+
+    /**
+     * Проверяет, мог ли хэш уже быть выдан.
+     *
+     * Нюансы:
+     * - false означает, что хэша точно нет в card_hash, проверку в базе можно пропустить.
+     * - true - хэш возможно есть, нужна проверка в базе.
+     * - Пока фильтр не прогрет (или выключен), всегда возвращает true.
+     *
+     * @param digest HMAC-дайджест номера карты (32 байта)
+     */
+    boolean mightContain(byte[] digest);
+
+    /**
+     * Добавляет хэш выданного номера карты.
+     *
+     * @param digest HMAC-дайджест номера карты (32 байта)
+     */
+    void add(byte[] digest);
+
+    /**
+     * Учитывает удаление хэша.
+     *
+     * Нюансы:
+     * - Фильтр Блума не поддерживает удаление: бит остаётся установленным (лишь повышается доля ложноположительных ответов).
+     * - Когда доля удалений превышает card.hash-filter.rebuild-deletion-ratio, фильтр перестраивается.
+     *
+     * @param digest HMAC-дайджест номера удалённой карты
+     */
+    void remove(byte[] digest);
+
+    /**
+     * Перестраивает фильтр по текущему содержимому card_hash (например, после массового удаления карт).
+     * Во время перестроения используется прежний фильтр, новые хэши попадают в оба.
+     */
+    void rebuild();
+}
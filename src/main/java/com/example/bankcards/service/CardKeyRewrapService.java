@@ -0,0 +1,33 @@
+package com.example.bankcards.service;
+
+/**
+ * Перешифрование ключей карт под текущий мастер-ключ после его ротации.
+ *
+ * Порядок ротации:
+ * - новый ключ задаётся в security.card.number.key с увеличенной security.card.number.key-version,
+ *   прежний переносится в security.card.number.retired-keys;
+ * - новые ключи карт сразу шифруются новым мастер-ключом, старые читаются прежним;
+ * - фоновая задача перешифровывает старые ключи, после её завершения прежний мастер-ключ можно убрать.
+ */
+public interface CardKeyRewrapService {
+
+    /**
+     * Перешифровывает очередную пачку ключей карт, зашифрованных прежними мастер-ключами.
+     *
+     * Нюансы:
+     * - Ключи обходятся по возрастанию id (keyset-пагинация), позиция сохраняется в card_key_rewrap_checkpoint,
+     *   поэтому после перезапуска обход продолжается с того же места.
+     * - Каждая пачка - короткая транзакция; обновление условное (по прежним encrypted_key и версии),
+     *   поэтому параллельные изменения и повторный запуск на другом узле безопасны.
+     * - Блокируются только строки текущей пачки, чтение карт продолжает работать под обеими версиями ключа.
+     * - Проход не считается завершённым, пока под прежними мастер-ключами остаются ключи (вставленные позади курсора
+     *   или записанные узлом со старой конфигурацией): обход начинается сначала. Завершённый обход перепроверяется
+     *   на каждом запуске одним запросом.
+     *
+     * @return количество перешифрованных ключей; 0 - если ключей под прежними мастер-ключами не осталось
+     */
+    int rewrapNextBatch();
+
+    /** Фоновая задача: перешифровывает пачки до конца с паузой security.card.rewrap.pause-ms между ними */
+    void rewrapPending();
+}
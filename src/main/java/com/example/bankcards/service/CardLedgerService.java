@@ -0,0 +1,77 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardTransactionResponse;
+import com.example.bankcards.dto.CardTransferMoney;
+import com.example.bankcards.entity.Card;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Журнал операций по картам (card_ledger) и снимки балансов (card_balance_snapshot).
+ *
+ * Журнал только дополняется: каждое изменение card.balance записывается в той же транзакции,
+ * поэтому баланс карты всегда равен снимку плюс записи журнала после него.
+ */
+public interface CardLedgerService {
+
+    /**
+     * Записывает пополнение или списание в журнал одной вставкой.
+     * Вызывается в транзакции, изменившей баланс карты.
+     */
+    void recordBalanceChange(UUID cardId, Card.BalanceAction action, long amount);
+
+    /**
+     * Записывает несколько пополнений и списаний в журнал одним JDBC-пакетом.
+     * Вызывается в транзакции, изменившей балансы карт.
+     */
+    void recordBalanceChanges(List<BalanceChange> changes);
+
+    /**
+     * Записывает переводы в журнал: по две записи (списание и зачисление) на перевод, все - одним JDBC-пакетом.
+     * Вызывается в транзакции, выполнившей переводы.
+     */
+    void recordTransfers(List<CardTransferMoney> transfers);
+
+    /**
+     * Читает операции карты от новых к старым и передаёт их в consumer по мере чтения, без промежуточного списка.
+     *
+     * Нюансы:
+     * - Карта должна принадлежать ownerId: условие проверяется в том же запросе, иначе операций нет.
+     * - Страница начинается строго после (createdBefore, idBefore) в порядке (created_at, id) по убыванию;
+     *   оба значения null - первая страница. Запрос читает только индекс (card_id, created_at, id).
+     *
+     * @return количество переданных в consumer операций
+     */
+    int readHistory(UUID cardId, UUID ownerId, LocalDateTime createdBefore, UUID idBefore, int limit,
+                    Consumer<CardTransactionResponse> consumer);
+
+    /**
+     * Восстанавливает баланс карты по журналу: последний снимок плюс записи после него.
+     * Читается только "хвост" журнала карты по индексу (card_id, id), без воспроизведения всей истории.
+     *
+     * @throws com.example.bankcards.exception.NotFoundException если карта не найдена
+     */
+    long rebuildBalance(UUID cardId);
+
+    /**
+     * Переносит очередную пачку записей журнала в снимки балансов.
+     *
+     * Нюансы:
+     * - Записи обходятся по возрастанию id, позиция хранится в card_ledger_cursor в той же транзакции,
+     *   что и снимки, поэтому после перезапуска записи не учитываются повторно.
+     * - Берутся только записи старше card.ledger.snapshot.safety-lag-ms: id выдаётся до коммита,
+     *   и запись ещё не закоммиченной транзакции могла бы оказаться позади курсора.
+     *
+     * @return количество обработанных записей журнала; 0 - если новых записей нет
+     */
+    int snapshotNextBatch();
+
+    /** Фоновая задача: обновляет снимки балансов, пока в журнале есть необработанные записи */
+    void snapshotPending();
+
+    /** Пополнение или списание для пакетной записи в журнал */
+    record BalanceChange(UUID cardId, Card.BalanceAction action, long amount) {}
+}
@@ -0,0 +1,39 @@
+package com.example.bankcards.service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Пул заранее сгенерированных уникальных номеров карт.
+ * Номера резервируются в card_hash фоновой задачей, поэтому выпуск карты не тратит время на генерацию
+ * и проверку коллизий.
+ */
+public interface CardNumberPool {
+
+    /**
+     * Забирает номер из пула и снимает с него резерв в card_hash.
+     *
+     * Нюансы:
+     * - Выполняется в транзакции вызывающего (не в отдельной): если она откатится, резерв в card_hash
+     *   останется, а номер вернётся в начало пула и может быть выдан снова.
+     * - Пустой результат - пул пуст или выключен, номер нужно сгенерировать как обычно.
+     */
+    Optional<String> poll();
+
+    /**
+     * Генерирует count новых уникальных номеров и сразу регистрирует их в card_hash как выданные (минуя пул).
+     * Используется при массовом выпуске карт; выполняется в транзакции вызывающего.
+     *
+     * @throws RuntimeException если не удалось подобрать нужное количество уникальных номеров
+     */
+    List<String> generateIssued(int count);
+
+    /** Дополняет пул до card.number-pool.size, если в нём меньше card.number-pool.low-water-mark номеров */
+    void refill();
+
+    /** Освобождает резервы старше card.number-pool.reservation-ttl-seconds (например, оставшиеся после перезапуска) */
+    void reclaimExpired();
+
+    /** Количество номеров в пуле */
+    int size();
+}
@@ -0,0 +1,62 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardEventPage;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardOutboxEvent;
+import com.example.bankcards.util.json.MoneyJson;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * События изменения карт (transactional outbox, таблица card_outbox).
+ *
+ * Нюансы:
+ * - Событие записывается в той же транзакции, что и изменение карты: откат изменения откатывает и событие.
+ * - Фоновая задача (relay) передаёт события пачками всем включённым получателям (CardEventSink).
+ *   Позиция каждого получателя хранится в card_outbox_sink_position и сдвигается только после успешной доставки,
+ *   поэтому доставка "хотя бы один раз": после сбоя пачка может прийти повторно.
+ * - Читаются только события старше card.outbox.safety-lag-ms (по умолчанию 60 секунд, как у снимков журнала):
+ *   id выдаётся до коммита, и событие ещё не закоммиченной транзакции могло бы оказаться позади уже прочитанных.
+ *   Задержка должна быть больше самой долгой транзакции, меняющей карты, иначе её события будут пропущены.
+ */
+public interface CardOutboxService {
+
+    /** Записывает событие карты. payload сериализуется в JSON; null - событие без полей */
+    void record(UUID cardId, CardOutboxEvent.Type type, Object payload);
+
+    /** Записывает события одним JDBC-пакетом */
+    void recordAll(List<Event> events);
+
+    /**
+     * Читает события после курсора (null - с самого старого хранимого события).
+     *
+     * @return страница событий и курсор для следующего запроса
+     * @throws com.example.bankcards.exception.BadRequestException если курсор повреждён или limit вне диапазона
+     */
+    CardEventPage readEvents(String cursor, int limit);
+
+    /** Фоновая задача: доставляет новые события всем включённым получателям */
+    void relayPending();
+
+    /** Фоновая задача: удаляет события старше card.outbox.retention-hours */
+    void cleanUpExpired();
+
+    record Event(UUID cardId, CardOutboxEvent.Type type, Object payload) {}
+
+    /** Поля события CARD_CREATED */
+    record CardCreated(UUID ownerId, Card.Status status, LocalDate validityPeriod, String lastFour) {}
+
+    /** Поля события STATUS_CHANGED */
+    record StatusChanged(Card.Status status) {}
+
+    /** Поля события BALANCE_CHANGED: изменение (со знаком) и баланс после него */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record BalanceChanged(
+            @JsonSerialize(using = MoneyJson.Serializer.class) long amount,
+            @JsonSerialize(using = MoneyJson.Serializer.class) long balance,
+            UUID counterpartyCardId) {}
+}
@@ -2,4 +2,7 @@ package com.example.bankcards.service;
 
 public interface CardScheduler {
     void updateStatusToExpired();
+
+    /** Заполняет last_four у карт, созданных до появления этого столбца (порциями) */
+    void backfillLastFour();
 }
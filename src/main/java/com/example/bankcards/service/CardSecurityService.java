@@ -3,6 +3,7 @@ package com.example.bankcards.service;
 import com.example.bankcards.entity.CardEncryptionKey;
 
 import javax.crypto.SecretKey;
+import java.util.List;
 import java.util.UUID;
 
 
@@ -75,6 +76,18 @@ public interface CardSecurityService {
      */
     String encryptKey(SecretKey key);
 
+    /**
+     * Шифрует AES-ключ карты текущим мастер-ключом и возвращает его вместе с версией мастер-ключа.
+     *
+     * @param key AES-ключ карты
+     * @return новый (не сохранённый) CardEncryptionKey
+     * @throws RuntimeException при ошибке шифрования ключа
+     */
+    CardEncryptionKey wrapKey(SecretKey key);
+
+    /** Версия текущего мастер-ключа (security.card.number.key-version), им шифруются все новые ключи */
+    int currentMasterKeyVersion();
+
     /**
      * Расшифровывает зашифрованный AES-ключ с помощью мастер-ключа.
      *
@@ -87,17 +100,110 @@ public interface CardSecurityService {
      */
     SecretKey decryptKey(String encryptedKey);
 
+    /**
+     * Расшифровывает AES-ключ мастер-ключом указанной версии.
+     *
+     * Нюансы:
+     * - Прежние мастер-ключи задаются в security.card.number.retired-keys (версия: ключ в Base64)
+     *   и нужны, пока остаются ключи карт, зашифрованные ими.
+     *
+     * @param encryptedKey зашифрованный ключ в виде строки
+     * @param masterKeyVersion версия мастер-ключа, которым зашифрован ключ
+     * @return расшифрованный AES-ключ
+     * @throws RuntimeException если мастер-ключ такой версии неизвестен или при ошибке расшифрования
+     */
+    SecretKey decryptKey(String encryptedKey, int masterKeyVersion);
+
+    /**
+     * Расшифровывает ключ карты с помощью мастер-ключа, используя кэш расшифрованных ключей.
+     *
+     * Нюансы:
+     * - Кэш ограничен по размеру и времени жизни записей (security.card.key-cache.*).
+     * - Ключ в кэше идентифицируется по id объекта CardEncryptionKey; при вытеснении ключевой материал зануляется.
+     * - При удалении ключа через deleteEncryptedKey запись из кэша удаляется.
+     *
+     * @param encryptionKey объект зашифрованного ключа карты
+     * @return расшифрованный AES-ключ
+     * @throws RuntimeException при ошибке расшифрования ключа
+     */
+    SecretKey decryptKey(CardEncryptionKey encryptionKey);
+
+    /**
+     * Пакетно расшифровывает номера карт.
+     *
+     * Нюансы:
+     * - Расшифрование выполняется параллельно на ограниченном пуле (по числу ядер), порядок результатов
+     *   совпадает с порядком входных данных.
+     * - Небольшие пакеты обрабатываются в вызывающем потоке.
+     * - Если пакет не обработан за security.card.crypto.batch-timeout-ms, выбрасывается RuntimeException.
+     *
+     * @param numbers пары (зашифрованный номер, зашифрованный ключ карты)
+     * @return расшифрованные номера карт в том же порядке
+     * @throws RuntimeException при ошибке расшифрования или истечении времени ожидания
+     */
+    List<String> decryptNumbers(List<EncryptedNumber> numbers);
+
+    /**
+     * Пакетно шифрует новые номера карт: для каждого номера генерирует AES-ключ, шифрует им номер,
+     * а сам ключ шифрует мастер-ключом.
+     *
+     * Нюансы:
+     * - Выполняется параллельно на том же пуле, что и decryptNumbers; порядок результатов совпадает с порядком номеров.
+     * - Если пакет не обработан за security.card.crypto.batch-timeout-ms, выбрасывается RuntimeException.
+     *
+     * @param cardNumbers номера карт в открытом виде
+     * @return пары (зашифрованный номер, зашифрованный ключ) в том же порядке
+     * @throws RuntimeException при ошибке шифрования или истечении времени ожидания
+     */
+    List<EncryptedCard> encryptNumbers(List<String> cardNumbers);
+
+    /**
+     * Пакетно перешифровывает ключи карт текущим мастер-ключом (ротация мастер-ключа).
+     *
+     * Нюансы:
+     * - Выполняется параллельно на пуле криптоопераций, порядок результатов совпадает с порядком входных данных.
+     * - Сами ключи карт не меняются, поэтому номера карт перешифровывать не нужно.
+     *
+     * @param keys зашифрованные ключи с версиями мастер-ключей
+     * @return ключи, зашифрованные текущим мастер-ключом (версия - currentMasterKeyVersion)
+     * @throws RuntimeException если мастер-ключ какой-либо версии неизвестен или при ошибке шифрования
+     */
+    List<String> rewrapKeys(List<WrappedKey> keys);
+
     /**
      * Вычисляет HMAC (хэш с ключом) от переданных данных.
      *
      * Нюансы:
      * - Использует HMAC-SHA256 с предварительно загруженным ключом hmacKey.
+     * - Результат - Base64 от calculateHmacDigest, в таком виде хэши хранятся в card_hash.
      *
      * @param data строка для хэширования
      * @return HMAC-хэш в виде строки
      * @throws RuntimeException при ошибке хэширования (например, ошибка алгоритма или некорректный ключ)
      */
     String calculateHmac(String data);
+
+    /**
+     * Вычисляет HMAC-SHA256 от переданных данных и возвращает «сырой» 32-байтный дайджест.
+     *
+     * Нюансы:
+     * - Mac инициализируется ключом один раз (на поток), без повторного построения ключа на каждый вызов.
+     * - Эффективный ключ совпадает с тем, что использовался ранее, поэтому существующие хэши остаются валидными.
+     *
+     * @param data строка для хэширования (ASCII)
+     * @return HMAC-дайджест длиной 32 байта
+     * @throws RuntimeException при ошибке хэширования
+     */
+    byte[] calculateHmacDigest(String data);
+
+    /** Зашифрованный номер карты и зашифрованный ключ, которым он зашифрован */
+    record EncryptedNumber(String encryptedNumber, CardEncryptionKey encryptionKey) {}
+
+    /** Результат encryptNumbers: номер, зашифрованный ключом карты, и ключ карты, зашифрованный мастер-ключом */
+    record EncryptedCard(String encryptedNumber, String encryptedKey, int masterKeyVersion) {}
+
+    /** Ключ карты, зашифрованный мастер-ключом версии masterKeyVersion */
+    record WrappedKey(String encryptedKey, int masterKeyVersion) {}
 }
 
 
@@ -6,6 +6,7 @@ import com.example.bankcards.exception.NotFoundException;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface CardService {
 
@@ -26,6 +27,36 @@ public interface CardService {
      */
     CardCreateResponse createCard(CardCreateRequest body);
 
+    /**
+     * Массово выпускает карты.
+     *
+     * Нюансы:
+     * - Требуется роль ROLE_ADMIN.
+     * - Запрос проверяется сразу, а сам выпуск выполняется при вызове BulkIssue.issue, например при записи
+     *   потокового ответа - так ошибки запроса возвращаются обычным статусом до начала потока.
+     * - Карты выпускаются пачками по card.bulk.chunk-size, каждая пачка - в отдельной транзакции
+     *   (batch-вставки card, card_encryption_key, card_hash).
+     * - Генерация ключей и шифрование номеров пачки выполняются параллельно.
+     * - При ошибке уже закоммиченные пачки остаются выпущенными.
+     *
+     * @param body CardBulkCreateRequest - владельцы и количество карт
+     * @return выпуск карт по проверенному запросу
+     * @throws com.example.bankcards.exception.BadRequestException если запрос пустой, количество карт не положительное
+     * или превышает card.bulk.max-cards
+     * @throws com.example.bankcards.exception.NotFoundException если какой-либо владелец не найден
+     */
+    BulkIssue createCards(CardBulkCreateRequest body);
+
+    /** Выпуск карт по уже проверенному запросу */
+    @FunctionalInterface
+    interface BulkIssue {
+        /**
+         * @param onChunkCommitted получает id карт каждой пачки сразу после коммита
+         * @return количество выпущенных карт
+         */
+        int issue(Consumer<List<UUID>> onChunkCommitted);
+    }
+
     /**
      * Удаляет карту из системы вместе с сопутствующими данными.
      *
@@ -55,12 +86,36 @@ public interface CardService {
      * Нюансы:
      * - Если вызывающий администратор, можно указать id пользователя, иначе возвращаются карты текущего пользователя.
      * - При отсутствии пользователя выбрасывается NotFoundException.
+     * - Запрос количества карт не выполняется: читается на одну карту больше размера страницы,
+     *   чтобы понять, есть ли следующая.
+     * - С cursor страница ищется по ключу сортировки и id последней карты (keyset), а не через OFFSET,
+     *   поэтому время ответа не растёт с номером страницы. Курсор следующей страницы возвращается в обоих режимах.
+     * - С fields из базы читаются только колонки запрошенных полей (без сущностей); владелец присоединяется
+     *   только для поля owner, номер расшифровывается только для карт без last_four.
      *
      * @param cardFilter CardFilter - Query-параметры для поиска фильтрации
-     * @return список информации о картах (CardInfoResponse)
+     * @return страница информации о картах (CardInfoResponse) и курсор следующей страницы
      * @throws com.example.bankcards.exception.NotFoundException если admin ввел несуществующий userId
+     * @throws com.example.bankcards.exception.BadRequestException если курсор повреждён или выдан для другой сортировки
+     */
+    CardInfoPage getCards(CardFilter cardFilter);
+
+    /**
+     * Передаёт в consumer все карты, подходящие под фильтр админа, в порядке (sortBy, id).
+     *
+     * Нюансы:
+     * - Карты читаются одним запросом курсором вперёд (card.export.fetch-size строк за раз) без count и OFFSET;
+     *   в памяти держится только текущая порция, поэтому расход памяти не зависит от числа карт.
+     * - Читаются только колонки запрошенных полей (fields; без него - все поля), как в getCards.
+     * - Номера карт без last_four расшифровываются пакетом на порцию.
+     * - Выгрузка идёт в одной транзакции: медленный клиент держит её открытой до конца чтения.
+     *   page, size и cursor фильтра не используются.
+     *
+     * @param filter фильтры и сортировка
+     * @param consumer получатель карт; исключение из него прерывает выгрузку
+     * @return количество выгруженных карт
      */
-    List<CardInfoResponse> getCards(CardFilter cardFilter);
+    long exportCards(AdminCardFilter filter, Consumer<CardInfoResponse> consumer);
 
     /**
      * Переводит деньги с одной карты на другую.
@@ -74,6 +129,37 @@ public interface CardService {
      */
     void doMoneyTransfer(CardTransferMoney body);
 
+    /**
+     * Выполняет пакет переводов текущего пользователя в одной транзакции.
+     *
+     * Нюансы:
+     * - Каждый перевод проверяется так же, как в doMoneyTransfer, с учётом балансов после предыдущих переводов пакета.
+     * - ALL_OR_NOTHING: если отклонён хотя бы один перевод, не применяется ни один.
+     * - PER_ITEM: отклонённые переводы пропускаются, остальные применяются.
+     *
+     * @param body режим и список переводов
+     * @return результат по каждому переводу в порядке запроса
+     * @throws com.example.bankcards.exception.BadRequestException если пакет пуст или больше card.transfer.batch-max-items
+     */
+    CardBatchTransferResponse doMoneyTransfers(CardBatchTransferRequest body);
+
+    /**
+     * Передаёт в consumer страницу операций карты текущего пользователя, от новых к старым.
+     *
+     * Нюансы:
+     * - Keyset-пагинация: страница начинается после курсора (created_at, id) последней операции предыдущей,
+     *   поэтому любая страница стоит столько же, сколько первая.
+     * - Владелец проверяется в запросе страницы; отдельная загрузка карты выполняется только для пустой страницы,
+     *   чтобы вернуть ту же ошибку, что и checkIfCurrentUserIsCardOwner.
+     * - Операции передаются в consumer по мере чтения из БД.
+     *
+     * @return курсор следующей страницы или null, если страница последняя
+     * @throws com.example.bankcards.exception.BadRequestException если курсор повреждён или limit вне допустимых границ
+     * @throws com.example.bankcards.exception.NotFoundException если карта не найдена
+     * @throws org.springframework.security.access.AccessDeniedException если карта принадлежит другому пользователю
+     */
+    String getTransactions(UUID cardId, CardTransactionFilter filter, Consumer<CardTransactionResponse> consumer);
+
     /**
      * Обновляет баланс карты, выполняя списание или зачисление.
      *
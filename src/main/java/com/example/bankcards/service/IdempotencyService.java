@@ -0,0 +1,38 @@
+package com.example.bankcards.service;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Хранение результатов запросов по ключу идемпотентности (заголовок Idempotency-Key).
+ *
+ * Повтор запроса с тем же ключом не выполняет операцию заново, а получает сохранённый ответ.
+ */
+public interface IdempotencyService {
+
+    /**
+     * Выполняет action один раз для пары (userId, key) и возвращает его ответ; повторы получают тот же ответ.
+     *
+     * Нюансы:
+     * - Недавние ответы берутся из кэша в памяти, остальные - из таблицы idempotency_key по первичному ключу;
+     *   ни карты, ни их строки при повторе не затрагиваются.
+     * - Параллельные повторы на этом узле ждут завершения первого выполнения (не дольше card.idempotency.wait-timeout-ms).
+     * - Между узлами ключ резервируется вставкой строки до выполнения: повтор на другом узле опрашивает строку,
+     *   пока первый запрос не сохранит ответ, и получает 409, только если ждать пришлось дольше wait-timeout-ms.
+     * - Незавершённый резерв старше card.idempotency.in-progress-timeout-ms (узел упал до записи ответа)
+     *   считается брошенным: повтор перехватывает его и выполняет запрос.
+     * - Ответы 5xx не сохраняются (резерв снимается), такой запрос можно повторить.
+     * - Если ключ уже использован с другим запросом (другой requestHash), возвращается 422.
+     */
+    StoredResponse execute(UUID userId, String key, String requestHash, Supplier<StoredResponse> action);
+
+    /** Удаляет результаты старше card.idempotency.ttl-seconds */
+    void cleanUpExpired();
+
+    /**
+     * Ответ на запрос.
+     *
+     * @param replayed true - ответ взят из сохранённых, операция не выполнялась
+     */
+    record StoredResponse(int status, String contentType, byte[] body, boolean replayed) {}
+}
@@ -0,0 +1,44 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardEventResponse;
+import com.example.bankcards.service.CardEventSink;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Передаёт события слушателям внутри приложения: каждое событие публикуется как CardEventResponse,
+ * подписка - метод с @EventListener(CardEventResponse). Слушатели вызываются синхронно в потоке доставки.
+ */
+@Component
+@RequiredArgsConstructor
+public class ApplicationEventCardEventSink implements CardEventSink {
+    private boolean enabled;
+
+    private final Environment env;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostConstruct
+    void init() {
+        this.enabled = env.getProperty("card.outbox.sinks.listener.enabled", Boolean.class, true);
+    }
+
+    @Override
+    public String name() {
+        return "outbox-listener";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void publish(List<CardEventResponse> events) {
+        events.forEach(eventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepositoryCustom.LockedCard;
+import com.example.bankcards.service.CardBalanceSplitService;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CardBalanceSplitServiceImpl implements CardBalanceSplitService {
+    private static final String FIND_SPLIT_CARD = """
+            SELECT id, user_id, status, validity_period, balance_slots FROM card
+            WHERE id = ? AND balance_slots > 0""";
+    private static final String SLOTS_WITH_FUNDS = "SELECT slot FROM card_balance_slot WHERE card_id = ? AND balance >= ?";
+    private static final String ADD_TO_SLOT = """
+            UPDATE card_balance_slot SET balance = balance + ?
+            WHERE card_id = ? AND slot = ? AND balance <= ?""";
+    private static final String SUBTRACT_FROM_SLOT = """
+            UPDATE card_balance_slot SET balance = balance - ?
+            WHERE card_id = ? AND slot = ? AND balance >= ?""";
+    private static final String TOTAL_BALANCE = """
+            SELECT c.balance + COALESCE((SELECT SUM(s.balance) FROM card_balance_slot s WHERE s.card_id = c.id), 0)
+            FROM card c WHERE c.id = ?""";
+    private static final String SPLIT_CARD_IDS = "SELECT id FROM card WHERE balance_slots > 0";
+    private static final String DELETE_SLOTS = "DELETE FROM card_balance_slot WHERE card_id = ?";
+    private static final String INSERT_SLOT = "INSERT INTO card_balance_slot (card_id, slot, balance) VALUES (?, ?, 0)";
+    private static final String SET_SLOT = "UPDATE card_balance_slot SET balance = ? WHERE card_id = ? AND slot = ?";
+    private static final String SET_SLOTS = "UPDATE card SET balance_slots = ? WHERE id = ?";
+    private static final String CARD_BALANCE = "SELECT balance FROM card WHERE id = ?";
+    private static final String SET_SPLIT = "UPDATE card SET balance = ?, balance_slots = ? WHERE id = ?";
+
+    private int maxSlots;
+    private boolean consolidationEnabled;
+
+    private final Environment env;
+    private final CardRepository cardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        this.maxSlots = env.getProperty("card.balance-split.max-slots", Integer.class, 64);
+        this.consolidationEnabled = env.getProperty("card.balance-split.consolidation.enabled", Boolean.class, true);
+    }
+
+    @Transactional
+    @Override
+    public void updateSplit(UUID cardId, int slots) {
+        if (slots < 0 || slots > maxSlots) {
+            throw new BadRequestException("Slots must be between 0 and " + maxSlots);
+        }
+        List<LockedCard> locked = cardRepository.lockForUpdate(List.of(cardId));
+        if (locked.isEmpty()) {
+            throw new NotFoundException("Card not found");
+        }
+        // средства слотов переносятся в card.balance, после этого слоты пусты
+        cardRepository.collectBalanceSlots(cardId);
+
+        jdbcTemplate.update(DELETE_SLOTS, cardId);
+        List<Object[]> rows = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            rows.add(new Object[]{cardId, slot});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SLOT, rows);
+        }
+        jdbcTemplate.update(SET_SLOTS, slots, cardId);
+        log.info("Card {} balance split into {} slots", cardId, slots);
+    }
+
+    @Override
+    public Optional<SplitCard> findSplitCard(UUID cardId) {
+        return jdbcTemplate.query(FIND_SPLIT_CARD, (rs, rowNum) -> new SplitCard(
+                rs.getObject("id", UUID.class),
+                rs.getObject("user_id", UUID.class),
+                Card.Status.valueOf(rs.getString("status")),
+                rs.getObject("validity_period", LocalDate.class),
+                rs.getInt("balance_slots")), cardId).stream().findFirst();
+    }
+
+    @Override
+    public OptionalLong depositToSlot(UUID cardId, int slots, long amount) {
+        int slot = ThreadLocalRandom.current().nextInt(slots);
+        if (jdbcTemplate.update(ADD_TO_SLOT, amount, cardId, slot, Long.MAX_VALUE - amount) == 0) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(totalBalance(cardId));
+    }
+
+    @Override
+    public OptionalLong withdrawFromSlot(UUID cardId, long amount) {
+        // слоты читаются без блокировки: если выбранный слот успели опустошить, UPDATE ничего не изменит
+        List<Integer> candidates = jdbcTemplate.queryForList(SLOTS_WITH_FUNDS, Integer.class, cardId, amount);
+        if (candidates.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        int slot = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+        if (jdbcTemplate.update(SUBTRACT_FROM_SLOT, amount, cardId, slot, amount) == 0) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(totalBalance(cardId));
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelayString = "${card.balance-split.consolidation.interval-ms:60000}")
+    @Override
+    public void consolidateSplits() {
+        if (!consolidationEnabled) {
+            return;
+        }
+        for (UUID cardId : jdbcTemplate.queryForList(SPLIT_CARD_IDS, UUID.class)) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> consolidate(cardId));
+            } catch (RuntimeException e) {
+                log.error("Cannot consolidate balance slots of card {}, will retry on next run", cardId, e);
+            }
+        }
+    }
+
+    // Распределяет баланс карты поровну по слотам, остаток деления - в первые слоты
+    private void consolidate(UUID cardId) {
+        List<LockedCard> locked = cardRepository.lockForUpdate(List.of(cardId));
+        if (locked.isEmpty() || locked.get(0).balanceSlots() == 0) {
+            return;
+        }
+        int slots = locked.get(0).balanceSlots();
+        cardRepository.collectBalanceSlots(cardId);
+        // после сведения весь баланс в заблокированной строке карты
+        long balance = jdbcTemplate.queryForObject(CARD_BALANCE, Long.class, cardId);
+        long share = balance / slots;
+        long remainder = balance % slots;
+
+        List<Object[]> rows = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            rows.add(new Object[]{share + (slot < remainder ? 1 : 0), cardId, slot});
+        }
+        for (int updated : jdbcTemplate.batchUpdate(SET_SLOT, rows)) {
+            if (updated == 0) {
+                // слотов меньше, чем balance_slots - не переносим средства, чтобы не потерять их
+                throw new IllegalStateException("Balance slots of card " + cardId + " are inconsistent");
+            }
+        }
+        jdbcTemplate.update(SET_SPLIT, 0L, slots, cardId);
+    }
+
+    private long totalBalance(UUID cardId) {
+        Long balance = jdbcTemplate.queryForObject(TOTAL_BALANCE, Long.class, cardId);
+        return balance != null ? balance : 0L;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.CardHashRepository;
+import com.example.bankcards.service.CardHashFilter;
+import com.example.bankcards.util.hash.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CardHashFilterImpl implements CardHashFilter {
+    private boolean enabled;
+    private long expectedInsertions;
+    private double fpp;
+    private double rebuildDeletionRatio;
+
+    private final Environment env;
+    private final CardHashRepository cardHashRepository;
+    private final MeterRegistry meterRegistry;
+
+    // null - фильтр ещё не прогрет
+    private volatile BloomFilter filter;
+    // фильтр, который сейчас строится; новые хэши добавляются и в него
+    private volatile BloomFilter building;
+
+    private final AtomicLong insertionsSinceRebuild = new AtomicLong();
+    private final AtomicLong deletionsSinceRebuild = new AtomicLong();
+    private volatile long elementsAtRebuild;
+
+    private Counter absentCounter;
+    private Counter maybeCounter;
+
+    @PostConstruct
+    void init() {
+        this.enabled = env.getProperty("card.hash-filter.enabled", Boolean.class, true);
+        this.expectedInsertions = env.getProperty("card.hash-filter.expected-insertions", Long.class, 1_000_000L);
+        this.fpp = env.getProperty("card.hash-filter.fpp", Double.class, 0.01);
+        this.rebuildDeletionRatio = env.getProperty("card.hash-filter.rebuild-deletion-ratio", Double.class, 0.2);
+
+        this.absentCounter = Counter.builder("card.hash.filter.checks").tag("result", "absent")
+                .description("Проверки, для которых фильтр ответил «точно нет» (запрос в базу пропущен)")
+                .register(meterRegistry);
+        this.maybeCounter = Counter.builder("card.hash.filter.checks").tag("result", "maybe")
+                .description("Проверки, потребовавшие запроса в базу")
+                .register(meterRegistry);
+        Gauge.builder("card.hash.filter.memory", this, f -> f.filter != null ? f.filter.memoryBytes() : 0)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("card.hash.filter.fpp", this, f -> f.filter != null ? f.filter.expectedFpp() : 1.0)
+                .description("Текущая оценка вероятности ложноположительного ответа")
+                .register(meterRegistry);
+        Gauge.builder("card.hash.filter.elements", this, f -> f.filter != null ? f.filter.approximateElementCount() : 0)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean mightContain(byte[] digest) {
+        BloomFilter current = filter;
+        if (current == null || current.mightContain(digest)) {
+            maybeCounter.increment();
+            return true;
+        }
+        absentCounter.increment();
+        return false;
+    }
+
+    @Override
+    public void add(byte[] digest) {
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(digest);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(digest);
+        }
+        insertionsSinceRebuild.incrementAndGet();
+    }
+
+    @Override
+    public void remove(byte[] digest) {
+        deletionsSinceRebuild.incrementAndGet();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void warmUp() {
+        if (enabled) {
+            doRebuild();
+        }
+    }
+
+    // Перестроение после массовых удалений или при заполнении сверх расчётного размера
+    @Scheduled(fixedDelayString = "${card.hash-filter.check-interval-ms:60000}")
+    @Transactional
+    public void rebuildIfNeeded() {
+        BloomFilter current = filter;
+        if (!enabled || current == null || building != null) {
+            return;
+        }
+        long elements = elementsAtRebuild + insertionsSinceRebuild.get();
+        boolean manyDeletions = deletionsSinceRebuild.get() > rebuildDeletionRatio * Math.max(1, elements);
+        boolean overfilled = current.expectedFpp() > fpp * 2;
+        if (manyDeletions || overfilled) {
+            doRebuild();
+        }
+    }
+
+    @Transactional
+    @Override
+    public void rebuild() {
+        if (enabled) {
+            doRebuild();
+        }
+    }
+
+    private synchronized void doRebuild() {
+        long started = System.nanoTime();
+        long count = cardHashRepository.count();
+        BloomFilter next = BloomFilter.create(Math.max(expectedInsertions, count * 2), fpp);
+
+        long insertionsBefore = insertionsSinceRebuild.get();
+        long deletionsBefore = deletionsSinceRebuild.get();
+        building = next;
+        try (Stream<String> hashes = cardHashRepository.streamAllHmacHashes()) {
+            hashes.forEach(hash -> next.put(Base64.getDecoder().decode(hash)));
+        } catch (RuntimeException e) {
+            building = null;
+            throw e;
+        }
+        filter = next;
+        building = null;
+
+        elementsAtRebuild = count;
+        insertionsSinceRebuild.addAndGet(-insertionsBefore);
+        deletionsSinceRebuild.addAndGet(-deletionsBefore);
+        log.info("Card hash filter rebuilt: {} hashes, {} bytes, {} ms",
+                count, next.memoryBytes(), (System.nanoTime() - started) / 1_000_000);
+    }
+}
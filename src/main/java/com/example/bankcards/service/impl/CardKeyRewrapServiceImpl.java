@@ -0,0 +1,164 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.CardKeyRewrapCheckpoint;
+import com.example.bankcards.repository.CardKeyRewrapCheckpointRepository;
+import com.example.bankcards.service.CardKeyRewrapService;
+import com.example.bankcards.service.CardSecurityService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CardKeyRewrapServiceImpl implements CardKeyRewrapService {
+    private static final String SELECT_FIRST_BATCH =
+            "SELECT id, encrypted_key, master_key_version FROM card_encryption_key " +
+            "WHERE master_key_version <> ? ORDER BY id LIMIT ?";
+    private static final String SELECT_NEXT_BATCH =
+            "SELECT id, encrypted_key, master_key_version FROM card_encryption_key " +
+            "WHERE master_key_version <> ? AND id > ? ORDER BY id LIMIT ?";
+    // Есть ли ещё ключи под прежними мастер-ключами (два диапазона, чтобы работал индекс по master_key_version)
+    private static final String SELECT_ANY_STALE =
+            "SELECT id FROM card_encryption_key WHERE master_key_version < ? OR master_key_version > ? LIMIT 1";
+    // Обновляем, только если ключ не менялся с момента чтения
+    private static final String UPDATE_KEY =
+            "UPDATE card_encryption_key SET encrypted_key = ?, master_key_version = ? " +
+            "WHERE id = ? AND master_key_version = ? AND encrypted_key = ?";
+
+    private boolean enabled;
+    private int batchSize;
+    private long pauseMillis;
+
+    private final Environment env;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CardSecurityService cardSecurityService;
+    private final CardKeyRewrapCheckpointRepository checkpointRepository;
+    private final MeterRegistry meterRegistry;
+
+    private Counter rewrappedCounter;
+
+    @PostConstruct
+    void init() {
+        this.enabled = env.getProperty("security.card.rewrap.enabled", Boolean.class, true);
+        this.batchSize = env.getProperty("security.card.rewrap.batch-size", Integer.class, 500);
+        this.pauseMillis = env.getProperty("security.card.rewrap.pause-ms", Long.class, 100L);
+
+        this.rewrappedCounter = Counter.builder("card.keys.rewrapped")
+                .description("Ключи карт, перешифрованные под текущий мастер-ключ")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int rewrapNextBatch() {
+        Integer rewrapped = transactionTemplate.execute(status -> doRewrapNextBatch());
+        return rewrapped != null ? rewrapped : 0;
+    }
+
+    @Scheduled(initialDelay = 30_000, fixedDelayString = "${security.card.rewrap.interval-ms:60000}")
+    @Override
+    public void rewrapPending() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            while (rewrapNextBatch() > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // например, прежний мастер-ключ не задан в security.card.number.retired-keys
+            log.error("Card key re-wrap failed, will retry on next run", e);
+        }
+    }
+
+    private int doRewrapNextBatch() {
+        int targetVersion = cardSecurityService.currentMasterKeyVersion();
+        CardKeyRewrapCheckpoint checkpoint = checkpointRepository.findById(targetVersion)
+                .orElseGet(() -> new CardKeyRewrapCheckpoint(targetVersion));
+        if (checkpoint.isCompleted()) {
+            // после завершения ключ под прежним мастер-ключом ещё может записать узел со старой конфигурацией
+            if (!hasStaleKeys(targetVersion)) {
+                return 0;
+            }
+            log.info("Card keys under retired master keys found after re-wrap to version {} completed, restarting",
+                    targetVersion);
+            checkpoint.setCompleted(false);
+            checkpoint.setLastId(null);
+        }
+
+        List<KeyRow> rows = checkpoint.getLastId() == null
+                ? jdbcTemplate.query(SELECT_FIRST_BATCH, KeyRow.MAPPER, targetVersion, batchSize)
+                : jdbcTemplate.query(SELECT_NEXT_BATCH, KeyRow.MAPPER, targetVersion, checkpoint.getLastId(), batchSize);
+
+        if (rows.isEmpty()) {
+            // ключи, вставленные позади курсора (id случайные) или записанные со старой версией во время обхода,
+            // обрабатываются следующим проходом с начала
+            if (hasStaleKeys(targetVersion)) {
+                checkpoint.setLastId(null);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpointRepository.save(checkpoint);
+                return 0;
+            }
+            checkpoint.setCompleted(true);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+            log.info("Card key re-wrap to master key version {} completed, {} keys re-wrapped",
+                    targetVersion, checkpoint.getRewrapped());
+            return 0;
+        }
+
+        // расшифрование/шифрование идёт параллельно на ограниченном пуле CardSecurityService
+        List<String> rewrappedKeys = cardSecurityService.rewrapKeys(rows.stream()
+                .map(row -> new CardSecurityService.WrappedKey(row.encryptedKey(), row.version()))
+                .toList());
+
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            KeyRow row = rows.get(i);
+            updates.add(new Object[]{rewrappedKeys.get(i), targetVersion, row.id(), row.version(), row.encryptedKey()});
+        }
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(UPDATE_KEY, updates)) {
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                updated++;
+            }
+        }
+
+        checkpoint.setLastId(rows.get(rows.size() - 1).id());
+        checkpoint.setRewrapped(checkpoint.getRewrapped() + updated);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+
+        rewrappedCounter.increment(updated);
+        log.info("Re-wrapped {} card keys to master key version {} (total {})",
+                updated, targetVersion, checkpoint.getRewrapped());
+        // строки, изменённые параллельно, тоже считаются обработанными - иначе обход остановился бы раньше времени
+        return rows.size();
+    }
+
+    private boolean hasStaleKeys(int targetVersion) {
+        return !jdbcTemplate.queryForList(SELECT_ANY_STALE, UUID.class, targetVersion, targetVersion).isEmpty();
+    }
+
+    private record KeyRow(UUID id, String encryptedKey, int version) {
+        static final RowMapper<KeyRow> MAPPER = (rs, rowNum) -> new KeyRow(
+                rs.getObject("id", UUID.class), rs.getString("encrypted_key"), rs.getInt("master_key_version"));
+    }
+}
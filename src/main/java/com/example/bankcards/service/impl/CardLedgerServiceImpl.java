@@ -0,0 +1,263 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardTransactionResponse;
+import com.example.bankcards.dto.CardTransferMoney;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardLedgerCursor;
+import com.example.bankcards.entity.CardLedgerEntry;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.repository.CardLedgerCursorRepository;
+import com.example.bankcards.service.CardLedgerService;
+import com.example.bankcards.util.id.UuidV7;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CardLedgerServiceImpl implements CardLedgerService {
+    private static final String SNAPSHOT_CURSOR = "balance-snapshot";
+
+    private static final String INSERT_ENTRY =
+            "INSERT INTO card_ledger (id, card_id, operation_id, type, amount, counterparty_card_id, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_FIRST_BATCH =
+            "SELECT id, card_id, amount FROM card_ledger WHERE created_at < ? ORDER BY id LIMIT ?";
+    private static final String SELECT_NEXT_BATCH =
+            "SELECT id, card_id, amount FROM card_ledger WHERE id > ? AND created_at < ? ORDER BY id LIMIT ?";
+    private static final String SELECT_SNAPSHOTS =
+            "SELECT card_id, balance FROM card_balance_snapshot WHERE card_id IN (%s)";
+    private static final String UPDATE_SNAPSHOT =
+            "UPDATE card_balance_snapshot SET balance = ?, ledger_id = ?, updated_at = ? WHERE card_id = ?";
+    private static final String INSERT_SNAPSHOT =
+            "INSERT INTO card_balance_snapshot (card_id, balance, ledger_id, updated_at) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_CARD_SNAPSHOT =
+            "SELECT s.balance, s.ledger_id FROM card c LEFT JOIN card_balance_snapshot s ON s.card_id = c.id " +
+            "WHERE c.id = ?";
+    // EXISTS вычисляется один раз на запрос (id карты - константа), строки журнала читаются только из индекса
+    private static final String SELECT_HISTORY =
+            "SELECT id, operation_id, type, amount, counterparty_card_id, created_at FROM card_ledger " +
+            "WHERE card_id = ? AND EXISTS (SELECT 1 FROM card WHERE id = ? AND user_id = ?) %s" +
+            "ORDER BY created_at DESC, id DESC LIMIT ?";
+    private static final String HISTORY_AFTER_CURSOR = "AND (created_at, id) < (?, ?) ";
+    private static final String SUM_TAIL =
+            "SELECT COALESCE(SUM(amount), 0) FROM card_ledger WHERE card_id = ? AND id > ?";
+    private static final String SUM_ALL =
+            "SELECT COALESCE(SUM(amount), 0) FROM card_ledger WHERE card_id = ?";
+
+    private boolean snapshotEnabled;
+    private int snapshotBatchSize;
+    private long snapshotSafetyLagMillis;
+
+    private final Environment env;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CardLedgerCursorRepository cursorRepository;
+    private final MeterRegistry meterRegistry;
+
+    private Counter appendedCounter;
+
+    @PostConstruct
+    void init() {
+        this.snapshotEnabled = env.getProperty("card.ledger.snapshot.enabled", Boolean.class, true);
+        this.snapshotBatchSize = env.getProperty("card.ledger.snapshot.batch-size", Integer.class, 5000);
+        this.snapshotSafetyLagMillis = env.getProperty("card.ledger.snapshot.safety-lag-ms", Long.class, 60_000L);
+
+        this.appendedCounter = Counter.builder("card.ledger.entries")
+                .description("Записи, добавленные в журнал операций по картам")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recordBalanceChange(UUID cardId, Card.BalanceAction action, long amount) {
+        UUID id = UuidV7.next();
+        boolean deposit = action == Card.BalanceAction.DEPOSIT_MONEY;
+        jdbcTemplate.update(INSERT_ENTRY, id, cardId, id,
+                (deposit ? CardLedgerEntry.Type.DEPOSIT : CardLedgerEntry.Type.WITHDRAWAL).name(),
+                deposit ? amount : -amount, null, now());
+        appendedCounter.increment();
+    }
+
+    @Override
+    public void recordBalanceChanges(List<BalanceChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = now();
+        List<Object[]> rows = new ArrayList<>(changes.size());
+        for (BalanceChange change : changes) {
+            UUID id = UuidV7.next();
+            boolean deposit = change.action() == Card.BalanceAction.DEPOSIT_MONEY;
+            rows.add(new Object[]{id, change.cardId(), id,
+                    (deposit ? CardLedgerEntry.Type.DEPOSIT : CardLedgerEntry.Type.WITHDRAWAL).name(),
+                    deposit ? change.amount() : -change.amount(), null, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, rows);
+        appendedCounter.increment(rows.size());
+    }
+
+    @Override
+    public void recordTransfers(List<CardTransferMoney> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = now();
+        List<Object[]> rows = new ArrayList<>(transfers.size() * 2);
+        for (CardTransferMoney transfer : transfers) {
+            UUID operationId = UuidV7.next();
+            rows.add(new Object[]{operationId, transfer.from(), operationId,
+                    CardLedgerEntry.Type.TRANSFER_OUT.name(), -transfer.amount(), transfer.to(), now});
+            rows.add(new Object[]{UuidV7.next(), transfer.to(), operationId,
+                    CardLedgerEntry.Type.TRANSFER_IN.name(), transfer.amount(), transfer.from(), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, rows);
+        appendedCounter.increment(rows.size());
+    }
+
+    @Override
+    public int readHistory(UUID cardId, UUID ownerId, LocalDateTime createdBefore, UUID idBefore, int limit,
+                           Consumer<CardTransactionResponse> consumer) {
+        boolean firstPage = createdBefore == null || idBefore == null;
+        String sql = SELECT_HISTORY.formatted(firstPage ? "" : HISTORY_AFTER_CURSOR);
+        Object[] args = firstPage
+                ? new Object[]{cardId, cardId, ownerId, limit}
+                : new Object[]{cardId, cardId, ownerId, createdBefore, idBefore, limit};
+
+        int[] count = {0};
+        jdbcTemplate.query(sql, rs -> {
+            consumer.accept(new CardTransactionResponse(
+                    rs.getObject("id", UUID.class),
+                    rs.getObject("operation_id", UUID.class),
+                    CardLedgerEntry.Type.valueOf(rs.getString("type")),
+                    rs.getLong("amount"),
+                    rs.getObject("counterparty_card_id", UUID.class),
+                    rs.getObject("created_at", LocalDateTime.class)));
+            count[0]++;
+        }, args);
+        return count[0];
+    }
+
+    @Override
+    public long rebuildBalance(UUID cardId) {
+        List<Snapshot> snapshot = jdbcTemplate.query(SELECT_CARD_SNAPSHOT, (rs, rowNum) -> new Snapshot(
+                rs.getLong("balance"), rs.getObject("ledger_id", UUID.class)), cardId);
+        if (snapshot.isEmpty()) {
+            throw new NotFoundException("Card not found");
+        }
+
+        // карты без снимка (выпущенные после появления журнала) начинаются с нулевого баланса
+        Snapshot base = snapshot.get(0);
+        Long tail = base.ledgerId() == null
+                ? jdbcTemplate.queryForObject(SUM_ALL, Long.class, cardId)
+                : jdbcTemplate.queryForObject(SUM_TAIL, Long.class, cardId, base.ledgerId());
+        return base.balance() + (tail != null ? tail : 0);
+    }
+
+    @Override
+    public int snapshotNextBatch() {
+        Integer processed = transactionTemplate.execute(status -> doSnapshotNextBatch());
+        return processed != null ? processed : 0;
+    }
+
+    @Scheduled(initialDelayString = "${card.ledger.snapshot.interval-ms:300000}",
+            fixedDelayString = "${card.ledger.snapshot.interval-ms:300000}")
+    @Override
+    public void snapshotPending() {
+        if (!snapshotEnabled) {
+            return;
+        }
+        try {
+            int processed;
+            do {
+                processed = snapshotNextBatch();
+            } while (processed >= snapshotBatchSize);
+        } catch (RuntimeException e) {
+            log.error("Card balance snapshot failed, will retry on next run", e);
+        }
+    }
+
+    private int doSnapshotNextBatch() {
+        CardLedgerCursor cursor = cursorRepository.findById(SNAPSHOT_CURSOR)
+                .orElseGet(() -> new CardLedgerCursor(SNAPSHOT_CURSOR));
+        LocalDateTime safeBefore = LocalDateTime.now().minusNanos(snapshotSafetyLagMillis * 1_000_000L);
+
+        List<LedgerRow> rows = cursor.getLastId() == null
+                ? jdbcTemplate.query(SELECT_FIRST_BATCH, LedgerRow.MAPPER, safeBefore, snapshotBatchSize)
+                : jdbcTemplate.query(SELECT_NEXT_BATCH, LedgerRow.MAPPER, cursor.getLastId(), safeBefore, snapshotBatchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        // сумма и последняя запись пачки по каждой карте
+        Map<UUID, Long> sums = new LinkedHashMap<>();
+        Map<UUID, UUID> lastIds = new HashMap<>();
+        for (LedgerRow row : rows) {
+            sums.merge(row.cardId(), row.amount(), Long::sum);
+            lastIds.put(row.cardId(), row.id());
+        }
+
+        Map<UUID, Long> balances = new HashMap<>();
+        String sql = SELECT_SNAPSHOTS.formatted(String.join(",", Collections.nCopies(sums.size(), "?")));
+        jdbcTemplate.query(sql, rs -> {
+            balances.put(rs.getObject("card_id", UUID.class), rs.getLong("balance"));
+        }, sums.keySet().toArray());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        sums.forEach((cardId, sum) -> {
+            Long balance = balances.get(cardId);
+            if (balance != null) {
+                updates.add(new Object[]{balance + sum, lastIds.get(cardId), now, cardId});
+            } else {
+                inserts.add(new Object[]{cardId, sum, lastIds.get(cardId), now});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SNAPSHOT, updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SNAPSHOT, inserts);
+        }
+
+        cursor.setLastId(rows.get(rows.size() - 1).id());
+        cursor.setUpdatedAt(now);
+        cursorRepository.save(cursor);
+
+        log.debug("Applied {} ledger entries to {} card balance snapshots", rows.size(), sums.size());
+        return rows.size();
+    }
+
+    // Время записи журнала с точностью до микросекунд, как его хранит timestamp в БД:
+    // курсор истории операций строится по created_at и должен совпадать с сохранённым значением
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private record Snapshot(long balance, UUID ledgerId) {}
+
+    private record LedgerRow(UUID id, UUID cardId, long amount) {
+        static final RowMapper<LedgerRow> MAPPER = (rs, rowNum) -> new LedgerRow(
+                rs.getObject("id", UUID.class), rs.getObject("card_id", UUID.class), rs.getLong("amount"));
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.entity.CardHash;
+import com.example.bankcards.repository.CardHashRepository;
+import com.example.bankcards.service.CardHashFilter;
+import com.example.bankcards.service.CardNumberPool;
+import com.example.bankcards.service.CardSecurityService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CardNumberPoolImpl implements CardNumberPool {
+    private boolean enabled;
+    private int poolSize;
+    private int lowWaterMark;
+    private int batchSize;
+    private long reservationTtlSeconds;
+
+    private final Environment env;
+    private final CardHashRepository cardHashRepository;
+    private final CardSecurityService cardSecurityService;
+    private final CardHashFilter cardHashFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // FIFO: в начале очереди всегда самые старые резервы (резерв, возвращённый после отката, - тоже в начало)
+    private final ConcurrentLinkedDeque<Reservation> reservations = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // true, пока пул дополняется до полного размера после падения ниже low-water-mark
+    private volatile boolean refilling;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    void init() {
+        this.enabled = env.getProperty("card.number-pool.enabled", Boolean.class, true);
+        this.poolSize = env.getProperty("card.number-pool.size", Integer.class, 1000);
+        this.lowWaterMark = env.getProperty("card.number-pool.low-water-mark", Integer.class, poolSize / 5);
+        this.batchSize = env.getProperty("card.number-pool.batch-size", Integer.class, 100);
+        this.reservationTtlSeconds = env.getProperty("card.number-pool.reservation-ttl-seconds", Long.class, 3600L);
+
+        if (poolSize <= 0 || batchSize <= 0 || lowWaterMark < 0 || lowWaterMark > poolSize) {
+            throw new IllegalArgumentException("Invalid card number pool configuration");
+        }
+
+        this.hitCounter = Counter.builder("card.number.pool.polls").tag("result", "hit")
+                .description("Номера карт, взятые из пула")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("card.number.pool.polls").tag("result", "miss")
+                .description("Выпуски карт, для которых номер генерировался на месте")
+                .register(meterRegistry);
+        Gauge.builder("card.number.pool.size", size, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    @Transactional
+    @Override
+    public Optional<String> poll() {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        LocalDateTime expiresBefore = expirationThreshold();
+        Reservation reservation;
+        while ((reservation = reservations.poll()) != null) {
+            size.decrementAndGet();
+            // резерв мог быть освобождён задачей reclaimExpired - тогда номер уже не наш
+            if (reservation.reservedAt().isAfter(expiresBefore)
+                    && cardHashRepository.claimReserved(reservation.hashId()) == 1) {
+                returnOnRollback(reservation);
+                hitCounter.increment();
+                return Optional.of(reservation.number());
+            }
+        }
+        missCounter.increment();
+        return Optional.empty();
+    }
+
+    @Transactional
+    @Override
+    public List<String> generateIssued(int count) {
+        List<String> numbers = generateBatch(count, null).stream().map(Reservation::number).toList();
+        if (numbers.size() < count) {
+            throw new RuntimeException("Too much attempts to generate card number. Something went wrong.");
+        }
+        return numbers;
+    }
+
+    @Scheduled(initialDelay = 5_000, fixedDelayString = "${card.number-pool.refill-interval-ms:1000}")
+    @Override
+    public void refill() {
+        if (!enabled) {
+            return;
+        }
+        if (size.get() < lowWaterMark) {
+            refilling = true;
+        }
+
+        while (refilling) {
+            int missing = poolSize - size.get();
+            if (missing <= 0) {
+                refilling = false;
+                return;
+            }
+            List<Reservation> batch;
+            try {
+                // каждая пачка в своей транзакции: номера попадают в пул только после коммита резерва
+                batch = transactionTemplate.execute(status -> reserveBatch(Math.min(missing, batchSize)));
+            } catch (RuntimeException e) {
+                // например, коллизия с параллельно выданным номером - повторим на следующем запуске
+                log.warn("Cannot refill card number pool: {}", e.getMessage());
+                return;
+            }
+            reservations.addAll(batch);
+            size.addAndGet(batch.size());
+        }
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelayString = "${card.number-pool.reclaim-interval-ms:300000}")
+    @Transactional
+    @Override
+    public void reclaimExpired() {
+        LocalDateTime expiresBefore = expirationThreshold();
+
+        // резервы из пула, срок которых истёк, больше не выдаём
+        Reservation head;
+        while ((head = reservations.peek()) != null && !head.reservedAt().isAfter(expiresBefore)) {
+            if (reservations.remove(head)) {
+                size.decrementAndGet();
+            }
+        }
+
+        List<CardHash> expired = cardHashRepository.findByReservedAtBefore(expiresBefore, PageRequest.of(0, 1000));
+        if (expired.isEmpty()) {
+            return;
+        }
+        cardHashRepository.deleteAllInBatch(expired);
+        for (CardHash hash : expired) {
+            cardHashFilter.remove(Base64.getDecoder().decode(hash.getHmacHash()));
+        }
+        log.info("Reclaimed {} expired card number reservations", expired.size());
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    // Снятие резерва откатится вместе с транзакцией вызывающего - тогда номер снова можно выдавать
+    private void returnOnRollback(Reservation reservation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    reservations.offerFirst(reservation);
+                    size.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    private List<Reservation> reserveBatch(int count) {
+        return generateBatch(count, LocalDateTime.now());
+    }
+
+    // Генерирует до count уникальных номеров и сохраняет их хэши с reservedAt (null - номер сразу выдан)
+    private List<Reservation> generateBatch(int count, LocalDateTime reservedAt) {
+        List<String> numbers = new ArrayList<>(count);
+        List<byte[]> digests = new ArrayList<>(count);
+        List<CardHash> hashes = new ArrayList<>(count);
+        Set<String> batchHashes = new HashSet<>();
+
+        int attempt = 0;
+        while (numbers.size() < count && attempt < count * 100) {
+            ++attempt;
+            String number = randomCardNumber();
+            byte[] digest = cardSecurityService.calculateHmacDigest(number);
+            String hash = Base64.getEncoder().encodeToString(digest);
+
+            if (!batchHashes.add(hash)) {
+                continue;
+            }
+            if (cardHashFilter.mightContain(digest) && cardHashRepository.existsByHmacHash(hash)) {
+                continue;
+            }
+            numbers.add(number);
+            digests.add(digest);
+            hashes.add(new CardHash(hash, reservedAt));
+        }
+
+        List<CardHash> saved = cardHashRepository.saveAll(hashes);
+        cardHashRepository.flush();
+
+        List<Reservation> batch = new ArrayList<>(saved.size());
+        for (int i = 0; i < saved.size(); i++) {
+            cardHashFilter.add(digests.get(i));
+            batch.add(new Reservation(saved.get(i).getId(), numbers.get(i), reservedAt));
+        }
+        return batch;
+    }
+
+    private LocalDateTime expirationThreshold() {
+        return LocalDateTime.now().minusSeconds(reservationTtlSeconds);
+    }
+
+    private static String randomCardNumber() {
+        StringBuilder number = new StringBuilder(16);
+        for (int i = 0; i < 4; i++) {
+            number.append(String.format("%04d", ThreadLocalRandom.current().nextInt(0, 10000)));
+        }
+        return number.toString();
+    }
+
+    private record Reservation(UUID hashId, String number, LocalDateTime reservedAt) {}
+}
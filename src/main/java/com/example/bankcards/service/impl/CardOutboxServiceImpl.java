@@ -0,0 +1,191 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardEventPage;
+import com.example.bankcards.dto.CardEventResponse;
+import com.example.bankcards.entity.CardOutboxEvent;
+import com.example.bankcards.entity.CardOutboxSinkPosition;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.CardOutboxSinkPositionRepository;
+import com.example.bankcards.service.CardEventSink;
+import com.example.bankcards.service.CardOutboxService;
+import com.example.bankcards.util.id.UuidV7;
+import com.example.bankcards.util.pagination.KeysetCursor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CardOutboxServiceImpl implements CardOutboxService {
+    private static final String INSERT_EVENT =
+            "INSERT INTO card_outbox (id, card_id, type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_FIRST_EVENTS =
+            "SELECT id, card_id, type, payload, created_at FROM card_outbox WHERE created_at < ? ORDER BY id LIMIT ?";
+    private static final String SELECT_NEXT_EVENTS =
+            "SELECT id, card_id, type, payload, created_at FROM card_outbox WHERE id > ? AND created_at < ? ORDER BY id LIMIT ?";
+    private static final String DELETE_EXPIRED = "DELETE FROM card_outbox WHERE created_at < ?";
+
+    private static final RowMapper<CardEventResponse> EVENT_MAPPER = (rs, rowNum) -> new CardEventResponse(
+            rs.getObject("id", UUID.class),
+            rs.getObject("card_id", UUID.class),
+            CardOutboxEvent.Type.valueOf(rs.getString("type")),
+            rs.getString("payload"),
+            rs.getObject("created_at", LocalDateTime.class));
+
+    private boolean relayEnabled;
+    private int relayBatchSize;
+    private long safetyLagMillis;
+    private long retentionHours;
+    private int maxLimit;
+
+    private final Environment env;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final CardOutboxSinkPositionRepository positionRepository;
+    private final List<CardEventSink> sinks;
+    private final MeterRegistry meterRegistry;
+
+    private Counter recordedCounter;
+    private Counter deliveredCounter;
+
+    @PostConstruct
+    void init() {
+        this.relayEnabled = env.getProperty("card.outbox.relay.enabled", Boolean.class, true);
+        this.relayBatchSize = env.getProperty("card.outbox.relay.batch-size", Integer.class, 500);
+        this.safetyLagMillis = env.getProperty("card.outbox.safety-lag-ms", Long.class, 60_000L);
+        this.retentionHours = env.getProperty("card.outbox.retention-hours", Long.class, 168L);
+        this.maxLimit = env.getProperty("card.outbox.max-limit", Integer.class, 1000);
+
+        this.recordedCounter = Counter.builder("card.outbox.recorded")
+                .description("События изменения карт, записанные в outbox")
+                .register(meterRegistry);
+        this.deliveredCounter = Counter.builder("card.outbox.delivered")
+                .description("События изменения карт, доставленные получателям")
+                .register(meterRegistry);
+
+        sinks.stream().filter(CardEventSink::isEnabled)
+                .forEach(sink -> log.info("Card event sink {} is enabled", sink.name()));
+    }
+
+    @Override
+    public void record(UUID cardId, CardOutboxEvent.Type type, Object payload) {
+        jdbcTemplate.update(INSERT_EVENT, UuidV7.next(), cardId, type.name(), toJson(payload), LocalDateTime.now());
+        recordedCounter.increment();
+    }
+
+    @Override
+    public void recordAll(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (Event event : events) {
+            rows.add(new Object[]{UuidV7.next(), event.cardId(), event.type().name(), toJson(event.payload()), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+        recordedCounter.increment(rows.size());
+    }
+
+    @Override
+    public CardEventPage readEvents(String cursor, int limit) {
+        if (limit <= 0 || limit > maxLimit) {
+            throw new BadRequestException("Limit must be between 1 and " + maxLimit);
+        }
+        UUID afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                afterId = UUID.fromString(KeysetCursor.decode(cursor, 1)[0]);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        List<CardEventResponse> events = readAfter(afterId, limit);
+        String nextCursor = events.isEmpty()
+                ? (afterId != null ? cursor : null)
+                : KeysetCursor.encode(events.get(events.size() - 1).id().toString());
+        return new CardEventPage(events, nextCursor);
+    }
+
+    @Scheduled(initialDelay = 10_000, fixedDelayString = "${card.outbox.relay.interval-ms:1000}")
+    @Override
+    public void relayPending() {
+        if (!relayEnabled) {
+            return;
+        }
+        for (CardEventSink sink : sinks) {
+            if (!sink.isEnabled()) {
+                continue;
+            }
+            try {
+                int delivered;
+                do {
+                    delivered = relayNextBatch(sink);
+                } while (delivered >= relayBatchSize);
+            } catch (RuntimeException e) {
+                log.error("Card event delivery to {} failed, will retry on next run", sink.name(), e);
+            }
+        }
+    }
+
+    @Scheduled(initialDelay = 60_000, fixedDelayString = "${card.outbox.cleanup-interval-ms:3600000}")
+    @Override
+    public void cleanUpExpired() {
+        int deleted = jdbcTemplate.update(DELETE_EXPIRED, LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            log.info("Deleted {} expired card events", deleted);
+        }
+    }
+
+    // Доставляет получателю следующую пачку и сдвигает его позицию; без транзакции - позиция пишется после доставки
+    private int relayNextBatch(CardEventSink sink) {
+        CardOutboxSinkPosition position = positionRepository.findById(sink.name())
+                .orElseGet(() -> new CardOutboxSinkPosition(sink.name()));
+        List<CardEventResponse> events = readAfter(position.getLastId(), relayBatchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        sink.publish(events);
+        deliveredCounter.increment(events.size());
+
+        position.setLastId(events.get(events.size() - 1).id());
+        position.setUpdatedAt(LocalDateTime.now());
+        positionRepository.save(position);
+        return events.size();
+    }
+
+    private List<CardEventResponse> readAfter(UUID afterId, int limit) {
+        LocalDateTime safeBefore = LocalDateTime.now().minusNanos(safetyLagMillis * 1_000_000L);
+        return afterId == null
+                ? jdbcTemplate.query(SELECT_FIRST_EVENTS, EVENT_MAPPER, safeBefore, limit)
+                : jdbcTemplate.query(SELECT_NEXT_EVENTS, EVENT_MAPPER, afterId, safeBefore, limit);
+    }
+
+    private String toJson(Object payload) {
+        if (payload == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize card event", e);
+        }
+    }
+}
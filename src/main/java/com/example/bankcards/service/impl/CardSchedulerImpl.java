@@ -1,20 +1,44 @@
 package com.example.bankcards.service.impl;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardOutboxEvent;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardOutboxService;
 import com.example.bankcards.service.CardScheduler;
+import com.example.bankcards.service.CardSecurityService;
+import com.example.bankcards.util.mapper.CardMapper;
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.SecretKey;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class CardSchedulerImpl implements CardScheduler {
+    private int backfillBatchSize;
+    // id последней просмотренной карты текущего прохода backfillLastFour; null - проход начинается сначала
+    private UUID backfillLastId;
+
+    private final Environment env;
     private final CardRepository cardRepository;
+    private final CardSecurityService cardSecurityService;
+    private final CardOutboxService cardOutboxService;
+
+    @PostConstruct
+    void init() {
+        this.backfillBatchSize = env.getProperty("card.last-four-backfill.batch-size", Integer.class, 500);
+    }
 
     // раз в сутки
     @Scheduled(fixedRate = 60000 * 60 * 24)
@@ -24,6 +48,42 @@ public class CardSchedulerImpl implements CardScheduler {
         List<Card> cards = cardRepository.findByValidityPeriodBeforeAndStatus(LocalDate.now(), Card.Status.ACTIVE);
         for (Card card : cards) {
             cardRepository.updateCardStatus(card.getId(), Card.Status.EXPIRED);
+            cardOutboxService.record(card.getId(), CardOutboxEvent.Type.STATUS_CHANGED,
+                    new CardOutboxService.StatusChanged(Card.Status.EXPIRED));
+        }
+    }
+
+    /**
+     * Раз в минуту, пока есть карты без last_four; дальше - один дешёвый запрос.
+     *
+     * Нюансы:
+     * - Карты обходятся по возрастанию id начиная с backfillLastId, поэтому карты, которые не удалось
+     *   расшифровать, не загораживают остальные: они пропускаются до следующего прохода.
+     * - Когда пачка неполная, проход закончен и следующий начнётся сначала - так повторяются неудачные карты
+     *   и подхватываются карты, вставленные позади курсора.
+     */
+    @Scheduled(initialDelay = 10_000, fixedDelayString = "${card.last-four-backfill.interval-ms:60000}")
+    @Transactional
+    @Override
+    public void backfillLastFour() {
+        PageRequest page = PageRequest.of(0, backfillBatchSize, Sort.by("id"));
+        List<Card> cards = backfillLastId == null
+                ? cardRepository.findByLastFourIsNull(page)
+                : cardRepository.findByLastFourIsNullAndIdGreaterThan(backfillLastId, page);
+        int backfilled = 0;
+        for (Card card : cards) {
+            try {
+                SecretKey key = cardSecurityService.decryptKey(card.getEncryptionKey());
+                String number = cardSecurityService.decryptNumber(card.getEncryptedNumber(), key);
+                card.setLastFour(CardMapper.lastFour(number));
+                backfilled++;
+            } catch (RuntimeException e) {
+                log.error("Cannot backfill last four digits for card {}", card.getId(), e);
+            }
+        }
+        backfillLastId = cards.size() < backfillBatchSize ? null : cards.get(cards.size() - 1).getId();
+        if (!cards.isEmpty()) {
+            log.info("Backfilled last four digits for {} of {} cards", backfilled, cards.size());
         }
     }
 }
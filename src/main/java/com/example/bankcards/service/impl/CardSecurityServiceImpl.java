@@ -3,19 +3,34 @@ package com.example.bankcards.service.impl;
 import com.example.bankcards.entity.CardEncryptionKey;
 import com.example.bankcards.repository.CardEncryptionKeyRepository;
 import com.example.bankcards.service.CardSecurityService;
+import com.example.bankcards.util.cache.ExpiringCache;
 import com.example.bankcards.util.security.EncryptionAES;
-import com.example.bankcards.util.security.HmacUtils;
+import com.example.bankcards.util.security.KeyedHmac;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.apache.tomcat.util.codec.binary.Base64.decodeBase64;
 
@@ -25,9 +40,23 @@ public class CardSecurityServiceImpl implements CardSecurityService {
 
     private final Environment env;
     private final CardEncryptionKeyRepository cardEncryptionKeyRepository;
+    private final MeterRegistry meterRegistry;
 
-    public SecretKeySpec masterKey; // Мастер-ключ из настроек
+    public SecretKeySpec masterKey; // Текущий мастер-ключ из настроек
+    private int masterKeyVersion;
+    // Все известные мастер-ключи по версиям: текущий и прежние (security.card.number.retired-keys)
+    private Map<Integer, SecretKeySpec> masterKeys;
     public SecretKey hmacKey;
+    private KeyedHmac hmac;
+
+    // Кэш расшифрованных ключей карт (ключ - id CardEncryptionKey)
+    private ExpiringCache<UUID, CachedDataKey> dataKeyCache;
+
+    // Пул для пакетных криптоопераций: размер - по числу ядер, очередь ограничена
+    private ThreadPoolExecutor cryptoExecutor;
+    private int cryptoParallelism;
+    private int parallelThreshold;
+    private long batchTimeoutMillis;
 
     @PostConstruct
     void init() {
@@ -38,7 +67,42 @@ public class CardSecurityServiceImpl implements CardSecurityService {
         byte[] hmacKeyBytes   = decodeBase64(hmacKeyStr);
 
         this.masterKey = new SecretKeySpec(masterKeyBytes, "AES");
+        this.masterKeyVersion = env.getProperty("security.card.number.key-version", Integer.class, 1);
+        this.masterKeys = new HashMap<>();
+        Binder.get(env).bind("security.card.number.retired-keys", Bindable.mapOf(Integer.class, String.class))
+                .orElse(Map.of())
+                .forEach((version, key) -> masterKeys.put(version, new SecretKeySpec(decodeBase64(key), "AES")));
+        masterKeys.put(masterKeyVersion, masterKey);
         this.hmacKey   = new SecretKeySpec(hmacKeyBytes, "HmacSHA256");
+
+        // Исторически ключом HMAC служила Base64-строка hmacKey, а не сами байты ключа.
+        // Сохраняем такой же эффективный ключ, чтобы уже записанные card_hash.hmac_hash оставались проверяемыми
+        byte[] effectiveHmacKey = Base64.getEncoder().encode(hmacKeyBytes);
+        this.hmac = new KeyedHmac(new SecretKeySpec(effectiveHmacKey, "HmacSHA256"));
+        Arrays.fill(effectiveHmacKey, (byte) 0);
+
+        int cacheSize = env.getProperty("security.card.key-cache.max-size", Integer.class, 10_000);
+        long cacheTtl = env.getProperty("security.card.key-cache.ttl-seconds", Long.class, 300L);
+        this.dataKeyCache = new ExpiringCache<>(cacheSize, cacheTtl * 1000, CachedDataKey::destroy);
+        registerCacheMetrics();
+
+        this.cryptoParallelism = env.getProperty("security.card.crypto.parallelism", Integer.class,
+                Runtime.getRuntime().availableProcessors());
+        this.parallelThreshold = env.getProperty("security.card.crypto.parallel-threshold", Integer.class, 8);
+        this.batchTimeoutMillis = env.getProperty("security.card.crypto.batch-timeout-ms", Long.class, 2000L);
+        this.cryptoExecutor = newCryptoExecutor(cryptoParallelism);
+    }
+
+    @PreDestroy
+    void destroy() {
+        cryptoExecutor.shutdownNow();
+        dataKeyCache.invalidateAll();
+    }
+
+    /** Периодически вычищает истёкшие ключи, чтобы они не лежали в памяти до следующего обращения */
+    @Scheduled(fixedDelayString = "${security.card.key-cache.cleanup-interval-ms:60000}")
+    public void evictExpiredKeys() {
+        dataKeyCache.cleanUp();
     }
 
     @Transactional
@@ -51,6 +115,7 @@ public class CardSecurityServiceImpl implements CardSecurityService {
     @Override
     public void deleteEncryptedKey(UUID id) {
         cardEncryptionKeyRepository.deleteById(id);
+        dataKeyCache.invalidate(id);
     }
 
     @Override
@@ -89,6 +154,16 @@ public class CardSecurityServiceImpl implements CardSecurityService {
         }
     }
 
+    @Override
+    public CardEncryptionKey wrapKey(SecretKey key) {
+        return new CardEncryptionKey(encryptKey(key), masterKeyVersion);
+    }
+
+    @Override
+    public int currentMasterKeyVersion() {
+        return masterKeyVersion;
+    }
+
     @Override
     public SecretKey decryptKey(String encryptedKey) {
         try {
@@ -98,17 +173,153 @@ public class CardSecurityServiceImpl implements CardSecurityService {
         }
     }
 
+    @Override
+    public SecretKey decryptKey(String encryptedKey, int version) {
+        SecretKeySpec key = masterKeys.get(version);
+        if (key == null) {
+            throw new RuntimeException("Internal Error");
+        }
+        try {
+            return EncryptionAES.decryptKey(encryptedKey, key);
+        } catch (Exception e) {
+            throw new RuntimeException("Internal Error");
+        }
+    }
+
+    @Override
+    public SecretKey decryptKey(CardEncryptionKey encryptionKey) {
+        UUID id = encryptionKey.getId();
+        String encryptedKey = encryptionKey.getEncryptedKey();
+        int version = encryptionKey.getMasterKeyVersion();
+        if (id == null) {
+            return decryptKey(encryptedKey, version);
+        }
+
+        // Перешифрование под новый мастер-ключ не меняет сам ключ карты, поэтому кэш по id остаётся корректным.
+        // Ключ мог быть занулён при вытеснении между получением из кэша и копированием - тогда просто расшифровываем заново
+        SecretKey cached = dataKeyCache.computeIfAbsent(id, k -> new CachedDataKey(decryptKey(encryptedKey, version)))
+                .toSecretKey();
+        return cached != null ? cached : decryptKey(encryptedKey, version);
+    }
+
+    @Override
+    public List<String> decryptNumbers(List<EncryptedNumber> numbers) {
+        return parallelMap(numbers, n -> decryptNumber(n.encryptedNumber(), decryptKey(n.encryptionKey())));
+    }
+
+    @Override
+    public List<EncryptedCard> encryptNumbers(List<String> cardNumbers) {
+        return parallelMap(cardNumbers, number -> {
+            SecretKey key = generateKey();
+            return new EncryptedCard(encryptNumber(number, key), encryptKey(key), masterKeyVersion);
+        });
+    }
+
+    @Override
+    public List<String> rewrapKeys(List<WrappedKey> keys) {
+        return parallelMap(keys, k -> {
+            if (k.masterKeyVersion() == masterKeyVersion) {
+                return k.encryptedKey();
+            }
+            return encryptKey(decryptKey(k.encryptedKey(), k.masterKeyVersion()));
+        });
+    }
+
     @Override
     public String calculateHmac(String cardNumber) {
+        return Base64.getEncoder().encodeToString(calculateHmacDigest(cardNumber));
+    }
+
+    @Override
+    public byte[] calculateHmacDigest(String cardNumber) {
         try {
-            // Получаем байты ключа
-            byte[] keyBytes = hmacKey.getEncoded();
-            // Преобразуем байты ключа в строку Base64
-            String base64Key = Base64.getEncoder().encodeToString(keyBytes);
-            // Вызываем существующий метод, передавая строковый ключ
-            return HmacUtils.calculateHMAC(cardNumber, base64Key);
+            return hmac.digest(cardNumber);
         } catch (Exception e) {
             throw new RuntimeException("Internal Error");
         }
     }
+
+    /**
+     * Применяет mapper к элементам на пуле cryptoExecutor, сохраняя порядок.
+     * Небольшие списки обрабатываются в текущем потоке. Если результат не готов за batchTimeoutMillis,
+     * оставшиеся задачи отменяются и выбрасывается RuntimeException.
+     */
+    private <T, R> List<R> parallelMap(List<T> items, Function<T, R> mapper) {
+        if (items.size() < parallelThreshold || cryptoParallelism <= 1) {
+            return items.stream().map(mapper).toList();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeoutMillis);
+        int chunkSize = (items.size() + cryptoParallelism - 1) / cryptoParallelism;
+        List<Future<List<R>>> futures = new ArrayList<>();
+        try {
+            for (int from = 0; from < items.size(); from += chunkSize) {
+                List<T> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+                futures.add(cryptoExecutor.submit(() -> chunk.stream().map(mapper).toList()));
+            }
+
+            List<R> result = new ArrayList<>(items.size());
+            for (Future<List<R>> future : futures) {
+                result.addAll(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Internal Error");
+        } catch (ExecutionException | TimeoutException e) {
+            throw new RuntimeException("Internal Error");
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private static ThreadPoolExecutor newCryptoExecutor(int parallelism) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "card-crypto-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // при переполнении очереди задача выполняется в вызывающем потоке - естественное ограничение нагрузки
+        return new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 64), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private void registerCacheMetrics() {
+        String name = "cardDataKeys";
+        FunctionCounter.builder("cache.gets", dataKeyCache, ExpiringCache::hitCount)
+                .tag("cache", name).tag("result", "hit")
+                .description("Количество попаданий в кэш ключей карт")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", dataKeyCache, ExpiringCache::missCount)
+                .tag("cache", name).tag("result", "miss")
+                .description("Количество промахов кэша ключей карт")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", dataKeyCache, ExpiringCache::evictionCount)
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("cache.size", dataKeyCache, ExpiringCache::size)
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    /** Расшифрованный ключ карты в кэше. Ключевой материал зануляется при вытеснении */
+    private static final class CachedDataKey {
+        private byte[] material;
+
+        CachedDataKey(SecretKey key) {
+            this.material = key.getEncoded();
+        }
+
+        synchronized SecretKey toSecretKey() {
+            return material == null ? null : new SecretKeySpec(material, "AES");
+        }
+
+        synchronized void destroy() {
+            if (material != null) {
+                Arrays.fill(material, (byte) 0);
+                material = null;
+            }
+        }
+    }
 }
@@ -7,47 +7,151 @@ import com.example.bankcards.exception.BadRequestException;
 import com.example.bankcards.exception.NotFoundException;
 import com.example.bankcards.exception.UnauthorizedException;
 import com.example.bankcards.repository.CardHashRepository;
+import com.example.bankcards.repository.CardProjectionRepository.CardColumn;
+import com.example.bankcards.repository.CardProjectionRepository.CardRow;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepositoryCustom.LockedCard;
 import com.example.bankcards.repository.CardUpdateStatusRequestRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardBalanceSplitService;
+import com.example.bankcards.service.CardHashFilter;
+import com.example.bankcards.service.CardLedgerService;
+import com.example.bankcards.service.CardNumberPool;
+import com.example.bankcards.service.CardOutboxService;
 import com.example.bankcards.service.CardSecurityService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.concurrent.StripedBatchExecutor;
 import com.example.bankcards.util.mapper.CardMapper;
+import com.example.bankcards.util.pagination.KeysetCursor;
 import com.example.bankcards.util.specification.CardSpecifications;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.crypto.SecretKey;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class CardServiceImpl implements CardService {
+    // Поля выгрузки без параметра fields (CardInfoResponse в представлении админа)
+    private static final Set<String> EXPORT_FIELDS = Set.of("id", "number", "date", "status", "balance", "owner");
+
     public int monthsQuantityUntilExpiresDefault;
+    private int bulkChunkSize;
+    private int bulkMaxCards;
+    private int transferMaxAttempts;
+    private long transferRetryBackoffMs;
+    private int transferBatchMaxItems;
+    private int transactionsMaxLimit;
+    private int exportFetchSize;
+    private long balanceExecutorTimeoutMs;
 
     private final Environment env;
     private final CardRepository cardRepository;
     private final CardHashRepository cardHashRepository;
     private final UserRepository userRepository;
     private final CardSecurityService cardSecurityService;
+    private final CardHashFilter cardHashFilter;
+    private final CardNumberPool cardNumberPool;
+    private final CardLedgerService cardLedgerService;
+    private final CardBalanceSplitService cardBalanceSplitService;
+    private final CardOutboxService cardOutboxService;
     private final CardUpdateStatusRequestRepository cardUpdateStatusRequestRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private Timer transferLockWaitTimer;
+    private Counter transferRetryCounter;
+    private DistributionSummary balanceBatchSize;
+    // Для записи резерва номера карты независимо от транзакции выпуска
+    private TransactionTemplate requiresNewTransaction;
+    private StripedBatchExecutor<BalanceCommand, CardBalanceResponse> balanceExecutor;
 
     @PostConstruct
     void init() {
         this.monthsQuantityUntilExpiresDefault = env.getProperty("card.months-until-expires", Integer.class, 24);
+        this.bulkChunkSize = env.getProperty("card.bulk.chunk-size", Integer.class, 500);
+        this.bulkMaxCards = env.getProperty("card.bulk.max-cards", Integer.class, 10000);
+        this.transferMaxAttempts = Math.max(1, env.getProperty("card.transfer.max-attempts", Integer.class, 3));
+        this.transferRetryBackoffMs = env.getProperty("card.transfer.retry-backoff-ms", Long.class, 20L);
+        this.transferBatchMaxItems = env.getProperty("card.transfer.batch-max-items", Integer.class, 1000);
+        this.transactionsMaxLimit = env.getProperty("card.transactions.max-limit", Integer.class, 500);
+        this.exportFetchSize = env.getProperty("card.export.fetch-size", Integer.class, 1000);
+        this.requiresNewTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.transferLockWaitTimer = Timer.builder("card.transfer.lock.wait")
+                .description("Время ожидания блокировки карт при переводе")
+                .register(meterRegistry);
+        this.transferRetryCounter = Counter.builder("card.transfer.retries")
+                .description("Повторы перевода или изменения баланса после конфликта блокировок")
+                .register(meterRegistry);
+
+        if (env.getProperty("card.balance-executor.enabled", Boolean.class, false)) {
+            this.balanceExecutorTimeoutMs = env.getProperty("card.balance-executor.timeout-ms", Long.class, 5000L);
+            this.balanceBatchSize = DistributionSummary.builder("card.balance.executor.batch.size")
+                    .description("Количество команд изменения баланса, применённых одной транзакцией")
+                    .register(meterRegistry);
+            this.balanceExecutor = new StripedBatchExecutor<>("card-balance",
+                    env.getProperty("card.balance-executor.stripes", Integer.class,
+                            Runtime.getRuntime().availableProcessors()),
+                    env.getProperty("card.balance-executor.queue-capacity", Integer.class, 10000),
+                    env.getProperty("card.balance-executor.max-batch-size", Integer.class, 256),
+                    env.getProperty("card.balance-executor.max-batch-latency-ms", Long.class, 2L),
+                    this::applyBalanceCommands);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (balanceExecutor != null) {
+            balanceExecutor.close();
+        }
     }
 
     // ГОТОВО
@@ -60,18 +164,19 @@ public class CardServiceImpl implements CardService {
             throw new NotFoundException("User not found");
         }
 
-        // генерируем случайный номер карты (через Card.getRandomNumber())
-        // через hmac(CardSecurityService) проверяем, нет ли у нас такого номера (сравниваем хэш)
-        // продолжаем так делать около 100 раз, иначе выдаем ошибку RuntimeException
-        String cardNum = generateUniqueCardNumber();
+        // берём заранее зарезервированный номер из пула;
+        // если пул пуст - генерируем случайный номер карты и через hmac(CardSecurityService) проверяем,
+        // нет ли у нас такого номера (сравниваем хэш); около 100 попыток, иначе выдаем ошибку RuntimeException
+        String cardNum = cardNumberPool.poll().orElseGet(this::generateUniqueCardNumber);
 
         // если все норм, то генерируем ключ AES(CardSecurityService) и шифруем номер карты
         SecretKey cardSecretKey = cardSecurityService.generateKey();
         String encryptedCardNumber = cardSecurityService.encryptNumber(cardNum, cardSecretKey);
 
         // шифруем ключ
-        CardEncryptionKey encryptedSecretKey = new CardEncryptionKey(cardSecurityService.encryptKey(cardSecretKey));
+        CardEncryptionKey encryptedSecretKey = cardSecurityService.wrapKey(cardSecretKey);
         Card newCard = new Card(owner, encryptedCardNumber, setValidityPeriod(body.getMonthsQuantityUntilExpires()));
+        newCard.setLastFour(CardMapper.lastFour(cardNum));
 
         newCard.setEncryptionKey(encryptedSecretKey);
         encryptedSecretKey.setCard(newCard);
@@ -79,16 +184,65 @@ public class CardServiceImpl implements CardService {
         // сохраняем в базу данных
         Card receivedCard = cardRepository.save(newCard);
         cardSecurityService.saveEncryptedKey(encryptedSecretKey);
+        cardOutboxService.record(receivedCard.getId(), CardOutboxEvent.Type.CARD_CREATED, new CardOutboxService.CardCreated(
+                owner.getId(), receivedCard.getStatus(), receivedCard.getValidityPeriod(), receivedCard.getLastFour()));
 
         return CardMapper.toPostResponse(receivedCard, cardNum);
     }
 
+    @Override
+    public BulkIssue createCards(CardBulkCreateRequest body) {
+        validateBulkCreateRequest(body);
+        return onChunkCommitted -> createCards(body, onChunkCommitted);
+    }
+
+    private void validateBulkCreateRequest(CardBulkCreateRequest body) {
+        if (body == null || body.items() == null || body.items().isEmpty()) {
+            throw new BadRequestException("Bulk request must contain at least one item");
+        }
+
+        long total = 0;
+        Set<UUID> ownerIds = new HashSet<>();
+        for (CardBulkCreateRequest.Item item : body.items()) {
+            if (item.ownerId() == null || item.count() <= 0) {
+                throw new BadRequestException("Each item must have ownerId and positive count");
+            }
+            total += item.count();
+            ownerIds.add(item.ownerId());
+        }
+        if (total > bulkMaxCards) {
+            throw new BadRequestException("Too many cards in one request. Maximum is " + bulkMaxCards);
+        }
+
+        if (userRepository.findAllById(ownerIds).size() != ownerIds.size()) {
+            throw new NotFoundException("User not found");
+        }
+    }
+
+    private int createCards(CardBulkCreateRequest body, Consumer<List<UUID>> onChunkCommitted) {
+        int created = 0;
+        for (CardBulkCreateRequest.Item item : body.items()) {
+            LocalDate validityPeriod = setValidityPeriod(item.monthsQuantityUntilExpires());
+            for (int issued = 0; issued < item.count(); issued += bulkChunkSize) {
+                int chunkSize = Math.min(bulkChunkSize, item.count() - issued);
+                // каждая пачка в своей транзакции: память и время блокировок не растут с размером запроса
+                List<UUID> ids = transactionTemplate.execute(status ->
+                        createCardsChunk(item.ownerId(), chunkSize, validityPeriod));
+                created += ids.size();
+                onChunkCommitted.accept(ids);
+            }
+        }
+        return created;
+    }
+
     @Transactional
     @Override
     public void updateCardStatus(UUID cardId, com.example.bankcards.dto.CardUpdateStatusRequest body) {
         Card card = getCardById(cardId);
 
         cardRepository.updateCardStatus(card.getId(), body.status());
+        cardOutboxService.record(cardId, CardOutboxEvent.Type.STATUS_CHANGED,
+                new CardOutboxService.StatusChanged(body.status()));
 
         if (body.isRequested()) {
             cardUpdateStatusRequestRepository.deleteByCardId(cardId);
@@ -110,22 +264,25 @@ public class CardServiceImpl implements CardService {
     @Transactional
     @Override
     public void deleteCard(UUID cardId)  {
-        Card card = getCardById(cardId);
+        Card card = cardRepository.findWithEncryptionKeyById(cardId)
+                .orElseThrow(() -> new NotFoundException("Card not found"));
         String number = getCardNumber(card);
 
         // надо удалить хэш из CardHash
-        String hashedKey = cardSecurityService.calculateHmac(number);
-        cardHashRepository.deleteByHmacHash(hashedKey);
+        byte[] digest = cardSecurityService.calculateHmacDigest(number);
+        cardHashRepository.deleteByHmacHash(Base64.getEncoder().encodeToString(digest));
+        cardHashFilter.remove(digest);
         // надо удалить карту из CardEncryptionKey
         cardSecurityService.deleteEncryptedKey(card.getEncryptionKey().getId());
         // если есть, надо удалить из CardBlockRequest
         cardUpdateStatusRequestRepository.deleteByCardId(card.getId());
         // надо удалить карту из Card
         cardRepository.delete(card);
+        cardOutboxService.record(cardId, CardOutboxEvent.Type.CARD_DELETED, null);
     }
 
     @Override
-    public List<CardInfoResponse> getCards(CardFilter filter) {
+    public CardInfoPage getCards(CardFilter filter) {
         Specification<Card> spec;
 
         if (filter instanceof AdminCardFilter) {
@@ -134,68 +291,519 @@ public class CardServiceImpl implements CardService {
             spec = CardSpecifications.byFilter(filter);
         }
 
-        Sort sort = Sort.unsorted();
-        if (filter.getSortBy() != null) {
-            Sort.Direction dir = "DESC".equalsIgnoreCase(filter.getSortDirection()) ?
-                    Sort.Direction.DESC : Sort.Direction.ASC;
-            sort = Sort.by(dir, filter.getSortBy());
+        String sortBy = filter.getSortBy() != null ? filter.getSortBy() : "id";
+        Sort.Direction dir = "DESC".equalsIgnoreCase(filter.getSortDirection()) ?
+                Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = cardSort(sortBy, dir);
+
+        int pageNumber = filter.getPage();
+        if (filter.getCursor() != null && !filter.getCursor().isBlank()) {
+            spec = spec.and(CardSpecifications.after(filter.getCursor(), sortBy, dir));
+            pageNumber = 0;
         }
 
-        PageRequest page = PageRequest.of(filter.getPage(), filter.getSize(), sort);
-        return cardRepository.findAll(spec, page)
-                .map(card -> CardMapper.toGetResponse(card, getCardNumber(card)))
-                .getContent();
+        // Slice вместо Page: без запроса count(*)
+        PageRequest page = PageRequest.of(pageNumber, filter.getSize(), sort);
+        if (filter.getFields() != null && filter.getFields().length > 0) {
+            return getCardRows(spec, page, sortBy, dir, Set.copyOf(Arrays.asList(filter.getFields())),
+                    filter instanceof AdminCardFilter);
+        }
+        Slice<Card> cards = cardRepository.findSlice(spec, page);
+
+        String nextCursor = cards.hasNext() && cards.hasContent()
+                ? CardSpecifications.cursorAfter(cards.getContent().get(cards.getNumberOfElements() - 1), sortBy, dir)
+                : null;
+        return new CardInfoPage(toInfoResponses(cards.getContent()), nextCursor);
     }
 
-    // ГОТОВО
     @Transactional
     @Override
+    public long exportCards(AdminCardFilter filter, Consumer<CardInfoResponse> consumer) {
+        String sortBy = filter.getSortBy() != null ? filter.getSortBy() : "id";
+        Sort.Direction dir = "DESC".equalsIgnoreCase(filter.getSortDirection()) ?
+                Sort.Direction.DESC : Sort.Direction.ASC;
+        Set<String> fields = filter.getFields() != null && filter.getFields().length > 0
+                ? Set.copyOf(Arrays.asList(filter.getFields()))
+                : EXPORT_FIELDS;
+        Set<CardColumn> columns = cardColumns(fields, sortBy, true);
+
+        long exported = 0;
+        List<CardRow> chunk = new ArrayList<>(exportFetchSize);
+        try (Stream<CardRow> rows = cardRepository.streamRows(CardSpecifications.byFilter(filter),
+                cardSort(sortBy, dir), columns, exportFetchSize)) {
+            Iterator<CardRow> it = rows.iterator();
+            while (it.hasNext()) {
+                chunk.add(it.next());
+                if (chunk.size() == exportFetchSize || !it.hasNext()) {
+                    toRowResponses(chunk, columns).forEach(consumer);
+                    exported += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+        return exported;
+    }
+
+    // ГОТОВО
+    /**
+     * Пополнение или списание с карты.
+     *
+     * Нюансы:
+     * - Без card.balance-executor.enabled изменение выполняется в отдельной транзакции одним условным UPDATE.
+     * - С ним команда ставится в очередь полосы, выбранной по id карты; поток полосы применяет накопившиеся
+     *   команды одной транзакцией (см. applyBalanceCommands), а вызывающий поток ждёт результат.
+     *   Метод поэтому не транзакционный: ожидающие запросы не держат соединения из пула.
+     * - Если очередь полосы заполнена, команда выполняется напрямую, как без исполнителя.
+     * - Ошибка по таймауту ожидания возвращается, только если команду удалось отменить до начала выполнения;
+     *   команду, которую полоса уже применяет, дожидаемся, чтобы не сообщить об ошибке при успешном коммите.
+     * - Прямое выполнение, как и перевод, повторяется при конфликте блокировок (актуально для разделённых карт).
+     * - Если условный UPDATE отклонён, а по перечитанной карте операция допустима (карта изменилась между
+     *   запросами), UPDATE повторяется один раз; пополнение никогда не отклоняется как нехватка средств.
+     * - Для карты с разделённым балансом условный UPDATE карты не срабатывает, и операция идёт через слоты
+     *   (см. CardBalanceSplitService).
+     */
+    @Override
     public CardBalanceResponse updateCardBalanceAction(UUID cardId, CardBalanceRequest body) {
-        checkIfCurrentUserIsCardOwner(cardId);
+        if (body.action() == null) {
+            throw new BadRequestException("Invalid action");
+        }
+        if (body.amount() < 0) {
+            throw new BadRequestException("Amount cannot be negative");
+        }
 
-        Card card = getCardById(cardId);
+        UUID currentUserId = UUID.fromString(getAuthData().getName());
+        if (balanceExecutor != null) {
+            try {
+                return awaitBalanceCommand(balanceExecutor.submit(cardId,
+                        new BalanceCommand(cardId, currentUserId, body.action(), body.amount())));
+            } catch (RejectedExecutionException e) {
+                // очередь переполнена - выполняем сами
+            }
+        }
+        return executeWithLockRetry(() -> updateBalanceDirectly(cardId, currentUserId, body));
+    }
+
+    private CardBalanceResponse updateBalanceDirectly(UUID cardId, UUID currentUserId, CardBalanceRequest body) {
+        OptionalLong newBalance = applyBalanceUpdate(cardId, currentUserId, body);
+        if (newBalance.isEmpty()) {
+            RuntimeException rejected = balanceUpdateRejected(cardId, currentUserId, body);
+            if (rejected != null) {
+                throw rejected;
+            }
+            // по перечитанной карте операция допустима: карта изменилась между запросами
+            // (например, параллельный перевод), поэтому условный UPDATE повторяется один раз
+            newBalance = applyBalanceUpdate(cardId, currentUserId, body);
+        }
+        if (newBalance.isEmpty()) {
+            RuntimeException rejected = balanceUpdateRejected(cardId, currentUserId, body);
+            throw rejected != null ? rejected : concurrentBalanceUpdate(body.action());
+        }
+        cardLedgerService.recordBalanceChange(cardId, body.action(), body.amount());
+        cardOutboxService.record(cardId, CardOutboxEvent.Type.BALANCE_CHANGED, new CardOutboxService.BalanceChanged(
+                body.action() == Card.BalanceAction.WITHDRAW_MONEY ? -body.amount() : body.amount(),
+                newBalance.getAsLong(), null));
+        return new CardBalanceResponse(newBalance.getAsLong());
+    }
+
+    private OptionalLong applyBalanceUpdate(UUID cardId, UUID currentUserId, CardBalanceRequest body) {
+        // владелец, доступность карты и баланс проверяются в самом UPDATE - один запрос без чтения карты
+        LocalDate today = LocalDate.now();
+        OptionalLong newBalance = switch (body.action()) {
+            case WITHDRAW_MONEY -> cardRepository.withdraw(cardId, currentUserId, body.amount(), today);
+            case DEPOSIT_MONEY -> cardRepository.deposit(cardId, currentUserId, body.amount(), today);
+        };
+        return newBalance.isPresent() ? newBalance : updateSplitBalance(cardId, currentUserId, body);
+    }
+
+    /**
+     * Пополнение или списание карты с разделённым балансом: сначала через один слот без блокировки карты,
+     * а если подходящего слота нет - под блокировкой карты (при нехватке средств одного слота они сводятся в card.balance).
+     *
+     * @return новый баланс или пустой результат, если баланс карты не разделён
+     */
+    private OptionalLong updateSplitBalance(UUID cardId, UUID currentUserId, CardBalanceRequest body) {
+        Optional<CardBalanceSplitService.SplitCard> split = cardBalanceSplitService.findSplitCard(cardId);
+        if (split.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        CardBalanceSplitService.SplitCard card = split.get();
+        checkBalanceUpdate(card.ownerId(), card.status(), card.validityPeriod(), currentUserId);
+
+        OptionalLong newBalance = body.action() == Card.BalanceAction.DEPOSIT_MONEY
+                ? cardBalanceSplitService.depositToSlot(cardId, card.slots(), body.amount())
+                : cardBalanceSplitService.withdrawFromSlot(cardId, body.amount());
+        if (newBalance.isPresent()) {
+            return newBalance;
+        }
+
+        List<LockedCard> locked = cardRepository.lockForUpdate(List.of(cardId));
+        if (locked.isEmpty()) {
+            throw new NotFoundException("Card not found");
+        }
+        LockedCard lockedCard = locked.get(0);
+        checkBalanceUpdate(lockedCard.ownerId(), lockedCard.status(), lockedCard.validityPeriod(), currentUserId);
+        long sum = body.action() == Card.BalanceAction.WITHDRAW_MONEY ? -body.amount() : body.amount();
+        validateBalanceUpdateCorrect(lockedCard.balance(), sum);
+        cardRepository.applyBalanceDeltas(locked, Map.of(cardId, sum));
+        return OptionalLong.of(lockedCard.balance() + sum);
+    }
+
+    /**
+     * Ждёт результат команды не дольше card.balance-executor.timeout-ms.
+     * По истечении срока команда отменяется, если полоса её ещё не взяла, - тогда она гарантированно не выполнится
+     * и ошибку можно вернуть (повтор запроса не спишет деньги дважды). Уже взятая команда может закоммититься,
+     * поэтому её результат дожидаемся без ограничения по времени.
+     */
+    private CardBalanceResponse awaitBalanceCommand(CompletableFuture<CardBalanceResponse> result) {
+        try {
+            try {
+                return result.get(balanceExecutorTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (result.cancel(false)) {
+                    throw new RuntimeException("Internal Error");
+                }
+                return result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Internal Error");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Internal Error");
+        }
+    }
+
+    /**
+     * Применяет пачку команд изменения баланса одной транзакцией (вызывается потоком полосы исполнителя).
+     *
+     * Нюансы:
+     * - Карты пачки блокируются одним запросом, команды проверяются по очереди с учётом уже принятых
+     *   команд той же карты; непрошедшая проверку команда завершается своей ошибкой и не влияет на остальные.
+     * - Итоговое изменение каждой карты записывается одним UPDATE, записи журнала - одним JDBC-пакетом.
+     * - Команды, отменённые ожидающими по таймауту, сюда не попадают (их отбрасывает исполнитель).
+     * - При конфликте блокировок транзакция повторяется, как и при прямом выполнении (executeWithLockRetry).
+     * - Результаты передаются вызывающим только после коммита; при ошибке транзакции все команды
+     *   пачки завершаются этой ошибкой (исполнитель делает это сам).
+     */
+    private void applyBalanceCommands(List<StripedBatchExecutor.Command<BalanceCommand, CardBalanceResponse>> commands) {
+        balanceBatchSize.record(commands.size());
+        Object[] outcomes = new Object[commands.size()];
+
+        executeWithLockRetry(() -> {
+            Set<UUID> cardIds = new HashSet<>();
+            commands.forEach(command -> cardIds.add(command.payload().cardId()));
+            Map<UUID, LockedCard> cards = new HashMap<>();
+            for (LockedCard card : cardRepository.lockForUpdate(cardIds)) {
+                cards.put(card.id(), card);
+            }
 
-        switch (body.action()) {
-            case WITHDRAW_MONEY -> {
-                return withdrawMoney(card, body.amount());
+            Map<UUID, Long> balances = new HashMap<>();
+            Map<UUID, Long> deltas = new HashMap<>();
+            List<CardLedgerService.BalanceChange> changes = new ArrayList<>(commands.size());
+            List<CardOutboxService.Event> events = new ArrayList<>(commands.size());
+            for (int i = 0; i < commands.size(); i++) {
+                BalanceCommand command = commands.get(i).payload();
+                try {
+                    LockedCard card = cards.get(command.cardId());
+                    if (card == null) {
+                        throw new NotFoundException("Card not found");
+                    }
+                    checkBalanceUpdate(card.ownerId(), card.status(), card.validityPeriod(), command.userId());
+
+                    long sum = command.action() == Card.BalanceAction.WITHDRAW_MONEY ? -command.amount() : command.amount();
+                    long balance = balances.getOrDefault(card.id(), card.balance());
+                    validateBalanceUpdateCorrect(balance, sum);
+
+                    balances.put(card.id(), balance + sum);
+                    deltas.merge(card.id(), sum, Long::sum);
+                    changes.add(new CardLedgerService.BalanceChange(card.id(), command.action(), command.amount()));
+                    events.add(balanceChanged(card.id(), sum, balance + sum, null));
+                    outcomes[i] = new CardBalanceResponse(balance + sum);
+                } catch (NotFoundException | AccessDeniedException | IllegalArgumentException e) {
+                    outcomes[i] = e;
+                }
             }
-            case DEPOSIT_MONEY -> {
-                return depositMoney(card, body.amount());
+
+            cardRepository.applyBalanceDeltas(cards.values(), deltas);
+            cardLedgerService.recordBalanceChanges(changes);
+            cardOutboxService.recordAll(events);
+            return null;
+        });
+
+        for (int i = 0; i < commands.size(); i++) {
+            if (outcomes[i] instanceof CardBalanceResponse response) {
+                commands.get(i).complete(response);
+            } else {
+                commands.get(i).fail((RuntimeException) outcomes[i]);
             }
-            default -> throw new BadRequestException("Invalid action");
         }
     }
 
+    // Команда изменения баланса для исполнителя по полосам
+    private record BalanceCommand(UUID cardId, UUID userId, Card.BalanceAction action, long amount) {}
+
     @Override
     public CardBalanceResponse getBalance(UUID cardId) {
         checkIfCurrentUserIsCardOwner(cardId);
 
         Card card = getCardById(cardId);
 
-        return new CardBalanceResponse(card.getBalance());
+        return new CardBalanceResponse(card.getTotalBalance());
     }
 
     // ГОТОВА
-    /** Перевод денег из одной карты на другую */
-    @Transactional
+    /**
+     * Перевод денег из одной карты на другую.
+     *
+     * Нюансы:
+     * - Обе карты блокируются одним запросом в порядке id, поэтому встречные переводы между
+     *   одними и теми же картами ждут друг друга, а не попадают во взаимную блокировку.
+     * - Если БД всё же отклонила транзакцию из-за конфликта блокировок (ConcurrencyFailureException),
+     *   перевод повторяется в новой транзакции, не более card.transfer.max-attempts раз.
+     */
     @Override
     public void doMoneyTransfer(CardTransferMoney body) {
-        checkIfCurrentUserIsCardOwner(body.from());
+        checkTransferRequest(body);
 
+        UUID currentUserId = UUID.fromString(getAuthData().getName());
+        executeWithLockRetry(() -> {
+            transferLocked(body, currentUserId);
+            return null;
+        });
+    }
+
+    /**
+     * Пакетный перевод денег.
+     *
+     * Нюансы:
+     * - Все карты пакета блокируются одним запросом (в порядке id, как и при одиночном переводе),
+     *   переводы проверяются в памяти по текущим балансам с учётом предыдущих переводов пакета.
+     * - На каждую карту приходится одна итоговая дельта баланса, дельты записываются одним JDBC-пакетом.
+     * - В журнал операций пишется каждый перевод (а не итоговые дельты), тоже одним JDBC-пакетом.
+     * - Пакет выполняется в одной транзакции; в режиме PER_ITEM отклонённые переводы просто не попадают
+     *   в итоговые дельты, поэтому отдельная транзакция на каждый перевод не нужна.
+     */
+    @Override
+    public CardBatchTransferResponse doMoneyTransfers(CardBatchTransferRequest body) {
+        if (body == null || body.transfers() == null || body.transfers().isEmpty()) {
+            throw new BadRequestException("Transfers list is empty");
+        }
+        if (body.transfers().size() > transferBatchMaxItems) {
+            throw new BadRequestException("Too many transfers in batch");
+        }
+
+        CardBatchTransferRequest.Mode mode = body.mode() != null
+                ? body.mode()
+                : CardBatchTransferRequest.Mode.ALL_OR_NOTHING;
+        UUID currentUserId = UUID.fromString(getAuthData().getName());
+        return executeWithLockRetry(() -> transferBatchLocked(body.transfers(), mode, currentUserId));
+    }
+
+    @Override
+    public String getTransactions(UUID cardId, CardTransactionFilter filter, Consumer<CardTransactionResponse> consumer) {
+        int limit = filter.getLimit();
+        if (limit < 1 || limit > transactionsMaxLimit) {
+            throw new BadRequestException("Limit must be between 1 and " + transactionsMaxLimit);
+        }
+
+        LocalDateTime createdBefore = null;
+        UUID idBefore = null;
+        if (filter.getCursor() != null && !filter.getCursor().isBlank()) {
+            String[] parts = KeysetCursor.decode(filter.getCursor(), 2);
+            try {
+                createdBefore = LocalDateTime.parse(parts[0]);
+                idBefore = UUID.fromString(parts[1]);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        // читаем на одну операцию больше: если она есть, страница не последняя
+        UUID currentUserId = UUID.fromString(getAuthData().getName());
+        CardTransactionResponse[] last = {null};
+        int[] written = {0};
+        int read = cardLedgerService.readHistory(cardId, currentUserId, createdBefore, idBefore, limit + 1, item -> {
+            if (written[0] < limit) {
+                consumer.accept(item);
+                last[0] = item;
+                written[0]++;
+            }
+        });
+
+        if (read == 0) {
+            // пустая страница: карта не найдена, чужая или операций больше нет
+            checkIfCurrentUserIsCardOwner(cardId);
+        }
+        return read > limit
+                ? KeysetCursor.encode(last[0].createdAt().toString(), last[0].id().toString())
+                : null;
+    }
+
+    /**
+     * Выполняет action в новой транзакции. Если БД отклонила транзакцию из-за конфликта блокировок
+     * (ConcurrencyFailureException), повторяет её не более card.transfer.max-attempts раз.
+     */
+    private <T> T executeWithLockRetry(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= transferMaxAttempts) {
+                    throw e;
+                }
+                transferRetryCounter.increment();
+                backOffBeforeRetry(attempt);
+            }
+        }
+    }
+
+    private void transferLocked(CardTransferMoney body, UUID currentUserId) {
+        Map<UUID, LockedCard> cards = lockCards(List.of(body.from(), body.to()));
+        LockedCard cardFrom = cards.get(body.from());
+        LockedCard cardTo = cards.get(body.to());
+
+        checkTransfer(cardFrom, cardTo, currentUserId);
+        validateBalanceUpdateCorrect(cardFrom.balance(), -body.amount());
+        validateBalanceUpdateCorrect(cardTo.balance(), body.amount());
+
+        cardRepository.applyBalanceDeltas(cards.values(), Map.of(cardFrom.id(), -body.amount(), cardTo.id(), body.amount()));
+        cardLedgerService.recordTransfers(List.of(body));
+        cardOutboxService.recordAll(List.of(
+                balanceChanged(cardFrom.id(), -body.amount(), cardFrom.balance() - body.amount(), cardTo.id()),
+                balanceChanged(cardTo.id(), body.amount(), cardTo.balance() + body.amount(), cardFrom.id())));
+    }
+
+    private static CardOutboxService.Event balanceChanged(UUID cardId, long amount, long balance, UUID counterpartyCardId) {
+        return new CardOutboxService.Event(cardId, CardOutboxEvent.Type.BALANCE_CHANGED,
+                new CardOutboxService.BalanceChanged(amount, balance, counterpartyCardId));
+    }
+
+    private CardBatchTransferResponse transferBatchLocked(List<CardTransferMoney> transfers,
+                                                          CardBatchTransferRequest.Mode mode,
+                                                          UUID currentUserId) {
+        Set<UUID> cardIds = new HashSet<>();
+        for (CardTransferMoney transfer : transfers) {
+            if (transfer != null && transfer.from() != null && transfer.to() != null) {
+                cardIds.add(transfer.from());
+                cardIds.add(transfer.to());
+            }
+        }
+        Map<UUID, LockedCard> cards = lockCards(cardIds);
+
+        // балансы карт с учётом уже принятых переводов пакета и итоговые изменения балансов
+        Map<UUID, Long> balances = new HashMap<>();
+        Map<UUID, Long> deltas = new HashMap<>();
+        List<CardBatchTransferResponse.Item> results = new ArrayList<>(transfers.size());
+        List<CardTransferMoney> applied = new ArrayList<>(transfers.size());
+        List<CardOutboxService.Event> events = new ArrayList<>(transfers.size() * 2);
+        int rejected = 0;
+
+        for (int i = 0; i < transfers.size(); i++) {
+            CardTransferMoney transfer = transfers.get(i);
+            try {
+                checkTransferRequest(transfer);
+                LockedCard cardFrom = cards.get(transfer.from());
+                LockedCard cardTo = cards.get(transfer.to());
+                checkTransfer(cardFrom, cardTo, currentUserId);
+
+                long fromBalance = balances.getOrDefault(cardFrom.id(), cardFrom.balance());
+                long toBalance = balances.getOrDefault(cardTo.id(), cardTo.balance());
+                validateBalanceUpdateCorrect(fromBalance, -transfer.amount());
+                validateBalanceUpdateCorrect(toBalance, transfer.amount());
+
+                balances.put(cardFrom.id(), fromBalance - transfer.amount());
+                balances.put(cardTo.id(), toBalance + transfer.amount());
+                deltas.merge(cardFrom.id(), -transfer.amount(), Long::sum);
+                deltas.merge(cardTo.id(), transfer.amount(), Long::sum);
+                applied.add(transfer);
+                events.add(balanceChanged(cardFrom.id(), -transfer.amount(), fromBalance - transfer.amount(), cardTo.id()));
+                events.add(balanceChanged(cardTo.id(), transfer.amount(), toBalance + transfer.amount(), cardFrom.id()));
+                results.add(new CardBatchTransferResponse.Item(i, CardBatchTransferResponse.Status.APPLIED, null, null));
+            } catch (BadRequestException | NotFoundException | AccessDeniedException | IllegalArgumentException e) {
+                rejected++;
+                results.add(new CardBatchTransferResponse.Item(
+                        i, CardBatchTransferResponse.Status.REJECTED, errorCode(e), e.getMessage()));
+            }
+        }
+
+        if (rejected > 0 && mode == CardBatchTransferRequest.Mode.ALL_OR_NOTHING) {
+            List<CardBatchTransferResponse.Item> rolledBack = new ArrayList<>(results.size());
+            for (CardBatchTransferResponse.Item item : results) {
+                rolledBack.add(item.status() == CardBatchTransferResponse.Status.APPLIED
+                        ? new CardBatchTransferResponse.Item(item.index(), CardBatchTransferResponse.Status.ROLLED_BACK, null, null)
+                        : item);
+            }
+            return new CardBatchTransferResponse(0, rejected, rolledBack);
+        }
+
+        cardRepository.applyBalanceDeltas(cards.values(), deltas);
+        cardLedgerService.recordTransfers(applied);
+        cardOutboxService.recordAll(events);
+        return new CardBatchTransferResponse(transfers.size() - rejected, rejected, results);
+    }
+
+    /** Блокирует карты до конца транзакции и возвращает их по id */
+    private Map<UUID, LockedCard> lockCards(Collection<UUID> cardIds) {
+        long lockStart = System.nanoTime();
+        List<LockedCard> locked = cardRepository.lockForUpdate(cardIds);
+        transferLockWaitTimer.record(System.nanoTime() - lockStart, TimeUnit.NANOSECONDS);
+
+        Map<UUID, LockedCard> cards = new HashMap<>();
+        for (LockedCard card : locked) {
+            cards.put(card.id(), card);
+        }
+        return cards;
+    }
+
+    /** @throws BadRequestException если не указаны карты, сумма отрицательна или карты совпадают */
+    private void checkTransferRequest(CardTransferMoney body) {
+        if (body == null || body.from() == null || body.to() == null) {
+            throw new BadRequestException("Card id is required");
+        }
         if (body.amount() < 0) {
             throw new BadRequestException("Amount cannot be negative");
         }
+        if (body.from().equals(body.to())) {
+            throw new BadRequestException("Cannot transfer money to the same card");
+        }
+    }
 
-        Card cardFrom = getCardById(body.from());
-        Card cardTo = getCardById(body.to());
-
-        checkCardAvailable(cardFrom);
-        checkCardAvailable(cardTo);
+    /** Проверяет существование карт, владельца карты отправителя и доступность обеих карт */
+    private void checkTransfer(LockedCard cardFrom, LockedCard cardTo, UUID currentUserId) {
+        if (cardFrom == null || cardTo == null) {
+            throw new NotFoundException("Card not found");
+        }
+        if (!cardFrom.ownerId().equals(currentUserId)) {
+            throw new AccessDeniedException("Current user is not owner of the card");
+        }
+        checkCardAvailable(cardFrom.status(), cardFrom.validityPeriod());
+        checkCardAvailable(cardTo.status(), cardTo.validityPeriod());
+    }
 
-        validateBalanceUpdateCorrect(cardFrom, -body.amount());
-        validateBalanceUpdateCorrect(cardFrom, body.amount());
+    // HTTP-код, который ExceptionResolver вернул бы для этой ошибки
+    private static int errorCode(RuntimeException e) {
+        if (e instanceof BadRequestException) {
+            return 400;
+        }
+        if (e instanceof NotFoundException) {
+            return 404;
+        }
+        return 403;
+    }
 
-        cardRepository.transferMoney(cardFrom.getId(), cardTo.getId(), body.amount());
+    // Случайная пауза, растущая с номером попытки, чтобы конфликтующие переводы не повторялись синхронно
+    private void backOffBeforeRetry(int attempt) {
+        if (transferRetryBackoffMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(transferRetryBackoffMs * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Internal Error");
+        }
     }
 
     /*
@@ -244,30 +852,36 @@ public class CardServiceImpl implements CardService {
     }
      */
 
-    // ГОТОВО (но не тестировано)
-    private CardBalanceResponse withdrawMoney(Card card, double amount) {
-        if (amount < 0) {
-            throw new BadRequestException("Amount cannot be negative");
+    /**
+     * Определяет, почему условное обновление баланса не изменило карту. Выполняется только при отказе.
+     * Порядок проверок тот же, что и раньше: карта, владелец, доступность карты, баланс.
+     *
+     * @return причина отказа или null, если по перечитанной карте операция допустима
+     */
+    private RuntimeException balanceUpdateRejected(UUID cardId, UUID currentUserId, CardBalanceRequest body) {
+        Card card = cardRepository.findCardById(cardId);
+        if (card == null) {
+            return new NotFoundException("Card not found");
         }
-
-        checkCardAvailable(card);
-        validateBalanceUpdateCorrect(card, -amount);
-        double newBalance = card.getBalance() - amount;
-        cardRepository.updateCardBalance(card.getId(), newBalance);
-        return new CardBalanceResponse(newBalance);
-    }
-
-    // ГОТОВО (но не тестировано)
-    private CardBalanceResponse depositMoney(Card card, double amount) {
-        if (amount < 0) {
-            throw new BadRequestException("Amount cannot be negative");
+        if (!card.getOwner().getId().equals(currentUserId)) {
+            return new AccessDeniedException("Current user is not owner of the card");
         }
+        try {
+            checkCardAvailable(card);
+            validateBalanceUpdateCorrect(card,
+                    body.action() == Card.BalanceAction.WITHDRAW_MONEY ? -body.amount() : body.amount());
+        } catch (RuntimeException e) {
+            return e;
+        }
+        return null;
+    }
 
-        checkCardAvailable(card);
-        validateBalanceUpdateCorrect(card, amount);
-        double newBalance = card.getBalance() + amount;
-        cardRepository.updateCardBalance(card.getId(), newBalance);
-        return new CardBalanceResponse(newBalance);
+    // Повторный условный UPDATE тоже не прошёл, хотя карта допускает операцию: о нехватке средств
+    // можно сообщить только при списании
+    private static RuntimeException concurrentBalanceUpdate(Card.BalanceAction action) {
+        return action == Card.BalanceAction.WITHDRAW_MONEY
+                ? new IllegalArgumentException("Not enough balance")
+                : new IllegalArgumentException("Card was changed concurrently, retry the request");
     }
 
     ///  Функции, работающие с зашифрованными данными
@@ -279,13 +893,109 @@ public class CardServiceImpl implements CardService {
     public String getCardNumber(Card card) {
         try {
             CardEncryptionKey encryptionKey = card.getEncryptionKey();
-            SecretKey decryptedKey = cardSecurityService.decryptKey(encryptionKey.getEncryptedKey());
+            SecretKey decryptedKey = cardSecurityService.decryptKey(encryptionKey);
             return cardSecurityService.decryptNumber(card.getEncryptedNumber(), decryptedKey);
         } catch (Exception e) {
             throw new RuntimeException("Internal error");
         }
     }
 
+    /**
+     * Маппинг списка карт в ответ. Номер расшифровывается только для карт, у которых ещё
+     * не заполнены последние 4 цифры (до backfill), причём одним пакетом для всей страницы.
+     */
+    private List<CardInfoResponse> toInfoResponses(List<Card> cards) {
+        Map<UUID, String> numbers = decryptNumbers(cards.stream()
+                .filter(card -> card.getLastFour() == null)
+                .toList());
+
+        return cards.stream()
+                .map(card -> card.getLastFour() != null
+                        ? CardMapper.toGetResponse(card)
+                        : CardMapper.toGetResponse(card, numbers.get(card.getId())))
+                .toList();
+    }
+
+    // Расшифровка номеров карт одним пакетом; результат - номер по id карты
+    private Map<UUID, String> decryptNumbers(List<Card> cards) {
+        Map<UUID, String> numbers = new HashMap<>();
+        if (cards.isEmpty()) {
+            return numbers;
+        }
+        List<String> decrypted = cardSecurityService.decryptNumbers(cards.stream()
+                .map(card -> new CardSecurityService.EncryptedNumber(card.getEncryptedNumber(), card.getEncryptionKey()))
+                .toList());
+        for (int i = 0; i < cards.size(); i++) {
+            numbers.put(cards.get(i).getId(), decrypted.get(i));
+        }
+        return numbers;
+    }
+
+    /**
+     * Список карт только с запрошенными полями (fields): из базы читаются нужные колонки, без сущностей.
+     *
+     * Нюансы:
+     * - Владелец присоединяется только для поля owner и только в выдаче админа (пользователю оно не показывается).
+     * - Номер маскируется по last_four; расшифровываются лишь карты, у которых last_four ещё не заполнен.
+     * - Колонка сортировки читается всегда - по ней строится курсор следующей страницы.
+     * - Неизвестные поля игнорируются, как и в фильтре Jackson.
+     */
+    private CardInfoPage getCardRows(Specification<Card> spec, PageRequest page, String sortBy, Sort.Direction dir,
+                                     Set<String> fields, boolean admin) {
+        Set<CardColumn> columns = cardColumns(fields, sortBy, admin);
+        Slice<CardRow> rows = cardRepository.findRows(spec, page, columns);
+
+        String nextCursor = rows.hasNext() && rows.hasContent()
+                ? CardSpecifications.cursorAfter(rows.getContent().get(rows.getNumberOfElements() - 1), sortBy, dir)
+                : null;
+        return new CardInfoPage(toRowResponses(rows.getContent(), columns), nextCursor);
+    }
+
+    // Колонки для запрошенных полей и колонки сортировки
+    private static Set<CardColumn> cardColumns(Set<String> fields, String sortBy, boolean admin) {
+        EnumSet<CardColumn> columns = EnumSet.noneOf(CardColumn.class);
+        if (fields.contains("number")) {
+            columns.add(CardColumn.LAST_FOUR);
+        }
+        if (fields.contains("date") || "validityPeriod".equals(sortBy)) {
+            columns.add(CardColumn.VALIDITY_PERIOD);
+        }
+        if (fields.contains("status") || "status".equals(sortBy)) {
+            columns.add(CardColumn.STATUS);
+        }
+        if (fields.contains("balance") || "balance".equals(sortBy)) {
+            columns.add(CardColumn.BALANCE);
+        }
+        if (admin && fields.contains("owner")) {
+            columns.add(CardColumn.OWNER_LOGIN);
+        }
+        return columns;
+    }
+
+    // Маппинг строк выборки; номера карт без last_four расшифровываются одним пакетом
+    private List<CardInfoResponse> toRowResponses(List<CardRow> rows, Set<CardColumn> columns) {
+        Map<UUID, String> numbers = Map.of();
+        if (columns.contains(CardColumn.LAST_FOUR)) {
+            List<UUID> withoutLastFour = rows.stream()
+                    .filter(row -> row.lastFour() == null)
+                    .map(CardRow::id)
+                    .toList();
+            if (!withoutLastFour.isEmpty()) {
+                numbers = decryptNumbers(cardRepository.findWithEncryptionKeyByIdIn(withoutLastFour));
+            }
+        }
+
+        Map<UUID, String> decrypted = numbers;
+        return rows.stream()
+                .map(row -> CardMapper.toGetResponse(row, decrypted.get(row.id())))
+                .toList();
+    }
+
+    // id замыкает сортировку: порядок однозначен, и курсор может указывать на конкретную карту
+    private static Sort cardSort(String sortBy, Sort.Direction dir) {
+        return "id".equals(sortBy) ? Sort.by(dir, "id") : Sort.by(dir, sortBy).and(Sort.by(dir, "id"));
+    }
+
     public LocalDate setValidityPeriod(Integer monthsQuantity) {
         if (monthsQuantity == null) {
             monthsQuantity = monthsQuantityUntilExpiresDefault;
@@ -312,11 +1022,17 @@ public class CardServiceImpl implements CardService {
     }
 
     /** Генерирует уникальный номер карты. Гарантирует что карты с таким номером не существует.
+    *
+    * Нюансы:
+    * - Хэш номера вставляется отдельной транзакцией как резерв и сразу снимается с резерва в транзакции
+    *   вызывающего. Если фильтр ошибся (номер вставил другой экземпляр или его не было в снимке при перестроении),
+    *   нарушение уникального индекса не портит транзакцию выпуска - берём другой номер.
+    * - Если транзакция вызывающего откатится, резерв останется и номер освободит CardNumberPool.reclaimExpired.
     * @throws RuntimeException если генерация номера прошла неудачно
     */
     public String generateUniqueCardNumber()  {
         StringBuilder resultNumber;
-        String resultHash;
+        byte[] resultDigest;
 
         int attempt = 0;
         do {
@@ -328,14 +1044,27 @@ public class CardServiceImpl implements CardService {
             }
 
             try {
-                resultHash = cardSecurityService.calculateHmac(resultNumber.toString());
+                resultDigest = cardSecurityService.calculateHmacDigest(resultNumber.toString());
             } catch (Exception e) {
                 throw new RuntimeException("Internal error");
             }
-
-            if (!cardHashRepository.existsByHmacHash(resultHash)) {
-                cardHashRepository.save(new CardHash(resultHash));
-                return resultNumber.toString();
+            String resultHash = Base64.getEncoder().encodeToString(resultDigest);
+
+            // если фильтр уверен, что такого хэша нет, запрос в базу не нужен (уникальность всё равно гарантирует индекс)
+            if (!cardHashFilter.mightContain(resultDigest) || !cardHashRepository.existsByHmacHash(resultHash)) {
+                UUID hashId;
+                try {
+                    hashId = requiresNewTransaction.execute(status ->
+                            cardHashRepository.saveAndFlush(new CardHash(resultHash, LocalDateTime.now())).getId());
+                } catch (DataIntegrityViolationException e) {
+                    cardHashFilter.add(resultDigest);
+                    ++attempt;
+                    continue;
+                }
+                cardHashFilter.add(resultDigest);
+                if (cardHashRepository.claimReserved(hashId) == 1) {
+                    return resultNumber.toString();
+                }
             }
             ++attempt;
         } while (attempt < 100);
@@ -343,6 +1072,36 @@ public class CardServiceImpl implements CardService {
         throw new RuntimeException("Too much attempts to generate card number. Something went wrong.");
     }
 
+    // Выпускает пачку карт одного владельца в текущей транзакции
+    private List<UUID> createCardsChunk(UUID ownerId, int count, LocalDate validityPeriod) {
+        User owner = userRepository.getReferenceById(ownerId);
+        List<String> numbers = cardNumberPool.generateIssued(count);
+        List<CardSecurityService.EncryptedCard> encrypted = cardSecurityService.encryptNumbers(numbers);
+
+        List<Card> cards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Card card = new Card(owner, encrypted.get(i).encryptedNumber(), validityPeriod);
+            card.setLastFour(CardMapper.lastFour(numbers.get(i)));
+
+            CardEncryptionKey key = new CardEncryptionKey(encrypted.get(i).encryptedKey(), encrypted.get(i).masterKeyVersion());
+            card.setEncryptionKey(key);
+            key.setCard(card);
+            cards.add(card);
+        }
+
+        // ключи сохраняются каскадом, вставки группируются в JDBC batch (spring.jpa.properties.hibernate.jdbc.*)
+        List<Card> saved = cardRepository.saveAll(cards);
+        cardRepository.flush();
+
+        List<CardOutboxService.Event> events = new ArrayList<>(saved.size());
+        for (Card card : saved) {
+            events.add(new CardOutboxService.Event(card.getId(), CardOutboxEvent.Type.CARD_CREATED,
+                    new CardOutboxService.CardCreated(ownerId, card.getStatus(), validityPeriod, card.getLastFour())));
+        }
+        cardOutboxService.recordAll(events);
+        return saved.stream().map(Card::getId).toList();
+    }
+
     /** @throws com.example.bankcards.exception.NotFoundException если карта не была найдена */
     private Card getCardById(UUID cardId) {
         Card card = cardRepository.findCardById(cardId);
@@ -357,13 +1116,17 @@ public class CardServiceImpl implements CardService {
     ///  Различные проверки
 
     /** @throws IllegalArgumentException если операция с балансом выходит за рамку допустимого */
-    public void validateBalanceUpdateCorrect(Card card, double sum) {
-        double newBalance;
-        double currentBalance = card.getBalance();
-        if (currentBalance > Double.MAX_VALUE - sum) {
+    public void validateBalanceUpdateCorrect(Card card, long sum) {
+        validateBalanceUpdateCorrect(card.getBalance(), sum);
+    }
+
+    private void validateBalanceUpdateCorrect(long balance, long sum) {
+        long newBalance;
+        try {
+            newBalance = Math.addExact(balance, sum);
+        } catch (ArithmeticException e) {
             throw new IllegalArgumentException("Balance is too high");
         }
-        newBalance = currentBalance + sum;
         if (newBalance < 0) {
             throw new IllegalArgumentException("Not enough balance");
         }
@@ -371,8 +1134,20 @@ public class CardServiceImpl implements CardService {
 
     /** @throws AccessDeniedException если карта не активна */
     public void checkCardAvailable(Card card) {
-        if (!(card.getStatus() == Card.Status.ACTIVE
-            && !card.getValidityPeriod().isBefore(LocalDate.now()))) {
+        checkCardAvailable(card.getStatus(), card.getValidityPeriod());
+    }
+
+    /** @throws AccessDeniedException если карта не принадлежит пользователю или не активна */
+    private void checkBalanceUpdate(UUID ownerId, Card.Status status, LocalDate validityPeriod, UUID currentUserId) {
+        if (!ownerId.equals(currentUserId)) {
+            throw new AccessDeniedException("Current user is not owner of the card");
+        }
+        checkCardAvailable(status, validityPeriod);
+    }
+
+    private void checkCardAvailable(Card.Status status, LocalDate validityPeriod) {
+        if (!(status == Card.Status.ACTIVE
+            && !validityPeriod.isBefore(LocalDate.now()))) {
             throw new AccessDeniedException("Card is not available");
         }
     }
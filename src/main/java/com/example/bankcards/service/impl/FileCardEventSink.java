@@ -0,0 +1,63 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardEventResponse;
+import com.example.bankcards.service.CardEventSink;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Дописывает события в локальный файл в формате NDJSON (строка на событие).
+ * Включается заданием card.outbox.sinks.file.path; пачка записывается и сбрасывается на диск целиком.
+ */
+@Component
+@RequiredArgsConstructor
+public class FileCardEventSink implements CardEventSink {
+    private Path path;
+    private ObjectWriter writer;
+
+    private final Environment env;
+    private final ObjectMapper objectMapper;
+
+    @PostConstruct
+    void init() {
+        String file = env.getProperty("card.outbox.sinks.file.path", "");
+        this.path = file.isBlank() ? null : Path.of(file);
+        this.writer = objectMapper.writerFor(CardEventResponse.class);
+    }
+
+    @Override
+    public String name() {
+        return "outbox-file";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    @Override
+    public void publish(List<CardEventResponse> events) {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.DSYNC)) {
+            for (CardEventResponse event : events) {
+                out.write(writer.writeValueAsString(event));
+                out.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
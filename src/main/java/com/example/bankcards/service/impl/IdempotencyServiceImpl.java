@@ -0,0 +1,293 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.exception.ErrorResponse;
+import com.example.bankcards.service.IdempotencyService;
+import com.example.bankcards.util.cache.ExpiringCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyServiceImpl implements IdempotencyService {
+    private static final String SELECT =
+            "SELECT request_hash, status_code, content_type, response_body, reserved_at FROM idempotency_key " +
+            "WHERE user_id = ? AND idempotency_key = ?";
+    private static final String RESERVE =
+            "INSERT INTO idempotency_key (user_id, idempotency_key, request_hash, created_at, reserved_at) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String TAKE_OVER =
+            "UPDATE idempotency_key SET request_hash = ?, created_at = ?, reserved_at = ? " +
+            "WHERE user_id = ? AND idempotency_key = ? AND status_code IS NULL AND reserved_at = ?";
+    private static final String COMPLETE =
+            "UPDATE idempotency_key SET status_code = ?, content_type = ?, response_body = ? " +
+            "WHERE user_id = ? AND idempotency_key = ? AND status_code IS NULL AND reserved_at = ?";
+    private static final String RELEASE =
+            "DELETE FROM idempotency_key WHERE user_id = ? AND idempotency_key = ? AND status_code IS NULL " +
+            "AND reserved_at = ?";
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM idempotency_key WHERE created_at < ?";
+
+    private long ttlSeconds;
+    private long waitTimeoutMillis;
+    private long pollIntervalMillis;
+    private long inProgressTimeoutMillis;
+
+    private final Environment env;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    // Недавно завершённые запросы и запросы, выполняющиеся на этом узле прямо сейчас
+    private ExpiringCache<Key, Completed> recent;
+    private final ConcurrentHashMap<Key, CompletableFuture<Completed>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter replayedCounter;
+
+    @PostConstruct
+    void init() {
+        this.ttlSeconds = env.getProperty("card.idempotency.ttl-seconds", Long.class, 86_400L);
+        this.waitTimeoutMillis = env.getProperty("card.idempotency.wait-timeout-ms", Long.class, 30_000L);
+        this.pollIntervalMillis = env.getProperty("card.idempotency.poll-interval-ms", Long.class, 100L);
+        this.inProgressTimeoutMillis = env.getProperty("card.idempotency.in-progress-timeout-ms", Long.class, 300_000L);
+        this.recent = new ExpiringCache<>(
+                env.getProperty("card.idempotency.cache.max-size", Integer.class, 10_000),
+                env.getProperty("card.idempotency.cache.ttl-seconds", Long.class, 600L) * 1000);
+
+        this.replayedCounter = Counter.builder("card.idempotency.replayed")
+                .description("Повторные запросы с Idempotency-Key, получившие сохранённый ответ")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public StoredResponse execute(UUID userId, String key, String requestHash, Supplier<StoredResponse> action) {
+        Key cacheKey = new Key(userId, key);
+        Completed cached = recent.get(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        CompletableFuture<Completed> result = new CompletableFuture<>();
+        CompletableFuture<Completed> running = inFlight.putIfAbsent(cacheKey, result);
+        if (running != null) {
+            return awaitRunning(running, requestHash);
+        }
+
+        try {
+            return executeOnce(cacheKey, requestHash, action, result);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, result);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${card.idempotency.cleanup-interval-ms:600000}")
+    @Override
+    public void cleanUpExpired() {
+        try {
+            int deleted = jdbcTemplate.update(DELETE_EXPIRED, LocalDateTime.now().minusSeconds(ttlSeconds));
+            if (deleted > 0) {
+                log.info("Deleted {} expired idempotency keys", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.error("Idempotency keys cleanup failed, will retry on next run", e);
+        }
+        recent.cleanUp();
+    }
+
+    /**
+     * Резервирует ключ в БД и выполняет action; если ключ занят - ждёт результат владельца резерва.
+     *
+     * Нюансы:
+     * - Резерв - вставка строки без ответа: так повтор на другом узле не выполнит операцию второй раз.
+     *   Строка читается, только если ключ уже занят.
+     * - Пока владелец выполняет запрос, строка опрашивается раз в card.idempotency.poll-interval-ms,
+     *   но не дольше wait-timeout-ms; затем повтор получает 409.
+     * - Резерв старше card.idempotency.in-progress-timeout-ms считается брошенным (узел упал или не смог записать
+     *   ответ) и перехватывается; перехваченный резерв прежний владелец уже не завершит и не снимет.
+     * - Если резерв сняли (ответ 5xx), ключ резервируется заново.
+     */
+    private StoredResponse executeOnce(Key key, String requestHash, Supplier<StoredResponse> action,
+                                       CompletableFuture<Completed> result) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+        while (true) {
+            LocalDateTime reservedAt = now();
+            if (reserve(key, requestHash, reservedAt)) {
+                return executeReserved(key, requestHash, reservedAt, action, result);
+            }
+            Row row = load(key);
+            if (row == null) {
+                // резерв сняли между вставкой и чтением
+                continue;
+            }
+            if (row.statusCode() != null) {
+                Completed completed = new Completed(row.requestHash(), new StoredResponse(row.statusCode(), row.contentType(),
+                        row.responseBody() != null ? row.responseBody().getBytes(StandardCharsets.UTF_8) : new byte[0], true));
+                recent.putIfAbsent(key, completed);
+                result.complete(completed);
+                return replay(completed, requestHash);
+            }
+            if (row.reservedAt().isBefore(reservedAt.minus(inProgressTimeoutMillis, ChronoUnit.MILLIS))
+                    && takeOver(key, requestHash, reservedAt, row.reservedAt())) {
+                log.warn("Idempotency key of user {} was abandoned since {}, executing request again",
+                        key.userId(), row.reservedAt());
+                return executeReserved(key, requestHash, reservedAt, action, result);
+            }
+            if (System.nanoTime() >= deadline || !sleep(pollIntervalMillis)) {
+                Completed inProgress = new Completed(null,
+                        error(HttpStatus.CONFLICT, "Request with this Idempotency-Key is in progress"));
+                result.complete(inProgress);
+                return inProgress.response();
+            }
+        }
+    }
+
+    private StoredResponse executeReserved(Key key, String requestHash, LocalDateTime reservedAt,
+                                           Supplier<StoredResponse> action, CompletableFuture<Completed> result) {
+        StoredResponse response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(key, reservedAt);
+            throw e;
+        }
+
+        Completed completed = new Completed(requestHash, response);
+        if (response.status() >= 500) {
+            // операция, скорее всего, не выполнена - повтор должен выполнить её заново
+            release(key, reservedAt);
+        } else {
+            complete(key, reservedAt, response);
+            recent.putIfAbsent(key, completed);
+        }
+        result.complete(completed);
+        return response;
+    }
+
+    private StoredResponse awaitRunning(CompletableFuture<Completed> running, String requestHash) {
+        try {
+            return replay(running.get(waitTimeoutMillis, TimeUnit.MILLISECONDS), requestHash);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Internal Error");
+        } catch (ExecutionException | TimeoutException e) {
+            // первый запрос завершился ошибкой или выполняется слишком долго - клиент повторит запрос позже
+            return error(HttpStatus.CONFLICT, "Request with this Idempotency-Key is in progress");
+        }
+    }
+
+    private StoredResponse replay(Completed completed, String requestHash) {
+        if (completed.requestHash() == null) {
+            return completed.response();
+        }
+        if (!completed.requestHash().equals(requestHash)) {
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key was used with a different request");
+        }
+        replayedCounter.increment();
+        StoredResponse response = completed.response();
+        return new StoredResponse(response.status(), response.contentType(), response.body(), true);
+    }
+
+    private Row load(Key key) {
+        List<Row> rows = jdbcTemplate.query(SELECT, (rs, rowNum) -> new Row(
+                rs.getString("request_hash"),
+                (Integer) rs.getObject("status_code"),
+                rs.getString("content_type"),
+                rs.getString("response_body"),
+                rs.getObject("reserved_at", LocalDateTime.class)), key.userId(), key.key());
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private boolean reserve(Key key, String requestHash, LocalDateTime reservedAt) {
+        try {
+            jdbcTemplate.update(RESERVE, key.userId(), key.key(), requestHash, reservedAt, reservedAt);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    // Перехватывает брошенный резерв, если его не перехватил или не завершил кто-то другой
+    private boolean takeOver(Key key, String requestHash, LocalDateTime reservedAt, LocalDateTime abandonedAt) {
+        return jdbcTemplate.update(TAKE_OVER, requestHash, reservedAt, reservedAt,
+                key.userId(), key.key(), abandonedAt) > 0;
+    }
+
+    /**
+     * Сохраняет ответ в строку своего резерва. Операция уже выполнена, поэтому ошибка записи не превращает
+     * ответ в ошибку: строка останется незавершённой и будет перехвачена по in-progress-timeout-ms.
+     */
+    private void complete(Key key, LocalDateTime reservedAt, StoredResponse response) {
+        try {
+            int updated = jdbcTemplate.update(COMPLETE, response.status(), response.contentType(),
+                    new String(response.body(), StandardCharsets.UTF_8), key.userId(), key.key(), reservedAt);
+            if (updated == 0) {
+                log.warn("Idempotency key reservation of user {} was taken over, response is not stored", key.userId());
+            }
+        } catch (RuntimeException e) {
+            log.error("Cannot store response for idempotency key of user {}", key.userId(), e);
+        }
+    }
+
+    private void release(Key key, LocalDateTime reservedAt) {
+        jdbcTemplate.update(RELEASE, key.userId(), key.key(), reservedAt);
+    }
+
+    // Время резерва с точностью до миллисекунд: значение служит меткой владельца и должно совпадать с сохранённым в БД
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private StoredResponse error(HttpStatus status, String message) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(new ErrorResponse(message, status.value()));
+            return new StoredResponse(status.value(), MediaType.APPLICATION_JSON_VALUE, body, false);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Internal Error");
+        }
+    }
+
+    private record Key(UUID userId, String key) {}
+
+    // requestHash = null - ответ не привязан к запросу (например, 409) и не сохраняется
+    private record Completed(String requestHash, StoredResponse response) {}
+
+    private record Row(String requestHash, Integer statusCode, String contentType, String responseBody,
+                       LocalDateTime reservedAt) {}
+}
@@ -0,0 +1,79 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardEventResponse;
+import com.example.bankcards.service.CardEventSink;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Отправляет пачку событий POST-запросом с JSON-массивом на card.outbox.sinks.webhook.url.
+ * Ответ не 2xx считается недоставкой - пачка будет отправлена повторно. Без заданного url получатель выключен.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebhookCardEventSink implements CardEventSink {
+    private URI url;
+    private Duration timeout;
+    private HttpClient httpClient;
+
+    private final Environment env;
+    private final ObjectMapper objectMapper;
+
+    @PostConstruct
+    void init() {
+        String webhook = env.getProperty("card.outbox.sinks.webhook.url", "");
+        this.url = webhook.isBlank() ? null : URI.create(webhook);
+        this.timeout = Duration.ofMillis(env.getProperty("card.outbox.sinks.webhook.timeout-ms", Long.class, 5000L));
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public String name() {
+        return "outbox-webhook";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return url != null;
+    }
+
+    @Override
+    public void publish(List<CardEventResponse> events) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(url)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(events)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize card events", e);
+        }
+
+        HttpResponse<Void> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Webhook call interrupted", e);
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Webhook responded with status " + response.statusCode());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.bankcards.util.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Ограниченный по размеру кэш с истечением записей по времени (expire-after-write).
+ *
+ * Нюансы:
+ * - Записи хранятся в порядке добавления: при переполнении вытесняется самая старая запись.
+ * - Все операции выполняются под одной блокировкой, загрузка значения (loader) - вне её.
+ * - Любое значение, покидающее кэш (вытеснение, истечение, удаление), передаётся в onRemoval,
+ *   например, чтобы занулить ключевой материал.
+ */
+public class ExpiringCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Consumer<V> onRemoval;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>();
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public ExpiringCache(int maxSize, long ttlMillis, Consumer<V> onRemoval) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.onRemoval = onRemoval != null ? onRemoval : v -> {};
+    }
+
+    public ExpiringCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, null);
+    }
+
+    /** Возвращает значение по ключу или null, если его нет или оно истекло */
+    public V get(K key) {
+        V expired = null;
+        V value = null;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime(), ttlNanos)) {
+                entries.remove(key);
+                expired = entry.value;
+                evictionCount++;
+            } else if (entry != null) {
+                value = entry.value;
+            }
+
+            if (value != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+        if (expired != null) {
+            onRemoval.accept(expired);
+        }
+        return value;
+    }
+
+    /**
+     * Возвращает значение из кэша, а при его отсутствии загружает через loader и кладёт в кэш.
+     * Если параллельно значение уже успели положить, используется оно, а загруженное передаётся в onRemoval.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        V loaded = loader.apply(key);
+        if (loaded == null) {
+            return null;
+        }
+
+        V existing = putIfAbsent(key, loaded);
+        if (existing != null) {
+            onRemoval.accept(loaded);
+            return existing;
+        }
+        return loaded;
+    }
+
+    /** Кладёт значение, если по ключу нет актуальной записи. Возвращает уже лежащее значение или null */
+    public V putIfAbsent(K key, V value) {
+        List<V> removed = new ArrayList<>();
+        V existing = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            Entry<V> current = entries.get(key);
+            if (current != null && !current.isExpired(now, ttlNanos)) {
+                existing = current.value;
+            } else {
+                if (current != null) {
+                    entries.remove(key);
+                    removed.add(current.value);
+                    evictionCount++;
+                }
+                entries.put(key, new Entry<>(value, now));
+                evictOverflowAndExpired(now, removed);
+            }
+        }
+        removed.forEach(onRemoval);
+        return existing;
+    }
+
+    /** Удаляет запись по ключу */
+    public void invalidate(K key) {
+        Entry<V> removed;
+        synchronized (this) {
+            removed = entries.remove(key);
+        }
+        if (removed != null) {
+            onRemoval.accept(removed.value);
+        }
+    }
+
+    /** Удаляет все записи */
+    public void invalidateAll() {
+        List<V> removed = new ArrayList<>();
+        synchronized (this) {
+            entries.values().forEach(entry -> removed.add(entry.value));
+            entries.clear();
+        }
+        removed.forEach(onRemoval);
+    }
+
+    /** Удаляет все истёкшие записи. Удобно вызывать по расписанию */
+    public void cleanUp() {
+        List<V> removed = new ArrayList<>();
+        synchronized (this) {
+            evictOverflowAndExpired(System.nanoTime(), removed);
+        }
+        removed.forEach(onRemoval);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    // Записи упорядочены по времени добавления, поэтому истёкшие всегда находятся в начале
+    private void evictOverflowAndExpired(long now, List<V> removed) {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<V> eldest = it.next().getValue();
+            if (entries.size() <= maxSize && !eldest.isExpired(now, ttlNanos)) {
+                break;
+            }
+            it.remove();
+            removed.add(eldest.value);
+            evictionCount++;
+        }
+    }
+
+    private record Entry<V>(V value, long createdAt) {
+        boolean isExpired(long now, long ttlNanos) {
+            return now - createdAt >= ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.bankcards.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Исполнитель команд с разбиением по ключу на полосы (stripes): у каждой полосы своя очередь и один поток-обработчик.
+ *
+ * Нюансы:
+ * - Команды с одним ключом всегда попадают в одну полосу и обрабатываются строго последовательно,
+ *   команды разных полос - параллельно.
+ * - Обработчик получает сразу пачку накопившихся команд (не больше maxBatchSize). Если очередь опустела,
+ *   поток ждёт новые команды не дольше maxBatchLatencyMillis от первой команды пачки - это позволяет
+ *   объединить несколько команд в одну транзакцию (group commit) ценой небольшой задержки.
+ * - Обработчик должен завершить каждую команду (complete/fail). Команды, оставшиеся незавершёнными
+ *   или пачка, на которой обработчик бросил исключение, завершаются ошибкой.
+ * - При переполнении очереди submit бросает RejectedExecutionException - вызывающий код может выполнить команду сам.
+ * - Команду можно отменить (future.cancel), только пока она не взята в обработку: отменённые команды
+ *   обработчику не передаются, а cancel для уже взятой команды возвращает false - её результат нужно дождаться.
+ */
+public final class StripedBatchExecutor<C, R> implements AutoCloseable {
+    private final List<BlockingQueue<Command<C, R>>> queues;
+    private final List<Thread> workers;
+    private final int maxBatchSize;
+    private final long maxBatchLatencyNanos;
+    private final Consumer<List<Command<C, R>>> handler;
+
+    private volatile boolean running = true;
+
+    public StripedBatchExecutor(String name, int stripes, int queueCapacity, int maxBatchSize,
+                                long maxBatchLatencyMillis, Consumer<List<Command<C, R>>> handler) {
+        if (stripes <= 0 || queueCapacity <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Stripes, queue capacity and batch size must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxBatchLatencyMillis));
+        this.handler = handler;
+        this.queues = new ArrayList<>(stripes);
+        this.workers = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            BlockingQueue<Command<C, R>> queue = new LinkedBlockingQueue<>(queueCapacity);
+            Thread worker = new Thread(() -> drain(queue), name + "-" + i);
+            worker.setDaemon(true);
+            queues.add(queue);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * Ставит команду в очередь полосы, выбранной по ключу.
+     *
+     * @throws RejectedExecutionException если очередь полосы заполнена или исполнитель остановлен
+     */
+    public CompletableFuture<R> submit(Object key, C payload) {
+        if (!running) {
+            throw new RejectedExecutionException("Executor is closed");
+        }
+        Command<C, R> command = new Command<>(payload);
+        if (!queues.get(Math.floorMod(key.hashCode(), queues.size())).offer(command)) {
+            throw new RejectedExecutionException("Stripe queue is full");
+        }
+        return command.future;
+    }
+
+    /** Останавливает потоки; команды, ещё не взятые в обработку, завершаются ошибкой */
+    @Override
+    public void close() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        RejectedExecutionException closed = new RejectedExecutionException("Executor is closed");
+        for (BlockingQueue<Command<C, R>> queue : queues) {
+            List<Command<C, R>> pending = new ArrayList<>();
+            queue.drainTo(pending);
+            pending.forEach(command -> command.fail(closed));
+        }
+    }
+
+    private void drain(BlockingQueue<Command<C, R>> queue) {
+        List<Command<C, R>> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxBatchLatencyNanos;
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Command<C, R> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                RejectedExecutionException closed = new RejectedExecutionException("Executor is closed");
+                batch.forEach(command -> command.fail(closed));
+                return;
+            }
+
+            // команды, отменённые ожидающими, не выполняем; остальные с этого момента отменить нельзя
+            batch.removeIf(command -> !command.future.start());
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                handler.accept(batch);
+            } catch (RuntimeException e) {
+                batch.forEach(command -> command.fail(e));
+            } finally {
+                IllegalStateException notCompleted = new IllegalStateException("Command was not completed");
+                batch.forEach(command -> command.fail(notCompleted));
+                batch.clear();
+            }
+        }
+    }
+
+    /** Команда и результат её выполнения */
+    public static final class Command<C, R> {
+        private final C payload;
+        private final CommandFuture<R> future = new CommandFuture<>();
+
+        private Command(C payload) {
+            this.payload = payload;
+        }
+
+        public C payload() {
+            return payload;
+        }
+
+        public void complete(R result) {
+            future.complete(result);
+        }
+
+        /** Завершает команду ошибкой, если она ещё не завершена */
+        public void fail(Throwable error) {
+            future.completeExceptionally(error);
+        }
+    }
+
+    // Результат команды: отмена и взятие в обработку исключают друг друга
+    private static final class CommandFuture<R> extends CompletableFuture<R> {
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        /** Отмечает команду взятой в обработку. false - команда уже отменена */
+        boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return started.compareAndSet(false, true) && super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.bankcards.util.json;
+
+import com.example.bankcards.util.cache.ExpiringCache;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш ObjectWriter для списков с JsonView и фильтром полей "dynamicFilter" (параметр fields).
+ *
+ * Нюансы:
+ * - Ключ - тип элемента, view и нормализованный набор полей: без пробелов и пустых имён, без полей,
+ *   которых у типа нет (фильтр Jackson их всё равно игнорирует), порядок не важен. Поэтому число ключей
+ *   ограничено числом сочетаний настоящих полей, и произвольные fields клиента не вытесняют рабочие записи.
+ * - Writer создаётся для List<тип элемента>: корневой сериализатор разрешается один раз при создании,
+ *   а не на каждый запрос, как у MappingJacksonValue с новым SimpleFilterProvider.
+ * - ObjectWriter неизменяем и потокобезопасен - один экземпляр используют все запросы.
+ * - Запись идёт прямо в поток ответа; поток не закрывается (AUTO_CLOSE_TARGET выключен).
+ */
+@Component
+@RequiredArgsConstructor
+public class FilteredJsonWriters {
+    public static final String FILTER_ID = "dynamicFilter";
+
+    private final ObjectMapper objectMapper;
+    private final Environment env;
+
+    private final Map<Class<?>, Set<String>> knownFields = new ConcurrentHashMap<>();
+    private ExpiringCache<Key, ObjectWriter> writers;
+
+    @PostConstruct
+    void init() {
+        int maxSize = env.getProperty("card.json-writer-cache.max-size", Integer.class, 256);
+        long ttlSeconds = env.getProperty("card.json-writer-cache.ttl-seconds", Long.class, 3600L);
+        this.writers = new ExpiringCache<>(maxSize, ttlSeconds * 1000);
+    }
+
+    /** Пишет items в out с полями из view, оставляя только fields (null или пустой массив - все поля) */
+    public void writeList(OutputStream out, Class<?> itemType, Class<?> view, String[] fields, List<?> items)
+            throws IOException {
+        writer(itemType, view, fields).writeValue(out, items);
+    }
+
+    /** Writer списка элементов itemType для view и набора полей fields */
+    public ObjectWriter writer(Class<?> itemType, Class<?> view, String[] fields) {
+        Key key = new Key(itemType, view, normalize(itemType, fields));
+        return writers.computeIfAbsent(key, this::createWriter);
+    }
+
+    private ObjectWriter createWriter(Key key) {
+        SimpleFilterProvider filters = new SimpleFilterProvider().setFailOnUnknownId(false);
+        if (key.fields() != null) {
+            filters.addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(key.fields()));
+        }
+        return objectMapper.writerWithView(key.view())
+                .with(filters)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .forType(objectMapper.getTypeFactory().constructCollectionType(List.class, key.itemType()));
+    }
+
+    // null - фильтр не задан (все поля); пустой набор - ни одного известного поля
+    private Set<String> normalize(Class<?> itemType, String[] fields) {
+        if (fields == null || fields.length == 0) {
+            return null;
+        }
+        Set<String> known = knownFields.computeIfAbsent(itemType, this::propertiesOf);
+        Set<String> normalized = new HashSet<>();
+        for (String field : fields) {
+            String name = field == null ? "" : field.trim();
+            if (known.contains(name)) {
+                normalized.add(name);
+            }
+        }
+        return Set.copyOf(normalized);
+    }
+
+    private Set<String> propertiesOf(Class<?> type) {
+        return objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(type))
+                .findProperties().stream()
+                .map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private record Key(Class<?> itemType, Class<?> view, Set<String> fields) {}
+}
@@ -0,0 +1,63 @@
+package com.example.bankcards.util.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * JSON-представление денежных сумм.
+ *
+ * Нюансы:
+ * - Внутри суммы хранятся в минимальных единицах валюты (копейках) типа long.
+ * - В API суммы остаются десятичными числами с двумя знаками после точки (2500.75), как и раньше.
+ * - При чтении принимаются число или строка; больше двух знаков после точки или выход за диапазон long - ошибка (400).
+ */
+public final class MoneyJson {
+    public static final int SCALE = 2;
+
+    private MoneyJson() {}
+
+    /** 2500.75 -> 250075 */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+
+    /** 250075 -> 2500.75 */
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public static class Serializer extends JsonSerializer<Long> {
+        @Override
+        public void serialize(Long value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeNumber(fromMinorUnits(value));
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Long> {
+        @Override
+        public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            BigDecimal amount;
+            try {
+                if (p.currentToken() == JsonToken.VALUE_STRING) {
+                    amount = new BigDecimal(p.getText().trim());
+                } else if (p.currentToken().isNumeric()) {
+                    amount = p.getDecimalValue();
+                } else {
+                    return (Long) ctxt.handleUnexpectedToken(Long.class, p);
+                }
+                return toMinorUnits(amount);
+            } catch (NumberFormatException | ArithmeticException e) {
+                return (Long) ctxt.handleWeirdStringValue(Long.class, p.getText(),
+                        "Amount must be a decimal number with at most " + SCALE + " fraction digits");
+            }
+        }
+    }
+}
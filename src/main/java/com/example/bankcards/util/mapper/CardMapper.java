@@ -3,8 +3,15 @@ package com.example.bankcards.util.mapper;
 import com.example.bankcards.dto.CardCreateResponse;
 import com.example.bankcards.dto.CardInfoResponse;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardProjectionRepository.CardRow;
 
 public class CardMapper {
+    /** Маппинг по сохранённым последним 4 цифрам - без расшифрования номера */
+    public static CardInfoResponse toGetResponse(Card card) {
+        if (card == null) return null;
+        return toGetResponse(card, card.getLastFour());
+    }
+
     public static CardInfoResponse toGetResponse(Card card, String cardNumber) {
         if (card == null) return null;
 
@@ -24,11 +31,30 @@ public class CardMapper {
                 masked,
                 formattedDate,
                 card.getStatus(),
-                card.getBalance(),
+                card.getTotalBalance(),
                 ownerLogin
         );
     }
 
+    /**
+     * Маппинг строки выборки по полям. Номер маскируется по last_four, либо по расшифрованному номеру,
+     * если last_four ещё не заполнен; невыбранные поля остаются пустыми
+     */
+    public static CardInfoResponse toGetResponse(CardRow row, String cardNumber) {
+        String formattedDate = row.validityPeriod() != null
+                ? row.validityPeriod().format(java.time.format.DateTimeFormatter.ofPattern("MM/yy"))
+                : null;
+
+        return new CardInfoResponse(
+                row.id(),
+                maskNumber(cardNumber != null ? cardNumber : row.lastFour()),
+                formattedDate,
+                row.status(),
+                row.totalBalance(),
+                row.ownerLogin()
+        );
+    }
+
     public static CardCreateResponse toPostResponse(Card card, String cardNumber) {
         // Маскирование номера: **** **** **** 1234
         String masked = maskNumber(cardNumber);
@@ -46,16 +72,22 @@ public class CardMapper {
                 masked,
                 formattedDate,
                 card.getStatus(),
-                card.getBalance(),
+                card.getTotalBalance(),
                 ownerLogin
         );
     }
 
-    private static String maskNumber(String encryptedNumber) {
-        if (encryptedNumber == null || encryptedNumber.length() <= 4) {
-            return encryptedNumber;
+    public static String lastFour(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < 4) {
+            return cardNumber;
+        }
+        return cardNumber.substring(cardNumber.length() - 4);
+    }
+
+    private static String maskNumber(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < 4) {
+            return cardNumber;
         }
-        String last4 = encryptedNumber.substring(encryptedNumber.length() - 4);
-        return "**** **** **** " + last4;
+        return "**** **** **** " + lastFour(cardNumber);
     }
 }
@@ -0,0 +1,40 @@
+package com.example.bankcards.util.pagination;
+
+import com.example.bankcards.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации: значения ключа сортировки последней выданной строки,
+ * упакованные в непрозрачную для клиента строку (Base64 URL-safe).
+ *
+ * Следующая страница запрашивается условием "ключ после курсора" по индексу,
+ * поэтому её стоимость не зависит от номера страницы, в отличие от OFFSET.
+ */
+public final class KeysetCursor {
+    private static final String SEPARATOR = "|";
+
+    private KeysetCursor() {}
+
+    public static String encode(String... parts) {
+        String raw = String.join(SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws BadRequestException если курсор повреждён или состоит из другого числа частей
+     */
+    public static String[] decode(String cursor, int partsCount) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            if (parts.length != partsCount) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.bankcards.util.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+
+/**
+ * Низкоуровневые операции AES и HMAC над byte[] и ByteBuffer.
+ *
+ * Нюансы:
+ * - Cipher и Mac создаются один раз на поток (Cipher.getInstance/Mac.getInstance - дорогой поиск провайдера)
+ *   и переиспользуются. Экземпляры не покидают поток, поэтому синхронизация не нужна.
+ * - Повторная инициализация пропускается, если поток работает с тем же экземпляром ключа и в том же режиме.
+ *   Это рассчитано на долгоживущие ключи (мастер-ключ, ключ HMAC): их экземпляры не меняются между вызовами.
+ * - Ключи карт передаются в encryptOnce/decryptOnce: они инициализируют Cipher каждый раз и не оставляют ссылку
+ *   на ключ в потоке после операции. Иначе каждый поток пула держал бы последний открытый ключ карты
+ *   уже после того, как кэш ключей его занулил. Сравнение ключей по содержимому не используется -
+ *   для него пришлось бы на каждый вызов копировать ключевой материал.
+ * - Алгоритм "AES" совпадает с EncryptionAES, поэтому форматы шифротекстов совместимы.
+ */
+public final class CryptoEngine {
+    public static final String AES_ALGO = "AES";
+    public static final String HMAC_ALGO = "HmacSHA256";
+
+    private static final ThreadLocal<CipherSlot> CIPHER = ThreadLocal.withInitial(CipherSlot::new);
+    private static final ThreadLocal<MacSlot> MAC = ThreadLocal.withInitial(MacSlot::new);
+
+    private CryptoEngine() {}
+
+    public static byte[] encrypt(byte[] data, SecretKey key) throws GeneralSecurityException {
+        return CIPHER.get().doFinal(Cipher.ENCRYPT_MODE, key, data);
+    }
+
+    public static byte[] decrypt(byte[] data, SecretKey key) throws GeneralSecurityException {
+        return CIPHER.get().doFinal(Cipher.DECRYPT_MODE, key, data);
+    }
+
+    /** Шифрует data ключом карты; ссылка на ключ в потоке не сохраняется */
+    public static byte[] encryptOnce(byte[] data, SecretKey key) throws GeneralSecurityException {
+        return CIPHER.get().doFinalOnce(Cipher.ENCRYPT_MODE, key, data);
+    }
+
+    /** Расшифровывает data ключом карты; ссылка на ключ в потоке не сохраняется */
+    public static byte[] decryptOnce(byte[] data, SecretKey key) throws GeneralSecurityException {
+        return CIPHER.get().doFinalOnce(Cipher.DECRYPT_MODE, key, data);
+    }
+
+    /** Шифрует оставшиеся байты input в output. Возвращает количество записанных байт */
+    public static int encrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws GeneralSecurityException {
+        return CIPHER.get().doFinal(Cipher.ENCRYPT_MODE, key, input, output);
+    }
+
+    /** Расшифровывает оставшиеся байты input в output. Возвращает количество записанных байт */
+    public static int decrypt(ByteBuffer input, ByteBuffer output, SecretKey key) throws GeneralSecurityException {
+        return CIPHER.get().doFinal(Cipher.DECRYPT_MODE, key, input, output);
+    }
+
+    public static byte[] hmac(byte[] data, Key key) throws GeneralSecurityException {
+        return MAC.get().doFinal(key, data);
+    }
+
+    // Cipher текущего потока и ключ/режим, которыми он инициализирован
+    private static final class CipherSlot {
+        private Cipher cipher;
+        private Key key;
+        private int mode;
+
+        byte[] doFinal(int mode, Key key, byte[] data) throws GeneralSecurityException {
+            Cipher c = prepare(mode, key);
+            try {
+                return c.doFinal(data);
+            } catch (GeneralSecurityException | RuntimeException e) {
+                this.key = null;
+                throw e;
+            }
+        }
+
+        byte[] doFinalOnce(int mode, Key key, byte[] data) throws GeneralSecurityException {
+            try {
+                return prepare(mode, key).doFinal(data);
+            } finally {
+                this.key = null;
+            }
+        }
+
+        int doFinal(int mode, Key key, ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+            Cipher c = prepare(mode, key);
+            try {
+                return c.doFinal(input, output);
+            } catch (GeneralSecurityException | RuntimeException e) {
+                this.key = null;
+                throw e;
+            }
+        }
+
+        private Cipher prepare(int mode, Key key) throws GeneralSecurityException {
+            if (cipher == null) {
+                cipher = Cipher.getInstance(AES_ALGO);
+            }
+            if (this.key != key || this.mode != mode) {
+                this.key = null;
+                cipher.init(mode, key);
+                this.key = key;
+                this.mode = mode;
+            }
+            return cipher;
+        }
+    }
+
+    // Mac текущего потока и ключ, которым он инициализирован
+    private static final class MacSlot {
+        private Mac mac;
+        private Key key;
+
+        byte[] doFinal(Key key, byte[] data) throws GeneralSecurityException {
+            if (mac == null) {
+                mac = Mac.getInstance(HMAC_ALGO);
+            }
+            if (this.key != key) {
+                this.key = null;
+                mac.init(key);
+                this.key = key;
+            }
+            return mac.doFinal(data);
+        }
+    }
+}
@@ -1,49 +1,61 @@
 package com.example.bankcards.util.security;
 
-import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
 
+// Строковые обёртки над CryptoEngine (Cipher переиспользуется в пределах потока)
 public class EncryptionAES {
+    // KeyGenerator (вместе с его SecureRandom) создаётся один раз на поток - при массовом выпуске карт это заметно
+    private static final ThreadLocal<KeyGenerator> KEY_GENERATOR = ThreadLocal.withInitial(() -> {
+        try {
+            KeyGenerator keyGen = KeyGenerator.getInstance(CryptoEngine.AES_ALGO);
+            keyGen.init(128);
+            return keyGen;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot initialize AES key generator", e);
+        }
+    });
+
     // Генерация ключа AES
     public static SecretKey generateAESKey() throws Exception {
-        KeyGenerator keyGen = KeyGenerator.getInstance("AES");
-        keyGen.init(128);
-        return keyGen.generateKey();
+        return KEY_GENERATOR.get().generateKey();
     }
 
-    // Шифрование данных с использованием ключа
+    // Шифрование данных с использованием ключа карты (ключ не остаётся в Cipher потока)
     public static String encryptAES(String data, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES");
-        cipher.init(Cipher.ENCRYPT_MODE, key);
-        byte[] encryptedBytes = cipher.doFinal(data.getBytes());
+        byte[] encryptedBytes = CryptoEngine.encryptOnce(data.getBytes(StandardCharsets.UTF_8), key);
         return Base64.getEncoder().encodeToString(encryptedBytes);
     }
 
-    // Дешифрование данных с использованием ключа
+    // Дешифрование данных с использованием ключа карты (ключ не остаётся в Cipher потока)
     public static String decryptAES(String encryptedData, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES");
-        cipher.init(Cipher.DECRYPT_MODE, key);
-        byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
-        return new String(decryptedBytes);
+        byte[] decryptedBytes = CryptoEngine.decryptOnce(Base64.getDecoder().decode(encryptedData), key);
+        return new String(decryptedBytes, StandardCharsets.UTF_8);
     }
 
     // Шифрование ключа — зашифровывает сериализованный ключ otherKey основным ключом masterKey
     public static String encryptKey(SecretKey otherKey, SecretKey masterKey) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES");
-        cipher.init(Cipher.ENCRYPT_MODE, masterKey);
-        byte[] encrypted = cipher.doFinal(otherKey.getEncoded());
-        return Base64.getEncoder().encodeToString(encrypted);
+        byte[] material = otherKey.getEncoded();
+        try {
+            return Base64.getEncoder().encodeToString(CryptoEngine.encrypt(material, masterKey));
+        } finally {
+            Arrays.fill(material, (byte) 0);
+        }
     }
 
     // Дешифрование ключа — расшифровывает строку и восстанавливает SecretKey
     public static SecretKey decryptKey(String encryptedKey, SecretKey masterKey) throws Exception {
-        Cipher cipher = Cipher.getInstance("AES");
-        cipher.init(Cipher.DECRYPT_MODE, masterKey);
         byte[] decodedBytes = Base64.getDecoder().decode(encryptedKey);
-        byte[] decrypted = cipher.doFinal(decodedBytes);
-        return new SecretKeySpec(decrypted, "AES");
+        byte[] decrypted = CryptoEngine.decrypt(decodedBytes, masterKey);
+        try {
+            return new SecretKeySpec(decrypted, "AES");
+        } finally {
+            // SecretKeySpec хранит свою копию
+            Arrays.fill(decrypted, (byte) 0);
+        }
     }
 }
@@ -1,19 +1,18 @@
 package com.example.bankcards.util.security;
 
-import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 public class HmacUtils {
-    private static final String HMAC_ALGO = "HmacSHA256";
+    private static final String HMAC_ALGO = CryptoEngine.HMAC_ALGO;
+
+    // Последний использованный в потоке ключ: SecretKeySpec не пересоздаётся, а Mac не переинициализируется
+    private static final ThreadLocal<KeySpecHolder> LAST_KEY = new ThreadLocal<>();
 
     // Вычисление HMAC для данных с использованием секретного ключа
     public static String calculateHMAC(String data, String secretKey) throws Exception {
-        SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(), HMAC_ALGO);
-        Mac mac = Mac.getInstance(HMAC_ALGO);
-        mac.init(keySpec);
-        byte[] rawHmac = mac.doFinal(data.getBytes());
-
+        byte[] rawHmac = CryptoEngine.hmac(data.getBytes(StandardCharsets.UTF_8), keySpec(secretKey));
         return Base64.getEncoder().encodeToString(rawHmac);
     }
 
@@ -22,4 +21,15 @@ public class HmacUtils {
         String calculatedHmac = calculateHMAC(data, secretKey);
         return calculatedHmac.equals(hmacToVerify);
     }
+
+    private static SecretKeySpec keySpec(String secretKey) {
+        KeySpecHolder holder = LAST_KEY.get();
+        if (holder == null || !holder.secret().equals(secretKey)) {
+            holder = new KeySpecHolder(secretKey, new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGO));
+            LAST_KEY.set(holder);
+        }
+        return holder.spec();
+    }
+
+    private record KeySpecHolder(String secret, SecretKeySpec spec) {}
 }
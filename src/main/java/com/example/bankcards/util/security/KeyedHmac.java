@@ -0,0 +1,61 @@
+package com.example.bankcards.util.security;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * HMAC-SHA256 с ключом, заданным один раз при создании.
+ *
+ * Нюансы:
+ * - Mac создаётся и инициализируется ключом один раз на поток; doFinal сбрасывает его в исходное
+ *   состояние, поэтому повторная инициализация не нужна.
+ * - Строка хэшируется в UTF-8, как в HmacUtils. ASCII-строки (цифры номера карты) подаются в Mac
+ *   посимвольно, без промежуточного массива байт; строки с другими символами кодируются целиком.
+ */
+public final class KeyedHmac {
+    public static final int DIGEST_LENGTH = 32;
+
+    private final ThreadLocal<Mac> mac;
+
+    public KeyedHmac(SecretKey key) {
+        // проверяем ключ сразу, чтобы ошибка конфигурации проявилась при старте, а не на первом запросе
+        newMac(key);
+        this.mac = ThreadLocal.withInitial(() -> newMac(key));
+    }
+
+    public byte[] digest(byte[] data) {
+        return mac.get().doFinal(data);
+    }
+
+    public byte[] digest(CharSequence text) {
+        if (!isAscii(text)) {
+            return digest(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        Mac m = mac.get();
+        for (int i = 0; i < text.length(); i++) {
+            m.update((byte) text.charAt(i));
+        }
+        return m.doFinal();
+    }
+
+    private static boolean isAscii(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Mac newMac(SecretKey key) {
+        try {
+            Mac m = Mac.getInstance(CryptoEngine.HMAC_ALGO);
+            m.init(key);
+            return m;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize HMAC", e);
+        }
+    }
+}
@@ -4,11 +4,20 @@ import com.example.bankcards.dto.AdminCardFilter;
 import com.example.bankcards.dto.CardFilter;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardUpdateStatusRequest;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.CardProjectionRepository.CardRow;
+import com.example.bankcards.util.pagination.KeysetCursor;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.UUID;
 
 
@@ -32,6 +41,101 @@ public final class CardSpecifications {
                 .and(hasStatus(f.getStatus()));
     }
 
+    /**
+     * Подтягивает владельца и ключ шифрования join fetch, чтобы выдача страницы не делала
+     * по два дополнительных запроса на каждую карту. Для запросов количества не применяется.
+     */
+    public static Specification<Card> fetchDetails() {
+        return (root, query, cb) -> {
+            if (!Long.class.equals(query.getResultType()) && !long.class.equals(query.getResultType())) {
+                root.fetch("owner");
+                root.fetch("encryptionKey", JoinType.LEFT);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Условие keyset-пагинации: карты строго после курсора в порядке (sortBy, id) по направлению direction.
+     * Для sortBy = id - просто id после последнего; иначе (ключ дальше) или (ключ равен и id дальше).
+     * Сортировка balance идёт по колонке card.balance, а не по полному балансу (без подзапроса по слотам):
+     * у карты с разделённым балансом средства слотов в ключ не входят, и порядок может не совпадать
+     * с показанным в ответе getTotalBalance. Курсор поэтому тоже хранит card.balance.
+     *
+     * @throws BadRequestException если курсор повреждён или выдан для другой сортировки
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<Card> after(String cursor, String sortBy, Sort.Direction direction) {
+        String[] parts = KeysetCursor.decode(cursor, 4);
+        if (!parts[0].equals(sortBy) || !parts[1].equals(direction.name())) {
+            throw new BadRequestException("Cursor does not match sort order");
+        }
+        Comparable key = parseSortKey(sortBy, parts[2]);
+        UUID lastId = parseId(parts[3]);
+        boolean desc = direction.isDescending();
+
+        return (root, query, cb) -> {
+            Path<UUID> id = root.get("id");
+            Predicate idAfter = desc ? cb.lessThan(id, lastId) : cb.greaterThan(id, lastId);
+            if ("id".equals(sortBy)) {
+                return idAfter;
+            }
+            Path<Comparable> keyPath = root.get(sortBy);
+            Predicate keyAfter = desc ? cb.lessThan(keyPath, key) : cb.greaterThan(keyPath, key);
+            return cb.or(keyAfter, cb.and(cb.equal(keyPath, key), idAfter));
+        };
+    }
+
+    /** Курсор, указывающий на карту card (последнюю на странице) при сортировке (sortBy, id); для balance - card.balance без слотов */
+    public static String cursorAfter(Card card, String sortBy, Sort.Direction direction) {
+        Object key = switch (sortBy) {
+            case "id" -> card.getId();
+            case "balance" -> card.getBalance();
+            case "status" -> card.getStatus();
+            case "validityPeriod" -> card.getValidityPeriod();
+            default -> throw new BadRequestException("Unsupported sort field");
+        };
+        return cursorAfter(card.getId(), key, sortBy, direction);
+    }
+
+    /** То же для строки выборки по полям; колонка сортировки должна быть выбрана */
+    public static String cursorAfter(CardRow row, String sortBy, Sort.Direction direction) {
+        Object key = switch (sortBy) {
+            case "id" -> row.id();
+            case "balance" -> row.balance();
+            case "status" -> row.status();
+            case "validityPeriod" -> row.validityPeriod();
+            default -> throw new BadRequestException("Unsupported sort field");
+        };
+        return cursorAfter(row.id(), key, sortBy, direction);
+    }
+
+    private static String cursorAfter(UUID id, Object key, String sortBy, Sort.Direction direction) {
+        return KeysetCursor.encode(sortBy, direction.name(), String.valueOf(key), id.toString());
+    }
+
+    private static Comparable<?> parseSortKey(String sortBy, String value) {
+        try {
+            return switch (sortBy) {
+                case "id" -> UUID.fromString(value);
+                case "balance" -> Long.valueOf(value);
+                case "status" -> Card.Status.valueOf(value);
+                case "validityPeriod" -> LocalDate.parse(value);
+                default -> throw new BadRequestException("Unsupported sort field");
+            };
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private static UUID parseId(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
     private static Specification<Card> hasStatus(Card.Status status) {
         return (root, query, cb) ->
                 status == null ? null : cb.equal(root.get("status"), status);
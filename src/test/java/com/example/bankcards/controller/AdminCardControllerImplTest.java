@@ -0,0 +1,124 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.AdminCardFilter;
+import com.example.bankcards.dto.CardInfoResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.service.CardService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "spring.main.allow-bean-definition-overriding=true")
+@AutoConfigureMockMvc(addFilters = false)
+@Import(TestSecurityConfig.class)
+public class AdminCardControllerImplTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CardService cardService;
+
+    private static final UUID cardId = UUID.fromString("3fa85f64-5717-4562-b3fc-2c963f66afa6");
+
+    // Тесты для GET /admin/api/cards/export
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void exportCards_StreamsNdjsonWithoutAsyncTimeout() throws Exception {
+        stubExport(2);
+
+        MvcResult result = mockMvc.perform(get("/admin/api/cards/export").param("fields", "id,balance"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // выгрузка не ограничена spring.mvc.async.request-timeout
+        assertEquals(-1, result.getRequest().getAsyncContext().getTimeout());
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"cards.ndjson\""))
+                .andExpect(content().string(
+                        "{\"id\":\"" + cardId + "\",\"balance\":2500.75}\n{\"id\":\"" + cardId + "\",\"balance\":2500.75}\n"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void exportCards_StreamsCsvWithHeader() throws Exception {
+        stubExport(1);
+
+        MvcResult result = mockMvc.perform(get("/admin/api/cards/export")
+                        .param("format", "csv")
+                        .param("fields", "id,status,balance,owner"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(content().string("id,status,balance,owner\r\n" + cardId + ",ACTIVE,2500.75,\"user,1\"\r\n"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void exportCards_ReportsServerErrorInLastNdjsonLine() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Consumer<CardInfoResponse>>getArgument(1).accept(card());
+            throw new IllegalStateException("connection lost");
+        }).when(cardService).exportCards(any(AdminCardFilter.class), any());
+
+        MvcResult result = mockMvc.perform(get("/admin/api/cards/export").param("fields", "id"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":\"" + cardId + "\"}\n{\"error\":\"Internal Error\"}\n"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void exportCards_ReturnsBadRequest_OnUnknownFormat() throws Exception {
+        mockMvc.perform(get("/admin/api/cards/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(cardService, never()).exportCards(any(), any());
+    }
+
+    @Test
+    @WithMockUser(roles = {"USER"})
+    void exportCards_ReturnsForbidden_ForUser() throws Exception {
+        mockMvc.perform(get("/admin/api/cards/export"))
+                .andExpect(status().isForbidden());
+
+        verify(cardService, never()).exportCards(any(), any());
+    }
+
+    private void stubExport(int count) {
+        when(cardService.exportCards(any(AdminCardFilter.class), any())).thenAnswer(invocation -> {
+            Consumer<CardInfoResponse> consumer = invocation.getArgument(1);
+            for (int i = 0; i < count; i++) {
+                consumer.accept(card());
+            }
+            return (long) count;
+        });
+    }
+
+    private static CardInfoResponse card() {
+        return new CardInfoResponse(cardId, "**** **** **** 1234", "12/26", Card.Status.ACTIVE, 250075, "user,1");
+    }
+}
@@ -100,7 +100,7 @@ public class CardControllerImplTest {
             testUserLogin,
             LocalDate.now().plusYears(2),
             Card.Status.ACTIVE,
-            1000.0
+            100_000L
         );
 
         cardInfoResponse = new CardInfoResponse(
@@ -108,23 +108,23 @@ public class CardControllerImplTest {
                 maskedCardNumber,
                 LocalDate.now().plusYears(2).toString(),
                 Card.Status.ACTIVE,
-                1000.0,
+                100_000L,
                 testUserLogin
         );
 
         cardBalanceResponse = new CardBalanceResponse(
-                1000.0
+                100_000L
         );
 
         cardTransferMoney = new CardTransferMoney(
             cardNumber1,
             cardNumber2,
-            1000.0
+            100_000L
         );
 
         cardBalanceRequest = new CardBalanceRequest(
             cardNumber1,
-            1000.0
+            100_000L
         );
 
         cardNumberBody = new CardNumberBody(cardNumber1);
@@ -0,0 +1,270 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.CardProjectionRepository.CardColumn;
+import com.example.bankcards.repository.CardProjectionRepository.CardRow;
+import com.example.bankcards.util.specification.CardSpecifications;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Количество SQL-запросов считается по статистике Hibernate (prepared statements)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CardRepositoryTest {
+
+    @Autowired TestEntityManager em;
+    @Autowired EntityManagerFactory entityManagerFactory;
+    @Autowired CardRepository cardRepository;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // страница списка читается одним запросом при любом размере страницы и числе владельцев
+    @Test
+    void findSlice_loadsOwnerAndKeyInSingleStatement() {
+        for (int i = 0; i < 4; i++) {
+            persistCards("owner" + i, 10);
+        }
+
+        assertEquals(1, countListingStatements(5));
+        assertEquals(1, countListingStatements(40));
+    }
+
+    // выдача карт пользователя по владельцу подтягивает владельца и ключ через entity graph
+    @Test
+    void findByOwnerId_loadsOwnerAndKeyInSingleStatement() {
+        User owner = persistCards("owner", 12);
+        startCounting();
+
+        List<Card> cards = cardRepository.findByOwnerId(owner.getId(), PageRequest.of(0, 12));
+        cards.forEach(this::touchDetails);
+
+        assertEquals(12, cards.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    // карта по id не загружает владельца: для проверки владения хватает id из прокси
+    @Test
+    void findCardById_keepsOwnerLazy() {
+        User owner = persistCards("owner", 1);
+        Card persisted = cardRepository.findByOwnerId(owner.getId()).get(0);
+        startCounting();
+
+        Card card = cardRepository.findCardById(persisted.getId());
+
+        assertFalse(Hibernate.isInitialized(card.getOwner()));
+        assertEquals(owner.getId(), card.getOwner().getId());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    // выборка по полям читает только запрошенные колонки одним запросом, остальные поля пустые
+    @Test
+    void findRows_selectsOnlyRequestedColumns() {
+        User owner = persistCards("owner", 6);
+        startCounting();
+
+        Slice<CardRow> rows = cardRepository.findRows(Specification.unrestricted(),
+                PageRequest.of(0, 4, Sort.by("id")), EnumSet.of(CardColumn.BALANCE, CardColumn.OWNER_LOGIN));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(4, rows.getNumberOfElements());
+        assertTrue(rows.hasNext());
+        CardRow row = rows.getContent().get(0);
+        assertEquals(0L, row.balance());
+        assertEquals(owner.getLogin(), row.ownerLogin());
+        assertNull(row.lastFour());
+        assertNull(row.status());
+        assertNull(row.validityPeriod());
+    }
+
+    // потоковое чтение отдаёт все карты одним запросом в порядке сортировки, независимо от fetch size
+    @Test
+    void streamRows_readsAllRowsInOrder() {
+        persistCards("owner", 7);
+        List<UUID> expected = cardRepository.findAll(Sort.by("id")).stream().map(Card::getId).toList();
+        startCounting();
+
+        List<UUID> ids;
+        try (Stream<CardRow> rows = cardRepository.streamRows(Specification.unrestricted(), Sort.by("id"),
+                EnumSet.of(CardColumn.STATUS), 3)) {
+            ids = rows.map(CardRow::id).toList();
+        }
+
+        assertEquals(expected, ids);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    // условное списание меняет баланс, только если карта своя, активна, не просрочена и средств хватает
+    @Test
+    void withdraw_appliesOnlyWhenAllConditionsHold() {
+        User owner = em.persist(new User("owner", "password", User.Role.USER));
+        User stranger = em.persist(new User("stranger", "password", User.Role.USER));
+        Card card = persistCard(owner, 500, Card.Status.ACTIVE, LocalDate.now().plusYears(1));
+        LocalDate today = LocalDate.now();
+
+        assertTrue(cardRepository.withdraw(card.getId(), owner.getId(), 600, today).isEmpty());
+        assertTrue(cardRepository.withdraw(card.getId(), stranger.getId(), 100, today).isEmpty());
+        assertTrue(cardRepository.withdraw(UUID.randomUUID(), owner.getId(), 100, today).isEmpty());
+        assertEquals(300, cardRepository.withdraw(card.getId(), owner.getId(), 200, today).getAsLong());
+        assertEquals(0, cardRepository.withdraw(card.getId(), owner.getId(), 300, today).getAsLong());
+    }
+
+    // пополнение, после которого баланс переполнится, не выполняется
+    @Test
+    void deposit_rejectsOverflow() {
+        User owner = em.persist(new User("owner", "password", User.Role.USER));
+        Card card = persistCard(owner, Long.MAX_VALUE - 10, Card.Status.ACTIVE, LocalDate.now().plusYears(1));
+
+        assertTrue(cardRepository.deposit(card.getId(), owner.getId(), 11, LocalDate.now()).isEmpty());
+        assertEquals(Long.MAX_VALUE, cardRepository.deposit(card.getId(), owner.getId(), 10, LocalDate.now()).getAsLong());
+    }
+
+    // заблокированная, просроченная и разделённая на слоты карты условным UPDATE не меняются
+    @Test
+    void withdrawAndDeposit_skipUnavailableCards() {
+        User owner = em.persist(new User("owner", "password", User.Role.USER));
+        Card blocked = persistCard(owner, 500, Card.Status.BLOCKED, LocalDate.now().plusYears(1));
+        Card expired = persistCard(owner, 500, Card.Status.ACTIVE, LocalDate.now().minusDays(1));
+        Card split = persistCard(owner, 500, Card.Status.ACTIVE, LocalDate.now().plusYears(1));
+        split.setBalanceSlots(4);
+        em.flush();
+        LocalDate today = LocalDate.now();
+
+        for (Card card : List.of(blocked, expired, split)) {
+            assertTrue(cardRepository.withdraw(card.getId(), owner.getId(), 100, today).isEmpty());
+            assertTrue(cardRepository.deposit(card.getId(), owner.getId(), 100, today).isEmpty());
+        }
+        em.clear();
+        for (Card card : List.of(blocked, expired, split)) {
+            assertEquals(500, cardRepository.findById(card.getId()).orElseThrow().getBalance());
+        }
+    }
+
+    // страницы по курсору проходят все карты без повторов и пропусков при любом поле и направлении сортировки,
+    // в том числе при равных значениях ключа (порядок внутри них задаёт id)
+    @Test
+    void after_pagesThroughAllCardsWithTiedSortKeys() {
+        User owner = em.persist(new User("owner", "password", User.Role.USER));
+        Card.Status[] statuses = {Card.Status.ACTIVE, Card.Status.BLOCKED, Card.Status.ACTIVE};
+        for (int i = 0; i < 13; i++) {
+            persistCard(owner, (i % 4) * 100, statuses[i % 3], LocalDate.now().plusMonths(12 + i % 2));
+        }
+        em.clear();
+
+        for (String sortBy : List.of("id", "balance", "status", "validityPeriod")) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                Sort sort = keysetSort(sortBy, direction);
+                List<UUID> expected = cardRepository.findAll(sort).stream().map(Card::getId).toList();
+
+                assertEquals(expected, pageThrough(sortBy, direction, 4), sortBy + " " + direction);
+            }
+        }
+    }
+
+    // курсор другой сортировки или повреждённый курсор отклоняются
+    @Test
+    void after_rejectsCursorForAnotherSortOrder() {
+        User owner = em.persist(new User("owner", "password", User.Role.USER));
+        Card card = persistCard(owner, 100, Card.Status.ACTIVE, LocalDate.now().plusYears(1));
+        String cursor = CardSpecifications.cursorAfter(card, "balance", Sort.Direction.ASC);
+
+        assertThrows(BadRequestException.class, () -> CardSpecifications.after(cursor, "balance", Sort.Direction.DESC));
+        assertThrows(BadRequestException.class, () -> CardSpecifications.after(cursor, "status", Sort.Direction.ASC));
+        assertThrows(BadRequestException.class, () -> CardSpecifications.after("broken", "balance", Sort.Direction.ASC));
+    }
+
+    private List<UUID> pageThrough(String sortBy, Sort.Direction direction, int pageSize) {
+        List<UUID> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            Specification<Card> spec = cursor == null
+                    ? Specification.unrestricted()
+                    : CardSpecifications.after(cursor, sortBy, direction);
+            Page<Card> page = cardRepository.findAll(spec, PageRequest.of(0, pageSize, keysetSort(sortBy, direction)));
+            page.forEach(card -> ids.add(card.getId()));
+            cursor = page.hasNext()
+                    ? CardSpecifications.cursorAfter(page.getContent().get(page.getNumberOfElements() - 1), sortBy, direction)
+                    : null;
+        } while (cursor != null);
+        return ids;
+    }
+
+    // Как сортирует выдачу CardService: ключ, затем id
+    private static Sort keysetSort(String sortBy, Sort.Direction direction) {
+        return "id".equals(sortBy) ? Sort.by(direction, "id") : Sort.by(direction, sortBy).and(Sort.by(direction, "id"));
+    }
+
+    private long countListingStatements(int pageSize) {
+        startCounting();
+        Slice<Card> slice = cardRepository.findSlice(Specification.unrestricted(),
+                PageRequest.of(0, pageSize, Sort.by("id")));
+        slice.forEach(this::touchDetails);
+
+        assertEquals(pageSize, slice.getNumberOfElements());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void touchDetails(Card card) {
+        assertNotNull(card.getOwner().getLogin());
+        assertNotNull(card.getEncryptionKey().getEncryptedKey());
+    }
+
+    private void startCounting() {
+        em.clear();
+        statistics.clear();
+    }
+
+    private Card persistCard(User owner, long balance, Card.Status status, LocalDate validityPeriod) {
+        String suffix = UUID.randomUUID().toString();
+        Card card = new Card(owner, "number-" + suffix, validityPeriod);
+        card.setBalance(balance);
+        card.setStatus(status);
+        CardEncryptionKey key = new CardEncryptionKey("key-" + suffix);
+        key.setCard(card);
+        card.setEncryptionKey(key);
+        em.persist(card);
+        em.flush();
+        return card;
+    }
+
+    private User persistCards(String login, int count) {
+        User owner = em.persist(new User(login, "password", User.Role.USER));
+        for (int i = 0; i < count; i++) {
+            Card card = new Card(owner, login + "-number-" + i, LocalDate.now().plusYears(2));
+            CardEncryptionKey key = new CardEncryptionKey(login + "-key-" + i);
+            key.setCard(card);
+            card.setEncryptionKey(key);
+            em.persist(card);
+        }
+        em.flush();
+        em.clear();
+        return owner;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepositoryCustom.LockedCard;
+import com.example.bankcards.service.impl.CardBalanceSplitServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(CardBalanceSplitServiceImpl.class)
+class CardBalanceSplitServiceImplTest {
+
+    @Autowired TestEntityManager em;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired CardRepository cardRepository;
+    @Autowired CardBalanceSplitService splitService;
+
+    UUID cardId;
+
+    @BeforeEach
+    void setUp() {
+        User owner = em.persist(new User("owner", "password", User.Role.USER));
+        Card card = new Card(owner, "number-" + UUID.randomUUID(), LocalDate.now().plusYears(2));
+        card.setBalance(1000);
+        CardEncryptionKey key = new CardEncryptionKey("key");
+        key.setCard(card);
+        card.setEncryptionKey(key);
+        cardId = em.persist(card).getId();
+        em.flush();
+        em.clear();
+    }
+
+    // включение, сведение и выключение разделения не теряют средств
+    @Test
+    void updateSplit_keepsFundsWhenEnablingAndDisabling() {
+        splitService.updateSplit(cardId, 4);
+        assertEquals(1500, splitService.depositToSlot(cardId, 4, 500).orElseThrow());
+        assertEquals(1300, splitService.withdrawFromSlot(cardId, 200).orElseThrow());
+
+        splitService.consolidateSplits();
+        assertEquals(1300, totalBalance());
+        assertEquals(0, cardBalance());
+
+        splitService.updateSplit(cardId, 2);
+        assertEquals(1300, cardBalance());
+        assertEquals(0, slotsBalance());
+
+        splitService.updateSplit(cardId, 0);
+        assertEquals(1300, cardBalance());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM card_balance_slot WHERE card_id = ?", Integer.class, cardId));
+    }
+
+    // списание больше любого слота не выполняется через один слот
+    @Test
+    void withdrawFromSlot_returnsEmptyWhenNoSlotHasFunds() {
+        splitService.updateSplit(cardId, 4);
+        splitService.consolidateSplits();
+
+        assertTrue(splitService.withdrawFromSlot(cardId, 300).isEmpty());
+        assertEquals(1000, totalBalance());
+    }
+
+    // под блокировкой карты зачисление идёт в слот, а списание сводит слоты, только если одного слота не хватает
+    @Test
+    void applyBalanceDeltas_creditsSlotAndSweepsOnlyWhenNoSlotSuffices() {
+        splitService.updateSplit(cardId, 4);
+        splitService.consolidateSplits();
+
+        List<LockedCard> locked = cardRepository.lockForUpdate(List.of(cardId));
+        assertEquals(1000, locked.get(0).balance());
+
+        cardRepository.applyBalanceDeltas(locked, Map.of(cardId, 100L));
+        assertEquals(0, cardBalance());
+        assertEquals(1100, slotsBalance());
+
+        cardRepository.applyBalanceDeltas(locked, Map.of(cardId, -200L));
+        assertEquals(0, cardBalance());
+        assertEquals(900, slotsBalance());
+
+        cardRepository.applyBalanceDeltas(locked, Map.of(cardId, -600L));
+        assertEquals(300, cardBalance());
+        assertEquals(0, slotsBalance());
+    }
+
+    private long cardBalance() {
+        return jdbcTemplate.queryForObject("SELECT balance FROM card WHERE id = ?", Long.class, cardId);
+    }
+
+    private long slotsBalance() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(balance), 0) FROM card_balance_slot WHERE card_id = ?", Long.class, cardId);
+    }
+
+    private long totalBalance() {
+        return cardBalance() + slotsBalance();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.entity.CardKeyRewrapCheckpoint;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardKeyRewrapCheckpointRepository;
+import com.example.bankcards.service.impl.CardKeyRewrapServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import({CardKeyRewrapServiceImpl.class, CardKeyRewrapServiceImplTest.Config.class})
+class CardKeyRewrapServiceImplTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired TestEntityManager em;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired CardKeyRewrapService rewrapService;
+    @Autowired CardKeyRewrapCheckpointRepository checkpointRepository;
+
+    @MockBean CardSecurityService cardSecurityService;
+
+    User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = em.persist(new User("owner", "password", User.Role.USER));
+        when(cardSecurityService.currentMasterKeyVersion()).thenReturn(2);
+        when(cardSecurityService.rewrapKeys(anyList())).thenAnswer(inv -> {
+            List<CardSecurityService.WrappedKey> keys = inv.getArgument(0);
+            return keys.stream().map(key -> key.encryptedKey() + "-v2").toList();
+        });
+    }
+
+    // обход перешифровывает все ключи и отмечает переход на версию завершённым
+    @Test
+    void rewrapPending_rewrapsAllKeysAndCompletes() {
+        persistKeys(5, 1);
+
+        rewrapService.rewrapPending();
+
+        assertEquals(0, countKeys(1));
+        assertEquals(5, countKeys(2));
+        assertTrue(checkpoint().isCompleted());
+    }
+
+    // ключ, записанный под прежним мастер-ключом после завершения (узел со старой конфигурацией), тоже перешифровывается
+    @Test
+    void rewrapPending_reopensCompletedRewrapForLateStaleKeys() {
+        persistKeys(3, 1);
+        rewrapService.rewrapPending();
+        assertTrue(checkpoint().isCompleted());
+
+        persistKeys(2, 1);
+        rewrapService.rewrapPending();
+
+        assertEquals(0, countKeys(1));
+        assertEquals(5, countKeys(2));
+        assertTrue(checkpoint().isCompleted());
+    }
+
+    private void persistKeys(int count, int version) {
+        for (int i = 0; i < count; i++) {
+            String suffix = UUID.randomUUID().toString();
+            Card card = new Card(owner, "number-" + suffix, LocalDate.now().plusYears(2));
+            CardEncryptionKey key = new CardEncryptionKey("key-" + suffix, version);
+            key.setCard(card);
+            card.setEncryptionKey(key);
+            em.persist(card);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private int countKeys(int version) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM card_encryption_key WHERE master_key_version = ?", Integer.class, version);
+    }
+
+    private CardKeyRewrapCheckpoint checkpoint() {
+        em.flush();
+        em.clear();
+        return checkpointRepository.findById(2).orElseThrow();
+    }
+}
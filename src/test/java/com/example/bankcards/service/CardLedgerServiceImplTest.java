@@ -0,0 +1,152 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardTransferMoney;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.service.impl.CardLedgerServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "card.ledger.snapshot.batch-size=2")
+@Import({CardLedgerServiceImpl.class, CardLedgerServiceImplTest.Config.class})
+class CardLedgerServiceImplTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired TestEntityManager em;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired CardLedgerService ledgerService;
+
+    User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = em.persist(new User("owner", "password", User.Role.USER));
+    }
+
+    // снимок, собранный пачками по курсору, плюс хвост журнала после снимка дают баланс карты
+    @Test
+    void rebuildBalance_matchesCardBalanceAfterSnapshotAndTail() {
+        UUID first = persistCard(0);
+        UUID second = persistCard(0);
+        deposit(first, 1000);
+        withdraw(first, 300);
+        transfer(first, second, 200);
+        deposit(second, 50);
+        // записи старше safety-lag-ms переносятся в снимки
+        ageLedger();
+
+        assertEquals(2, ledgerService.snapshotNextBatch());
+        assertEquals(2, ledgerService.snapshotNextBatch());
+        assertEquals(1, ledgerService.snapshotNextBatch());
+        assertEquals(0, ledgerService.snapshotNextBatch());
+        assertEquals(500, snapshotBalance(first));
+        assertEquals(250, snapshotBalance(second));
+        assertEquals(cardBalance(first), ledgerService.rebuildBalance(first));
+        assertEquals(cardBalance(second), ledgerService.rebuildBalance(second));
+
+        // свежие записи ещё не в снимке и учитываются суммой записей после ledger_id снимка
+        withdraw(first, 100);
+        transfer(second, first, 30);
+        assertEquals(0, ledgerService.snapshotNextBatch());
+        assertEquals(500, snapshotBalance(first));
+
+        assertEquals(430, ledgerService.rebuildBalance(first));
+        assertEquals(cardBalance(first), ledgerService.rebuildBalance(first));
+        assertEquals(cardBalance(second), ledgerService.rebuildBalance(second));
+    }
+
+    // начальный снимок (ledger_id = null) карт, выпущенных до журнала, обновляется, а не создаётся заново
+    @Test
+    void rebuildBalance_startsFromSeededSnapshot() {
+        UUID card = persistCard(700);
+        jdbcTemplate.update("INSERT INTO card_balance_snapshot (card_id, balance, ledger_id, updated_at) VALUES (?, ?, NULL, ?)",
+                card, 700, LocalDateTime.now());
+        deposit(card, 100);
+        assertEquals(800, ledgerService.rebuildBalance(card));
+
+        ageLedger();
+        assertEquals(1, ledgerService.snapshotNextBatch());
+        assertEquals(800, snapshotBalance(card));
+        assertNotNull(jdbcTemplate.queryForObject(
+                "SELECT ledger_id FROM card_balance_snapshot WHERE card_id = ?", UUID.class, card));
+
+        withdraw(card, 250);
+        assertEquals(550, ledgerService.rebuildBalance(card));
+        assertEquals(cardBalance(card), ledgerService.rebuildBalance(card));
+    }
+
+    @Test
+    void rebuildBalance_throwsNotFound_OnMissingCard() {
+        assertThrows(NotFoundException.class, () -> ledgerService.rebuildBalance(UUID.randomUUID()));
+    }
+
+    // Изменения баланса карты и запись журнала - как их выполняет CardService в одной транзакции
+    private void deposit(UUID cardId, long amount) {
+        addBalance(cardId, amount);
+        ledgerService.recordBalanceChange(cardId, Card.BalanceAction.DEPOSIT_MONEY, amount);
+    }
+
+    private void withdraw(UUID cardId, long amount) {
+        addBalance(cardId, -amount);
+        ledgerService.recordBalanceChange(cardId, Card.BalanceAction.WITHDRAW_MONEY, amount);
+    }
+
+    private void transfer(UUID from, UUID to, long amount) {
+        addBalance(from, -amount);
+        addBalance(to, amount);
+        ledgerService.recordTransfers(List.of(new CardTransferMoney(from, to, amount)));
+    }
+
+    private void addBalance(UUID cardId, long amount) {
+        jdbcTemplate.update("UPDATE card SET balance = balance + ? WHERE id = ?", amount, cardId);
+    }
+
+    private void ageLedger() {
+        jdbcTemplate.update("UPDATE card_ledger SET created_at = ?", LocalDateTime.now().minusMinutes(5));
+    }
+
+    private UUID persistCard(long balance) {
+        Card card = new Card(owner, "number-" + UUID.randomUUID(), LocalDate.now().plusYears(2));
+        card.setBalance(balance);
+        CardEncryptionKey key = new CardEncryptionKey("key");
+        key.setCard(card);
+        card.setEncryptionKey(key);
+        UUID id = em.persist(card).getId();
+        em.flush();
+        return id;
+    }
+
+    private long cardBalance(UUID cardId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM card WHERE id = ?", Long.class, cardId);
+    }
+
+    private long snapshotBalance(UUID cardId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT balance FROM card_balance_snapshot WHERE card_id = ?", Long.class, cardId);
+    }
+}
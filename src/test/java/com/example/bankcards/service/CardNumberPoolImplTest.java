@@ -0,0 +1,138 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.CardHash;
+import com.example.bankcards.repository.CardHashRepository;
+import com.example.bankcards.service.impl.CardNumberPoolImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardNumberPoolImplTest {
+
+    @Mock CardHashRepository cardHashRepository;
+    @Mock CardSecurityService cardSecurityService;
+    @Mock CardHashFilter cardHashFilter;
+    @Mock TransactionTemplate transactionTemplate;
+
+    CardNumberPoolImpl pool;
+
+    MockEnvironment env = new MockEnvironment()
+        .withProperty("card.number-pool.size", "5")
+        .withProperty("card.number-pool.low-water-mark", "2")
+        .withProperty("card.number-pool.batch-size", "3");
+
+    @BeforeEach
+    void setUp() {
+        pool = new CardNumberPoolImpl(env, cardHashRepository, cardSecurityService, cardHashFilter,
+                transactionTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(pool, "init");
+    }
+
+    // refill дополняет пул до полного размера пачками по batch-size
+    @Test
+    void refill_fillsPoolUpToSize() {
+        stubReservation();
+
+        pool.refill();
+
+        assertEquals(5, pool.size());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(cardHashFilter, times(5)).add(any());
+    }
+
+    // poll снимает резерв и возвращает номер из пула
+    @Test
+    void poll_claimsReservedNumber() {
+        stubReservation();
+        pool.refill();
+        when(cardHashRepository.claimReserved(any())).thenReturn(1);
+
+        Optional<String> number = pool.poll();
+
+        assertTrue(number.isPresent());
+        assertEquals(16, number.get().length());
+        assertEquals(4, pool.size());
+    }
+
+    // если резерв уже освобождён, номер пропускается и берётся следующий
+    @Test
+    void poll_skipsReclaimedReservation() {
+        stubReservation();
+        pool.refill();
+        when(cardHashRepository.claimReserved(any())).thenReturn(0, 1);
+
+        assertTrue(pool.poll().isPresent());
+        assertEquals(3, pool.size());
+        verify(cardHashRepository, times(2)).claimReserved(any());
+    }
+
+    // при откате транзакции вызывающего номер возвращается в пул, при коммите - нет
+    @Test
+    void poll_returnsNumberToPoolOnRollback() {
+        stubReservation();
+        pool.refill();
+        when(cardHashRepository.claimReserved(any())).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            String rolledBack = pool.poll().orElseThrow();
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+            assertEquals(5, pool.size());
+
+            TransactionSynchronizationManager.initSynchronization();
+            assertEquals(rolledBack, pool.poll().orElseThrow());
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+            assertEquals(4, pool.size());
+        } finally {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+    }
+
+    // пустой пул - номер генерируется вызывающим
+    @Test
+    void poll_returnsEmptyWhenPoolIsEmpty() {
+        assertTrue(pool.poll().isEmpty());
+        verifyNoInteractions(cardHashRepository);
+    }
+
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubReservation() {
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(null));
+        when(cardSecurityService.calculateHmacDigest(anyString()))
+                .thenAnswer(inv -> inv.getArgument(0, String.class).getBytes(StandardCharsets.US_ASCII));
+        when(cardHashFilter.mightContain(any())).thenReturn(false);
+        when(cardHashRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<CardHash> hashes = inv.getArgument(0);
+            hashes.forEach(hash -> hash.setId(UUID.randomUUID()));
+            return hashes;
+        });
+    }
+}
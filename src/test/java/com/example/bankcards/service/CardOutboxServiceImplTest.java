@@ -0,0 +1,130 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardEventResponse;
+import com.example.bankcards.entity.CardOutboxEvent;
+import com.example.bankcards.service.impl.CardOutboxServiceImpl;
+import com.example.bankcards.util.id.UuidV7;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Без транзакции теста: проверяется, что события фиксируются и откатываются вместе с транзакцией изменения
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({CardOutboxServiceImpl.class, CardOutboxServiceImplTest.Config.class})
+class CardOutboxServiceImplTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        RecordingSink recordingSink() {
+            return new RecordingSink();
+        }
+    }
+
+    static class RecordingSink implements CardEventSink {
+        final List<CardEventResponse> delivered = new ArrayList<>();
+
+        @Override
+        public String name() {
+            return "outbox-test";
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void publish(List<CardEventResponse> events) {
+            delivered.addAll(events);
+        }
+    }
+
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired CardOutboxService outboxService;
+    @Autowired RecordingSink sink;
+
+    UUID cardId = UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM card_outbox");
+        jdbcTemplate.update("DELETE FROM card_outbox_sink_position");
+        sink.delivered.clear();
+    }
+
+    // события записываются транзакцией изменения: коммит сохраняет их, откат - удаляет
+    @Test
+    void recordAll_commitsAndRollsBackWithMutationTransaction() {
+        transactionTemplate.executeWithoutResult(status -> outboxService.recordAll(List.of(balanceChanged())));
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.recordAll(List.of(balanceChanged(), balanceChanged()));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(1, countEvents());
+    }
+
+    // доставляются только события старше safety-lag-ms, позиция получателя хранится в своей таблице
+    @Test
+    void relayPending_deliversEventsOlderThanSafetyLag() {
+        UUID first = insertEvent(LocalDateTime.now().minusMinutes(3));
+        UUID second = insertEvent(LocalDateTime.now().minusMinutes(2));
+        outboxService.record(cardId, CardOutboxEvent.Type.BALANCE_CHANGED, null);
+
+        outboxService.relayPending();
+        outboxService.relayPending();
+
+        assertEquals(List.of(first, second), sink.delivered.stream().map(CardEventResponse::id).toList());
+        assertEquals(second, jdbcTemplate.queryForObject(
+                "SELECT last_id FROM card_outbox_sink_position WHERE sink = ?", UUID.class, sink.name()));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_ledger_cursor", Integer.class));
+    }
+
+    private CardOutboxService.Event balanceChanged() {
+        return new CardOutboxService.Event(cardId, CardOutboxEvent.Type.BALANCE_CHANGED,
+                new CardOutboxService.BalanceChanged(100, 100, null));
+    }
+
+    // UUID v7 с возрастающим временем: порядок id совпадает с порядком вставки
+    private UUID insertEvent(LocalDateTime createdAt) {
+        UUID id = UuidV7.next();
+        jdbcTemplate.update("INSERT INTO card_outbox (id, card_id, type, payload, created_at) VALUES (?, ?, ?, ?, ?)",
+                id, cardId, CardOutboxEvent.Type.BALANCE_CHANGED.name(), null, createdAt);
+        return id;
+    }
+
+    private int countEvents() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_outbox WHERE card_id = ?", Integer.class, cardId);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.impl.CardSchedulerImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardSchedulerImplTest {
+
+    @Mock CardRepository cardRepository;
+    @Mock CardSecurityService cardSecurityService;
+    @Mock CardOutboxService cardOutboxService;
+
+    CardSchedulerImpl scheduler;
+
+    SecretKey key = new SecretKeySpec(new byte[16], "AES");
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment env = new MockEnvironment().withProperty("card.last-four-backfill.batch-size", "2");
+        scheduler = new CardSchedulerImpl(env, cardRepository, cardSecurityService, cardOutboxService);
+        ReflectionTestUtils.invokeMethod(scheduler, "init");
+    }
+
+    // нерасшифровываемые карты не загораживают остальные: следующий запуск продолжает после них
+    @Test
+    void backfillLastFour_skipsPastFailedCards() {
+        Card broken1 = card("broken-1");
+        Card broken2 = card("broken-2");
+        Card ok = card("ok");
+        when(cardRepository.findByLastFourIsNull(any())).thenReturn(List.of(broken1, broken2));
+        when(cardRepository.findByLastFourIsNullAndIdGreaterThan(eq(broken2.getId()), any())).thenReturn(List.of(ok));
+        when(cardSecurityService.decryptKey(any(CardEncryptionKey.class))).thenReturn(key);
+        when(cardSecurityService.decryptNumber(startsWith("broken"), eq(key))).thenThrow(new RuntimeException("Internal Error"));
+        when(cardSecurityService.decryptNumber("ok", key)).thenReturn("1234567812345678");
+
+        scheduler.backfillLastFour();
+        scheduler.backfillLastFour();
+
+        assertNull(broken1.getLastFour());
+        assertEquals("5678", ok.getLastFour());
+    }
+
+    // неполная пачка завершает проход: следующий запуск начинается сначала и повторяет неудачные карты
+    @Test
+    void backfillLastFour_restartsAfterLastPage() {
+        Card broken = card("broken");
+        when(cardRepository.findByLastFourIsNull(any())).thenReturn(List.of(broken));
+        when(cardSecurityService.decryptKey(any(CardEncryptionKey.class))).thenReturn(key);
+        when(cardSecurityService.decryptNumber("broken", key)).thenThrow(new RuntimeException("Internal Error"));
+
+        scheduler.backfillLastFour();
+        scheduler.backfillLastFour();
+
+        verify(cardRepository, times(2)).findByLastFourIsNull(any());
+        verify(cardRepository, never()).findByLastFourIsNullAndIdGreaterThan(any(), any());
+    }
+
+    private static Card card(String encryptedNumber) {
+        Card card = new Card(null, encryptedNumber, null);
+        card.setId(UUID.randomUUID());
+        card.setEncryptionKey(new CardEncryptionKey("key"));
+        return card;
+    }
+}
@@ -5,16 +5,20 @@ import com.example.bankcards.repository.CardEncryptionKeyRepository;
 import com.example.bankcards.service.impl.CardSecurityServiceImpl;
 import com.example.bankcards.util.security.EncryptionAES;
 import com.example.bankcards.util.security.HmacUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -36,7 +40,8 @@ class CardSecurityServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        service = new CardSecurityServiceImpl(env, cardEncryptionKeyRepository);
+        service = new CardSecurityServiceImpl(env, cardEncryptionKeyRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(service, "init");
     }
 
     // saveEncryptedKey - успешное сохранение
@@ -162,24 +167,123 @@ class CardSecurityServiceImplTest {
         }
     }
 
-    // calculateHmac - успешный расчет
+    // decryptKey(CardEncryptionKey) - повторное обращение берёт ключ из кэша
     @Test
-    void calculateHmac_shouldReturnHmacString() {
-        try (MockedStatic<HmacUtils> mocked = mockStatic(HmacUtils.class)) {
-            mocked.when(() -> HmacUtils.calculateHMAC(anyString(), anyString())).thenReturn("hmacValue");
-            String hmac = service.calculateHmac("cardData");
-            assertEquals("hmacValue", hmac);
+    void decryptKeyEntity_shouldUnwrapOnlyOnce() throws Exception {
+        SecretKey dataKey = EncryptionAES.generateAESKey();
+        CardEncryptionKey entity = new CardEncryptionKey(EncryptionAES.encryptKey(dataKey, service.masterKey));
+        ReflectionTestUtils.setField(entity, "id", UUID.randomUUID());
+
+        try (MockedStatic<EncryptionAES> mocked = mockStatic(EncryptionAES.class, CALLS_REAL_METHODS)) {
+            SecretKey first = service.decryptKey(entity);
+            SecretKey second = service.decryptKey(entity);
+
+            assertArrayEquals(dataKey.getEncoded(), first.getEncoded());
+            assertArrayEquals(dataKey.getEncoded(), second.getEncoded());
+            mocked.verify(() -> EncryptionAES.decryptKey(anyString(), any()), times(1));
         }
     }
 
-    // calculateHmac - ошибка при вычислении
+    // deleteEncryptedKey - удаляет ключ из кэша
     @Test
-    void calculateHmac_shouldThrowRuntimeExceptionOnError() {
-        try (MockedStatic<HmacUtils> mocked = mockStatic(HmacUtils.class)) {
-            mocked.when(() -> HmacUtils.calculateHMAC(anyString(), anyString())).thenThrow(new Exception("Error"));
-            RuntimeException ex = assertThrows(RuntimeException.class, () -> service.calculateHmac("data"));
-            assertEquals("Internal Error", ex.getMessage());
+    void deleteEncryptedKey_shouldInvalidateCachedKey() throws Exception {
+        SecretKey dataKey = EncryptionAES.generateAESKey();
+        UUID id = UUID.randomUUID();
+        CardEncryptionKey entity = new CardEncryptionKey(EncryptionAES.encryptKey(dataKey, service.masterKey));
+        ReflectionTestUtils.setField(entity, "id", id);
+
+        try (MockedStatic<EncryptionAES> mocked = mockStatic(EncryptionAES.class, CALLS_REAL_METHODS)) {
+            service.decryptKey(entity);
+            service.deleteEncryptedKey(id);
+            service.decryptKey(entity);
+
+            mocked.verify(() -> EncryptionAES.decryptKey(anyString(), any()), times(2));
         }
     }
-}
 
+    // decryptNumbers - пакет расшифровывается параллельно с сохранением порядка
+    @Test
+    void decryptNumbers_shouldKeepOrder() throws Exception {
+        List<CardSecurityService.EncryptedNumber> batch = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            SecretKey dataKey = EncryptionAES.generateAESKey();
+            String number = String.format("%016d", i);
+            CardEncryptionKey entity = new CardEncryptionKey(EncryptionAES.encryptKey(dataKey, service.masterKey));
+            ReflectionTestUtils.setField(entity, "id", UUID.randomUUID());
+            batch.add(new CardSecurityService.EncryptedNumber(EncryptionAES.encryptAES(number, dataKey), entity));
+            expected.add(number);
+        }
+
+        assertEquals(expected, service.decryptNumbers(batch));
+    }
+
+    // calculateHmac - результат совпадает с прежним вычислением через HmacUtils (Base64-строка ключа)
+    @Test
+    void calculateHmac_shouldMatchLegacyHmac() throws Exception {
+        String legacyKey = Base64.getEncoder().encodeToString(service.hmacKey.getEncoded());
+        String expected = HmacUtils.calculateHMAC("1234567812345678", legacyKey);
+
+        assertEquals(expected, service.calculateHmac("1234567812345678"));
+    }
+
+    // calculateHmac - не-ASCII символы кодируются в UTF-8, как в HmacUtils, а не обрезаются до байта
+    @Test
+    void calculateHmac_shouldEncodeNonAsciiAsUtf8() throws Exception {
+        String legacyKey = Base64.getEncoder().encodeToString(service.hmacKey.getEncoded());
+
+        assertEquals(HmacUtils.calculateHMAC("1234\u0441\u0442", legacyKey), service.calculateHmac("1234\u0441\u0442"));
+        assertNotEquals(service.calculateHmac("1234\u0441"), service.calculateHmac("1234\u0041"));
+    }
+
+    // calculateHmacDigest - возвращает 32 байта, Base64 от которых равен calculateHmac
+    @Test
+    void calculateHmacDigest_shouldReturnRawDigest() {
+        byte[] digest = service.calculateHmacDigest("cardData");
+
+        assertEquals(32, digest.length);
+        assertEquals(service.calculateHmac("cardData"), Base64.getEncoder().encodeToString(digest));
+    }
+
+    // encryptNumbers - каждый номер шифруется своим ключом и расшифровывается обратно, порядок сохраняется
+    @Test
+    void encryptNumbers_shouldRoundTripInOrder() {
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            numbers.add(String.format("%016d", i));
+        }
+
+        List<CardSecurityService.EncryptedCard> encrypted = service.encryptNumbers(numbers);
+
+        assertEquals(numbers.size(), encrypted.size());
+        assertNotEquals(encrypted.get(0).encryptedKey(), encrypted.get(1).encryptedKey());
+        for (int i = 0; i < numbers.size(); i++) {
+            SecretKey key = service.decryptKey(encrypted.get(i).encryptedKey());
+            assertEquals(numbers.get(i), service.decryptNumber(encrypted.get(i).encryptedNumber(), key));
+        }
+    }
+
+    // после ротации мастер-ключа ключи карт под прежней версией читаются и перешифровываются текущим ключом
+    @Test
+    void rewrapKeys_shouldMoveKeysToCurrentMasterKey() throws Exception {
+        String newMasterKeyStr = Base64.getEncoder().encodeToString("fedcba9876543210".getBytes());
+        MockEnvironment rotatedEnv = new MockEnvironment()
+            .withProperty("security.card.number.key", newMasterKeyStr)
+            .withProperty("security.card.number.key-version", "2")
+            .withProperty("security.card.number.retired-keys.1", masterKeyStr)
+            .withProperty("security.card.number.hmac", hmacKeyStr);
+        CardSecurityServiceImpl rotated = new CardSecurityServiceImpl(rotatedEnv, cardEncryptionKeyRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(rotated, "init");
+
+        SecretKey dataKey = EncryptionAES.generateAESKey();
+        String oldWrapped = EncryptionAES.encryptKey(dataKey, service.masterKey);
+
+        assertArrayEquals(dataKey.getEncoded(),
+            rotated.decryptKey(new CardEncryptionKey(oldWrapped, 1)).getEncoded());
+
+        List<String> rewrapped = rotated.rewrapKeys(List.of(new CardSecurityService.WrappedKey(oldWrapped, 1)));
+        assertEquals(2, rotated.currentMasterKeyVersion());
+        assertArrayEquals(dataKey.getEncoded(), rotated.decryptKey(rewrapped.get(0), 2).getEncoded());
+        assertThrows(RuntimeException.class, () -> rotated.decryptKey(oldWrapped, 3));
+    }
+}
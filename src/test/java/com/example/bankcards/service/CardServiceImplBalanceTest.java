@@ -0,0 +1,135 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardBalanceRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.impl.CardBalanceSplitServiceImpl;
+import com.example.bankcards.service.impl.CardOutboxServiceImpl;
+import com.example.bankcards.service.impl.CardServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@Import({CardServiceImpl.class, CardBalanceSplitServiceImpl.class, CardOutboxServiceImpl.class,
+        CardServiceImplBalanceTest.Config.class})
+class CardServiceImplBalanceTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    @Autowired TestEntityManager em;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired CardService cardService;
+
+    @SpyBean CardRepository cardRepository;
+    @MockBean CardSecurityService cardSecurityService;
+    @MockBean CardHashFilter cardHashFilter;
+    @MockBean CardNumberPool cardNumberPool;
+    @MockBean CardLedgerService cardLedgerService;
+    @MockBean CardEventSink cardEventSink;
+
+    User owner;
+    UUID cardId;
+
+    @BeforeEach
+    void setUp() {
+        owner = em.persist(new User("owner", "password", User.Role.USER));
+        Card card = new Card(owner, "number-" + UUID.randomUUID(), LocalDate.now().plusYears(2));
+        card.setBalance(1000);
+        CardEncryptionKey key = new CardEncryptionKey("key");
+        key.setCard(card);
+        card.setEncryptionKey(key);
+        cardId = em.persist(card).getId();
+        em.flush();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(owner.getId().toString(), null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // отказ условного UPDATE при допустимой по перечитанной карте операции - гонка: UPDATE повторяется
+    @Test
+    void updateCardBalanceAction_retriesConditionalUpdateOnce() {
+        // первый UPDATE не прошёл, повторный зачисляет сумму
+        doReturn(OptionalLong.empty()).doAnswer(invocation -> {
+            jdbcTemplate.update("UPDATE card SET balance = balance + ? WHERE id = ?", invocation.getArgument(2), cardId);
+            return OptionalLong.of(balance());
+        }).when(cardRepository).deposit(eq(cardId), any(), anyLong(), any());
+
+        assertEquals(1300, cardService.updateCardBalanceAction(cardId,
+                new CardBalanceRequest(Card.BalanceAction.DEPOSIT_MONEY, 300)).balance());
+
+        verify(cardRepository, times(2)).deposit(eq(cardId), any(), anyLong(), any());
+        assertEquals(1300, balance());
+    }
+
+    // пополнение не сообщает о нехватке средств, даже если повторный UPDATE тоже не прошёл
+    @Test
+    void updateCardBalanceAction_neverReportsNotEnoughBalanceForDeposit() {
+        doReturn(OptionalLong.empty()).when(cardRepository).deposit(eq(cardId), any(), anyLong(), any());
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> cardService.updateCardBalanceAction(cardId,
+                        new CardBalanceRequest(Card.BalanceAction.DEPOSIT_MONEY, 300)));
+
+        assertNotEquals("Not enough balance", thrown.getMessage());
+        assertEquals(1000, balance());
+    }
+
+    // настоящая нехватка средств определяется перепроверкой без повтора UPDATE
+    @Test
+    void updateCardBalanceAction_reportsNotEnoughBalanceForWithdraw() {
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> cardService.updateCardBalanceAction(cardId,
+                        new CardBalanceRequest(Card.BalanceAction.WITHDRAW_MONEY, 1500)));
+
+        assertEquals("Not enough balance", thrown.getMessage());
+        verify(cardRepository, times(1)).withdraw(eq(cardId), any(), anyLong(), any());
+        assertEquals(1000, balance());
+    }
+
+    private long balance() {
+        return jdbcTemplate.queryForObject("SELECT balance FROM card WHERE id = ?", Long.class, cardId);
+    }
+}
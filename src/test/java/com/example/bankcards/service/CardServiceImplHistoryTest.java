@@ -0,0 +1,185 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardTransactionFilter;
+import com.example.bankcards.dto.CardTransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.exception.NotFoundException;
+import com.example.bankcards.service.impl.CardBalanceSplitServiceImpl;
+import com.example.bankcards.service.impl.CardLedgerServiceImpl;
+import com.example.bankcards.service.impl.CardOutboxServiceImpl;
+import com.example.bankcards.service.impl.CardServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({CardServiceImpl.class, CardLedgerServiceImpl.class, CardBalanceSplitServiceImpl.class,
+        CardOutboxServiceImpl.class, CardServiceImplHistoryTest.Config.class})
+class CardServiceImplHistoryTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    @Autowired TestEntityManager em;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired CardService cardService;
+    @Autowired CardLedgerService ledgerService;
+
+    @MockBean CardSecurityService cardSecurityService;
+    @MockBean CardHashFilter cardHashFilter;
+    @MockBean CardNumberPool cardNumberPool;
+    @MockBean CardEventSink cardEventSink;
+
+    User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = em.persist(new User("owner", "password", User.Role.USER));
+        authenticate(owner);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // страницы по курсору (created_at, id) не теряют и не повторяют операции с одинаковым created_at
+    @Test
+    void getTransactions_pagesThroughEntriesWithEqualCreatedAt() {
+        UUID card = persistCard(owner);
+        for (int i = 1; i <= 7; i++) {
+            ledgerService.recordBalanceChange(card, Card.BalanceAction.DEPOSIT_MONEY, i);
+        }
+        jdbcTemplate.update("UPDATE card_ledger SET created_at = ?", LocalDateTime.of(2025, 1, 1, 12, 0));
+
+        List<UUID> read = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            List<CardTransactionResponse> page = new ArrayList<>();
+            cursor = cardService.getTransactions(card, filter(cursor, 3), page::add);
+            pageSizes.add(page.size());
+            page.forEach(item -> read.add(item.id()));
+        } while (cursor != null);
+
+        assertEquals(List.of(3, 3, 1), pageSizes);
+        // при равном created_at порядок - по id по убыванию (как сравнивает uuid БД)
+        List<UUID> expected = jdbcTemplate.queryForList("SELECT id FROM card_ledger WHERE card_id = ?", UUID.class, card)
+                .stream().sorted(Comparator.comparing(UUID::toString).reversed()).toList();
+        assertEquals(expected, read);
+    }
+
+    // если операций ровно на полную страницу, следующей страницы нет
+    @Test
+    void getTransactions_returnsNoCursorWhenLastPageIsFull() {
+        UUID card = persistCard(owner);
+        for (int i = 1; i <= 4; i++) {
+            ledgerService.recordBalanceChange(card, Card.BalanceAction.WITHDRAW_MONEY, i);
+        }
+
+        List<CardTransactionResponse> first = new ArrayList<>();
+        String cursor = cardService.getTransactions(card, filter(null, 2), first::add);
+        List<CardTransactionResponse> second = new ArrayList<>();
+        String next = cardService.getTransactions(card, filter(cursor, 2), second::add);
+
+        assertNotNull(cursor);
+        assertEquals(2, second.size());
+        assertNull(next);
+        assertEquals(List.of(-4L, -3L, -2L, -1L),
+                List.of(first.get(0).amount(), first.get(1).amount(), second.get(0).amount(), second.get(1).amount()));
+    }
+
+    // своя карта без операций - пустая страница, а не ошибка
+    @Test
+    void getTransactions_returnsEmptyPageForOwnCardWithoutEntries() {
+        UUID card = persistCard(owner);
+        List<CardTransactionResponse> page = new ArrayList<>();
+
+        assertNull(cardService.getTransactions(card, filter(null, 20), page::add));
+        assertTrue(page.isEmpty());
+    }
+
+    // операции чужой карты не отдаются: EXISTS отсекает строки, пустая страница проверяется владельцем
+    @Test
+    void getTransactions_throwsAccessDenied_OnAnotherUsersCard() {
+        User other = em.persist(new User("other", "password", User.Role.USER));
+        UUID card = persistCard(other);
+        ledgerService.recordBalanceChange(card, Card.BalanceAction.DEPOSIT_MONEY, 100);
+
+        List<CardTransactionResponse> page = new ArrayList<>();
+        assertThrows(AccessDeniedException.class, () -> cardService.getTransactions(card, filter(null, 20), page::add));
+        assertTrue(page.isEmpty());
+    }
+
+    @Test
+    void getTransactions_throwsNotFound_OnMissingCard() {
+        assertThrows(NotFoundException.class,
+                () -> cardService.getTransactions(UUID.randomUUID(), filter(null, 20), item -> {}));
+    }
+
+    @Test
+    void getTransactions_throwsBadRequest_OnInvalidCursor() {
+        UUID card = persistCard(owner);
+
+        assertThrows(BadRequestException.class,
+                () -> cardService.getTransactions(card, filter("not-a-cursor", 20), item -> {}));
+    }
+
+    private static CardTransactionFilter filter(String cursor, int limit) {
+        CardTransactionFilter filter = new CardTransactionFilter();
+        filter.setCursor(cursor);
+        filter.setLimit(limit);
+        return filter;
+    }
+
+    private void authenticate(User user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user.getId().toString(), null, List.of()));
+    }
+
+    private UUID persistCard(User user) {
+        Card card = new Card(user, "number-" + UUID.randomUUID(), LocalDate.now().plusYears(2));
+        CardEncryptionKey key = new CardEncryptionKey("key");
+        key.setCard(card);
+        card.setEncryptionKey(key);
+        UUID id = em.persist(card).getId();
+        em.flush();
+        return id;
+    }
+}
@@ -155,8 +155,8 @@ class CardServiceImplTest {
 
         when(cardFrom.getId()).thenReturn(fromId);
         when(cardTo.getId()).thenReturn(toId);
-        when(cardFrom.getBalance()).thenReturn(1000.0);
-        when(cardTo.getBalance()).thenReturn(500.0);
+        when(cardFrom.getBalance()).thenReturn(100_000L);
+        when(cardTo.getBalance()).thenReturn(50_000L);
         when(cardFrom.getStatus()).thenReturn(Card.Status.ACTIVE);
         when(cardTo.getStatus()).thenReturn(Card.Status.ACTIVE);
         when(cardFrom.getValidityPeriod()).thenReturn(LocalDate.now().plusDays(10));
@@ -169,23 +169,23 @@ class CardServiceImplTest {
 
         doNothing().when(spy).checkCardAvailable(cardFrom);
         doNothing().when(spy).checkCardAvailable(cardTo);
-        doNothing().when(spy).validateBalanceUpdateCorrect(cardFrom, -200.0);
-        doNothing().when(spy).validateBalanceUpdateCorrect(cardFrom, 200.0);
+        doNothing().when(spy).validateBalanceUpdateCorrect(cardFrom, -20_000L);
+        doNothing().when(spy).validateBalanceUpdateCorrect(cardFrom, 20_000L);
 
-        doNothing().when(cardRepository).transferMoney(fromId, toId, 200.0);
+        doNothing().when(cardRepository).transferMoney(fromId, toId, 20_000L);
 
-        CardTransferMoney transferBody = new CardTransferMoney("1111", "2222", 200.0);
+        CardTransferMoney transferBody = new CardTransferMoney("1111", "2222", 20_000L);
 
         spy.doMoneyTransfer(transferBody);
 
-        verify(cardRepository).transferMoney(fromId, toId, 200.0);
+        verify(cardRepository).transferMoney(fromId, toId, 20_000L);
     }
 
     // doMoneyTransfer - negative amount throws BadRequestException
     @Test
     @MockitoSettings(strictness = Strictness.LENIENT)
     void doMoneyTransfer_negativeAmount_throwsBadRequest() {
-        CardTransferMoney transferBody = new CardTransferMoney("1111", "2222", -100.0);
+        CardTransferMoney transferBody = new CardTransferMoney("1111", "2222", -10_000L);
         assertThrows(BadRequestException.class, () -> service.doMoneyTransfer(transferBody));
     }
 
@@ -196,7 +196,7 @@ class CardServiceImplTest {
         CardServiceImpl spy = spy(service);
         doThrow(new NotFoundException("Card not found")).when(spy).getCardByNumber("1111");
 
-        CardTransferMoney transferBody = new CardTransferMoney("1111", "2222", 10.0);
+        CardTransferMoney transferBody = new CardTransferMoney("1111", "2222", 1_000L);
         assertThrows(NotFoundException.class, () -> spy.doMoneyTransfer(transferBody));
     }
 
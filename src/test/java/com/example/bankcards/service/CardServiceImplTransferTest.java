@@ -0,0 +1,226 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardBatchTransferRequest;
+import com.example.bankcards.dto.CardBatchTransferResponse;
+import com.example.bankcards.dto.CardTransferMoney;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardEncryptionKey;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepositoryCustom.LockedCard;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.impl.CardBalanceSplitServiceImpl;
+import com.example.bankcards.service.impl.CardOutboxServiceImpl;
+import com.example.bankcards.service.impl.CardServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Без транзакции теста: переводы выполняются своими транзакциями, в том числе параллельно
+@DataJpaTest(properties = "card.transfer.retry-backoff-ms=0")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({CardServiceImpl.class, CardBalanceSplitServiceImpl.class, CardOutboxServiceImpl.class,
+        CardServiceImplTransferTest.Config.class})
+class CardServiceImplTransferTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    @Autowired CardService cardService;
+    @Autowired CardRepository cardRepository;
+    @Autowired UserRepository userRepository;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @MockBean CardSecurityService cardSecurityService;
+    @MockBean CardHashFilter cardHashFilter;
+    @MockBean CardNumberPool cardNumberPool;
+    @MockBean CardLedgerService cardLedgerService;
+    // получатель нужен только для создания CardOutboxService, доставка в тестах не запускается
+    @MockBean CardEventSink cardEventSink;
+
+    User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("owner-" + UUID.randomUUID(), "password", User.Role.USER));
+        authenticate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        jdbcTemplate.update("DELETE FROM card_outbox");
+        jdbcTemplate.update("DELETE FROM card_encryption_key");
+        jdbcTemplate.update("DELETE FROM card");
+        jdbcTemplate.update("DELETE FROM user_info");
+    }
+
+    // перевод меняет обе карты и пишет события обеих карт в той же транзакции
+    @Test
+    void doMoneyTransfer_movesFundsAndRecordsEvents() {
+        UUID from = persistCard(1000);
+        UUID to = persistCard(0);
+
+        cardService.doMoneyTransfer(new CardTransferMoney(from, to, 300));
+
+        assertEquals(700, balance(from));
+        assertEquals(300, balance(to));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_outbox", Integer.class));
+    }
+
+    // перевод на ту же карту отклоняется до блокировки карт
+    @Test
+    void doMoneyTransfer_rejectsSameCard() {
+        UUID card = persistCard(1000);
+
+        assertThrows(BadRequestException.class,
+                () -> cardService.doMoneyTransfer(new CardTransferMoney(card, card, 100)));
+        assertEquals(1000, balance(card));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_outbox", Integer.class));
+    }
+
+    // карты блокируются в порядке id
+    @Test
+    void lockForUpdate_locksCardsInIdOrder() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(persistCard(0));
+        }
+
+        List<UUID> reversed = new ArrayList<>(ids);
+        Collections.reverse(reversed);
+
+        List<UUID> locked = transactionTemplate.execute(status -> cardRepository.lockForUpdate(reversed).stream()
+                .map(LockedCard::id).toList());
+
+        // БД сравнивает uuid побайтно без знака, как строки, а не как UUID.compareTo
+        assertEquals(ids.stream().sorted(Comparator.comparing(UUID::toString)).toList(), locked);
+    }
+
+    // встречные переводы между одними картами не блокируют друг друга взаимно и не теряют средств
+    @Test
+    void doMoneyTransfer_opposingTransfersDoNotDeadlock() throws Exception {
+        UUID first = persistCard(10_000);
+        UUID second = persistCard(10_000);
+
+        CompletableFuture<Void> forward = CompletableFuture.runAsync(() -> transferMany(first, second));
+        CompletableFuture<Void> backward = CompletableFuture.runAsync(() -> transferMany(second, first));
+        forward.get(60, TimeUnit.SECONDS);
+        backward.get(60, TimeUnit.SECONDS);
+
+        assertEquals(10_000, balance(first));
+        assertEquals(10_000, balance(second));
+    }
+
+    // ALL_OR_NOTHING: один отклонённый перевод отменяет весь пакет
+    @Test
+    void doMoneyTransfers_allOrNothingRollsBackWholeBatch() {
+        UUID a = persistCard(1000);
+        UUID b = persistCard(0);
+        UUID c = persistCard(0);
+
+        CardBatchTransferResponse response = cardService.doMoneyTransfers(new CardBatchTransferRequest(
+                CardBatchTransferRequest.Mode.ALL_OR_NOTHING,
+                List.of(new CardTransferMoney(a, b, 300), new CardTransferMoney(a, c, 5000))));
+
+        assertEquals(0, response.applied());
+        assertEquals(1, response.rejected());
+        assertEquals(List.of(CardBatchTransferResponse.Status.ROLLED_BACK, CardBatchTransferResponse.Status.REJECTED),
+                response.results().stream().map(CardBatchTransferResponse.Item::status).toList());
+        assertEquals(1000, balance(a));
+        assertEquals(0, balance(b));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_outbox", Integer.class));
+    }
+
+    // PER_ITEM: отклонённый перевод пропускается, остальные применяются с учётом предыдущих переводов пакета
+    @Test
+    void doMoneyTransfers_perItemSkipsRejectedTransfers() {
+        UUID a = persistCard(1000);
+        UUID b = persistCard(50);
+        UUID c = persistCard(0);
+
+        CardBatchTransferResponse response = cardService.doMoneyTransfers(new CardBatchTransferRequest(
+                CardBatchTransferRequest.Mode.PER_ITEM,
+                List.of(new CardTransferMoney(a, b, 300),
+                        new CardTransferMoney(a, c, 5000),
+                        new CardTransferMoney(b, c, 350))));
+
+        assertEquals(2, response.applied());
+        assertEquals(1, response.rejected());
+        assertEquals(List.of(CardBatchTransferResponse.Status.APPLIED, CardBatchTransferResponse.Status.REJECTED,
+                        CardBatchTransferResponse.Status.APPLIED),
+                response.results().stream().map(CardBatchTransferResponse.Item::status).toList());
+        assertEquals(700, balance(a));
+        assertEquals(0, balance(b));
+        assertEquals(350, balance(c));
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM card_outbox", Integer.class));
+    }
+
+    private void transferMany(UUID from, UUID to) {
+        authenticate();
+        try {
+            for (int i = 0; i < 50; i++) {
+                cardService.doMoneyTransfer(new CardTransferMoney(from, to, 10));
+            }
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private void authenticate() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(owner.getId().toString(), null, List.of()));
+    }
+
+    private UUID persistCard(long balance) {
+        String suffix = UUID.randomUUID().toString();
+        Card card = new Card(owner, "number-" + suffix, LocalDate.now().plusYears(1));
+        card.setBalance(balance);
+        CardEncryptionKey key = new CardEncryptionKey("key-" + suffix);
+        key.setCard(card);
+        card.setEncryptionKey(key);
+        return cardRepository.save(card).getId();
+    }
+
+    private long balance(UUID cardId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM card WHERE id = ?", Long.class, cardId);
+    }
+}
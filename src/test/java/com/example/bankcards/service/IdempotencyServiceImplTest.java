@@ -0,0 +1,156 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.service.IdempotencyService.StoredResponse;
+import com.example.bankcards.service.impl.IdempotencyServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Без транзакции теста: узлы (отдельные экземпляры сервиса) видят строки друг друга только после коммита
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyServiceImplTest {
+
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    UUID userId = UUID.randomUUID();
+    AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM idempotency_key");
+    }
+
+    // повтор с тем же ключом и телом получает сохранённый ответ, в том числе на другом узле
+    @Test
+    void execute_replaysStoredResponse() {
+        IdempotencyService service = node();
+        StoredResponse first = service.execute(userId, "key", "hash", respond(200));
+        StoredResponse sameNode = service.execute(userId, "key", "hash", respond(200));
+        StoredResponse otherNode = node().execute(userId, "key", "hash", respond(200));
+
+        assertFalse(first.replayed());
+        assertTrue(sameNode.replayed());
+        assertTrue(otherNode.replayed());
+        assertEquals(200, otherNode.status());
+        assertEquals("ok", new String(otherNode.body(), StandardCharsets.UTF_8));
+        assertEquals(1, executions.get());
+    }
+
+    // ключ, использованный с другим запросом, отклоняется с 422
+    @Test
+    void execute_rejectsDifferentRequestWithSameKey() {
+        IdempotencyService service = node();
+        service.execute(userId, "key", "hash", respond(200));
+
+        StoredResponse response = service.execute(userId, "key", "other-hash", respond(200));
+
+        assertEquals(422, response.status());
+        assertEquals(1, executions.get());
+    }
+
+    // ответ 5xx не сохраняется: повтор выполняет операцию заново
+    @Test
+    void execute_releasesKeyOnServerError() {
+        IdempotencyService service = node();
+        assertEquals(500, service.execute(userId, "key", "hash", respond(500)).status());
+
+        StoredResponse retry = service.execute(userId, "key", "hash", respond(200));
+
+        assertEquals(200, retry.status());
+        assertFalse(retry.replayed());
+        assertEquals(2, executions.get());
+    }
+
+    // повтор на другом узле дожидается ответа первого запроса, а не получает 409 сразу
+    @Test
+    void execute_waitsForRequestInProgressOnAnotherNode() throws Exception {
+        reserve(LocalDateTime.now());
+        CompletableFuture.runAsync(() -> {
+            sleep(200);
+            jdbcTemplate.update("UPDATE idempotency_key SET status_code = 201, content_type = 'application/json', "
+                    + "response_body = 'ok' WHERE user_id = ?", userId);
+        });
+
+        StoredResponse response = node().execute(userId, "key", "hash", respond(200));
+
+        assertEquals(201, response.status());
+        assertTrue(response.replayed());
+        assertEquals(0, executions.get());
+    }
+
+    // если первый запрос не завершился за wait-timeout-ms, повтор получает 409
+    @Test
+    void execute_returnsConflictAfterWaitTimeout() {
+        reserve(LocalDateTime.now());
+
+        StoredResponse response = node().execute(userId, "key", "hash", respond(200));
+
+        assertEquals(409, response.status());
+        assertEquals(0, executions.get());
+    }
+
+    // брошенный резерв (узел упал до записи ответа) перехватывается после in-progress-timeout-ms
+    @Test
+    void execute_takesOverAbandonedReservation() {
+        reserve(LocalDateTime.now().minusMinutes(10));
+
+        StoredResponse response = node().execute(userId, "key", "hash", respond(200));
+
+        assertEquals(200, response.status());
+        assertFalse(response.replayed());
+        assertEquals(1, executions.get());
+        assertEquals(200, jdbcTemplate.queryForObject(
+                "SELECT status_code FROM idempotency_key WHERE user_id = ?", Integer.class, userId));
+    }
+
+    // Отдельный экземпляр сервиса - отдельный узел со своим кэшем
+    private IdempotencyService node() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("card.idempotency.wait-timeout-ms", "1000")
+                .withProperty("card.idempotency.poll-interval-ms", "20")
+                .withProperty("card.idempotency.in-progress-timeout-ms", "60000");
+        IdempotencyServiceImpl service = new IdempotencyServiceImpl(env, jdbcTemplate, new ObjectMapper(),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(service, "init");
+        return service;
+    }
+
+    private Supplier<StoredResponse> respond(int status) {
+        return () -> {
+            executions.incrementAndGet();
+            return new StoredResponse(status, "application/json", "ok".getBytes(StandardCharsets.UTF_8), false);
+        };
+    }
+
+    private void reserve(LocalDateTime reservedAt) {
+        jdbcTemplate.update("INSERT INTO idempotency_key (user_id, idempotency_key, request_hash, created_at, reserved_at) "
+                + "VALUES (?, 'key', 'hash', ?, ?)", userId, reservedAt, reservedAt);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
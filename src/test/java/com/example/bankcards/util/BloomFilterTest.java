@@ -0,0 +1,58 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.util.hash.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    // добавленный элемент всегда находится (ложноотрицательных ответов нет)
+    @Test
+    void mightContain_returnsTrueForAddedDigests() throws Exception {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(digest("card-" + i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(digest("card-" + i)));
+        }
+    }
+
+    // при расчётном заполнении доля ложноположительных ответов близка к заданной
+    @Test
+    void mightContain_falsePositiveRateIsCloseToConfigured() throws Exception {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(digest("card-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(digest("other-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertTrue(filter.expectedFpp() < 0.02);
+        long approximate = filter.approximateElementCount();
+        assertTrue(approximate > 9_000 && approximate < 11_000, "approximate count: " + approximate);
+    }
+
+    // некорректная вероятность отклоняется
+    @Test
+    void create_rejectsInvalidFpp() {
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(100, 1));
+    }
+
+    private static byte[] digest(String value) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.util.cache.ExpiringCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringCacheTest {
+
+    // при переполнении вытесняется самая старая запись и передаётся в onRemoval
+    @Test
+    void putIfAbsent_evictsEldestOnOverflow() {
+        List<String> removed = new ArrayList<>();
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(2, 60_000, removed::add);
+
+        cache.putIfAbsent(1, "one");
+        cache.putIfAbsent(2, "two");
+        cache.putIfAbsent(3, "three");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(1));
+        assertEquals("three", cache.get(3));
+        assertEquals(List.of("one"), removed);
+        assertEquals(1, cache.evictionCount());
+    }
+
+    // истёкшая запись не возвращается и передаётся в onRemoval
+    @Test
+    void get_returnsNullForExpiredEntry() throws InterruptedException {
+        List<String> removed = new ArrayList<>();
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, 1, removed::add);
+
+        cache.putIfAbsent(1, "one");
+        Thread.sleep(5);
+
+        assertNull(cache.get(1));
+        assertEquals(List.of("one"), removed);
+    }
+
+    // computeIfAbsent загружает значение один раз и считает попадания/промахи
+    @Test
+    void computeIfAbsent_loadsOnceAndCountsHits() {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, 60_000);
+        int[] loads = {0};
+
+        cache.computeIfAbsent(1, k -> { loads[0]++; return "one"; });
+        cache.computeIfAbsent(1, k -> { loads[0]++; return "one"; });
+
+        assertEquals(1, loads[0]);
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    // invalidate удаляет запись и передаёт её в onRemoval
+    @Test
+    void invalidate_removesEntry() {
+        List<String> removed = new ArrayList<>();
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, 60_000, removed::add);
+
+        cache.putIfAbsent(1, "one");
+        cache.invalidate(1);
+
+        assertEquals(0, cache.size());
+        assertEquals(List.of("one"), removed);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.dto.CardInfoResponse;
+import com.example.bankcards.dto.Views;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.json.FilteredJsonWriters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilteredJsonWritersTest {
+    private static final UUID ID = UUID.fromString("3fa85f64-5717-4562-b3fc-2c963f66afa6");
+    private static final List<CardInfoResponse> CARDS = List.of(
+            new CardInfoResponse(ID, "**** **** **** 1234", "12/27", Card.Status.ACTIVE, 250_075L, "user1"));
+
+    FilteredJsonWriters writers;
+
+    @BeforeEach
+    void setUp() {
+        writers = new FilteredJsonWriters(Jackson2ObjectMapperBuilder.json().build(), new MockEnvironment());
+        ReflectionTestUtils.invokeMethod(writers, "init");
+    }
+
+    // порядок, пробелы и неизвестные поля не создают новых writer'ов
+    @Test
+    void writer_reusesWriterForEquivalentFieldSets() {
+        assertSame(
+                writers.writer(CardInfoResponse.class, Views.User.class, new String[]{"id", "balance"}),
+                writers.writer(CardInfoResponse.class, Views.User.class, new String[]{" balance", "id", "unknown", "id"}));
+        assertNotSame(
+                writers.writer(CardInfoResponse.class, Views.User.class, new String[]{"id", "balance"}),
+                writers.writer(CardInfoResponse.class, Views.Admin.class, new String[]{"id", "balance"}));
+    }
+
+    // без fields пишутся все поля view: владелец виден только админу
+    @Test
+    void writeList_appliesViewWithoutFields() throws Exception {
+        assertEquals("[{\"id\":\"" + ID + "\",\"number\":\"**** **** **** 1234\",\"date\":\"12/27\","
+                        + "\"status\":\"ACTIVE\",\"balance\":2500.75}]",
+                write(Views.User.class, null));
+        assertTrue(write(Views.Admin.class, new String[0]).endsWith(",\"owner\":\"user1\"}]"));
+    }
+
+    // fields оставляет только перечисленные поля, но не открывает скрытые view
+    @Test
+    void writeList_filtersFields() throws Exception {
+        assertEquals("[{\"id\":\"" + ID + "\",\"balance\":2500.75}]",
+                write(Views.User.class, new String[]{"id", "balance", "owner"}));
+        assertEquals("[{\"owner\":\"user1\"}]", write(Views.Admin.class, new String[]{"owner"}));
+        assertEquals("[{}]", write(Views.Admin.class, new String[]{"unknown"}));
+    }
+
+    private String write(Class<?> view, String[] fields) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writers.writeList(out, CardInfoResponse.class, view, fields, CARDS);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
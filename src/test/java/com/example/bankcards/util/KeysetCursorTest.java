@@ -0,0 +1,26 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.BadRequestException;
+import com.example.bankcards.util.pagination.KeysetCursor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    // курсор раскодируется в те же части, из которых собран
+    @Test
+    void decode_returnsEncodedParts() {
+        String cursor = KeysetCursor.encode("2025-08-01T12:30:00.123456", "019a0b6e-3c2f-7a51-9c1e-5b8f3d2a4e61");
+
+        assertArrayEquals(new String[]{"2025-08-01T12:30:00.123456", "019a0b6e-3c2f-7a51-9c1e-5b8f3d2a4e61"},
+                KeysetCursor.decode(cursor, 2));
+    }
+
+    // повреждённый курсор или курсор с другим числом частей - BadRequestException
+    @Test
+    void decode_rejectsInvalidCursor() {
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode("not base64!", 2));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(KeysetCursor.encode("a"), 2));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.dto.CardBalanceRequest;
+import com.example.bankcards.dto.CardBalanceResponse;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // десятичная сумма из API переводится в копейки
+    @Test
+    void deserialize_acceptsDecimalNumbersAndStrings() throws Exception {
+        assertEquals(10050, read("100.50").amount());
+        assertEquals(10000, read("100").amount());
+        assertEquals(1, read("\"0.01\"").amount());
+    }
+
+    // больше двух знаков после точки - ошибка, а не молчаливое округление
+    @Test
+    void deserialize_rejectsMoreThanTwoFractionDigits() {
+        assertThrows(JsonMappingException.class, () -> read("1.005"));
+        assertThrows(JsonMappingException.class, () -> read("\"abc\""));
+    }
+
+    // баланс в копейках отдаётся в API десятичным числом
+    @Test
+    void serialize_writesDecimal() throws Exception {
+        assertEquals("{\"balance\":2500.75}", objectMapper.writeValueAsString(new CardBalanceResponse(250075)));
+        assertEquals("{\"balance\":0.00}", objectMapper.writeValueAsString(new CardBalanceResponse(0)));
+    }
+
+    private CardBalanceRequest read(String amount) throws Exception {
+        return objectMapper.readValue("{\"action\":\"DEPOSIT_MONEY\",\"amount\":" + amount + "}", CardBalanceRequest.class);
+    }
+}
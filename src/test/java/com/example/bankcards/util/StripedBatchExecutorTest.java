@@ -0,0 +1,122 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.util.concurrent.StripedBatchExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedBatchExecutorTest {
+
+    // команды одного ключа обрабатываются по порядку и объединяются в пачки
+    @Test
+    void submit_processesSameKeyInOrderAndBatches() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        try (StripedBatchExecutor<Integer, Integer> executor = new StripedBatchExecutor<>("test", 4, 100, 50, 0,
+                batch -> {
+                    started.countDown();
+                    await(release);
+                    batchSizes.add(batch.size());
+                    batch.forEach(command -> {
+                        processed.add(command.payload());
+                        command.complete(command.payload() * 2);
+                    });
+                })) {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            results.add(executor.submit("card", 0));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // пока первая пачка обрабатывается, остальные команды копятся в очереди
+            for (int i = 1; i < 10; i++) {
+                results.add(executor.submit("card", i));
+            }
+            release.countDown();
+
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i * 2, results.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), processed);
+            assertEquals(List.of(1, 9), batchSizes);
+        }
+    }
+
+    // исключение обработчика и незавершённые команды завершают future ошибкой
+    @Test
+    void submit_failsCommandsNotCompletedByHandler() throws Exception {
+        try (StripedBatchExecutor<Integer, Integer> executor = new StripedBatchExecutor<>("test", 1, 100, 10, 0,
+                batch -> {
+                    if (batch.get(0).payload() < 0) {
+                        throw new IllegalStateException("boom");
+                    }
+                })) {
+            ExecutionException failed = assertThrows(ExecutionException.class,
+                    () -> executor.submit(1, -1).get(5, TimeUnit.SECONDS));
+            assertEquals("boom", failed.getCause().getMessage());
+
+            ExecutionException notCompleted = assertThrows(ExecutionException.class,
+                    () -> executor.submit(1, 1).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, notCompleted.getCause());
+        }
+    }
+
+    // отменённая в очереди команда не выполняется, а взятую в обработку отменить нельзя
+    @Test
+    void cancel_skipsQueuedCommandAndFailsForStartedOne() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+
+        try (StripedBatchExecutor<Integer, Integer> executor = new StripedBatchExecutor<>("test", 1, 100, 10, 0,
+                batch -> {
+                    started.countDown();
+                    await(release);
+                    batch.forEach(command -> {
+                        processed.add(command.payload());
+                        command.complete(command.payload());
+                    });
+                })) {
+            CompletableFuture<Integer> running = executor.submit(1, 0);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Integer> queued = executor.submit(1, 1);
+            CompletableFuture<Integer> next = executor.submit(1, 2);
+
+            assertFalse(running.cancel(false));
+            assertTrue(queued.cancel(false));
+            release.countDown();
+
+            assertEquals(0, running.get(5, TimeUnit.SECONDS));
+            assertEquals(2, next.get(5, TimeUnit.SECONDS));
+            assertTrue(queued.isCancelled());
+            assertEquals(List.of(0, 2), processed);
+        }
+    }
+
+    // после остановки новые команды отклоняются
+    @Test
+    void submit_rejectsAfterClose() {
+        StripedBatchExecutor<Integer, Integer> executor = new StripedBatchExecutor<>("test", 1, 1, 1, 0,
+                batch -> batch.forEach(command -> command.complete(command.payload())));
+        executor.close();
+
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(1, 1));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}